@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for matching input against command vocabularies of different
+ * sizes with TextEngine.parseCommand and TextEngine.getMatchLength.
+ *
+ * Run with: java -jar target/benchmarks.jar CommandMatchBenchmark -prof gc
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandMatchBenchmark {
+
+    private static final MethodHandle PARSE_COMMAND;
+    private static final MethodHandle GET_MATCH_LENGTH;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> textEngine = Class.forName("TextEngine");
+            PARSE_COMMAND = lookup.findStatic(textEngine, "parseCommand",
+                    MethodType.methodType(String.class, String.class, String[].class));
+            GET_MATCH_LENGTH = lookup.findStatic(textEngine, "getMatchLength",
+                    MethodType.methodType(int.class, String.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"10", "100", "1000", "10000"})
+    public int vocabularySize;
+
+    private String[] vocabulary;
+    private String exactInput;
+    private String prefixInput;
+    private String missingInput;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] stems = {"startup", "shortcut", "terminal", "history", "textbuffer", "apikey", "chat", "clear"};
+        vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary[i] = stems[i % stems.length] + (i / stems.length);
+        }
+        exactInput = vocabulary[vocabularySize / 2];
+        prefixInput = exactInput.substring(0, exactInput.length() - 1);
+        missingInput = "zzz-not-a-command";
+    }
+
+    @Benchmark
+    public String parseCommandExact() throws Throwable {
+        return (String) PARSE_COMMAND.invokeExact(exactInput, vocabulary);
+    }
+
+    @Benchmark
+    public String parseCommandPrefix() throws Throwable {
+        return (String) PARSE_COMMAND.invokeExact(prefixInput, vocabulary);
+    }
+
+    @Benchmark
+    public String parseCommandMissing() throws Throwable {
+        return (String) PARSE_COMMAND.invokeExact(missingInput, vocabulary);
+    }
+
+    @Benchmark
+    public int getMatchLengthScan() throws Throwable {
+        int best = 0;
+        for (String command : vocabulary) {
+            best = Math.max(best, (int) GET_MATCH_LENGTH.invokeExact(prefixInput, command));
+        }
+        return best;
+    }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the rendering paths of TextEngine. Standard output is
+ * redirected to a null sink so only the layout and encoding work is measured.
+ * The application classes live in the default package, which JMH cannot
+ * generate code for, so they are reached through method handles.
+ *
+ * Run with: java -jar target/benchmarks.jar TextEngineBenchmark -prof gc
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextEngineBenchmark {
+
+    private static final MethodHandle PRINT_NO_DELAY;
+    private static final MethodHandle PRINT_WITH_DELAYS;
+    private static final MethodHandle SET_SPEED_SETTING;
+    private static final MethodHandle NEW_WORD_WRAP_WRITER;
+    private static final int LINE_WIDTH = 80;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> textEngine = Class.forName("TextEngine");
+            MethodType print = MethodType.methodType(void.class, String.class, boolean.class, boolean.class);
+            PRINT_NO_DELAY = lookup.findStatic(textEngine, "printNoDelay", print);
+            PRINT_WITH_DELAYS = lookup.findStatic(textEngine, "printWithDelays", print);
+            SET_SPEED_SETTING = lookup.findStatic(textEngine, "setSpeedSetting", MethodType.methodType(void.class, String.class));
+            NEW_WORD_WRAP_WRITER = lookup.findConstructor(Class.forName("WordWrapWriter"),
+                    MethodType.methodType(void.class, Appendable.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int size;
+
+    private String text;
+    private StringBuilder wrapped;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        String[] words = {"the", "terminal", "prints", "\033[1;33mcolored\033[0m", "output", "and", "wraps", "long", "lines"};
+        StringBuilder builder = new StringBuilder(size + 16);
+        for (int i = 0; builder.length() < size; i++) {
+            builder.append(words[i % words.length]).append(i % 40 == 39 ? "\n" : " ");
+        }
+        builder.setLength(size);
+        text = builder.toString();
+        wrapped = new StringBuilder(size + size / 8);
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        SET_SPEED_SETTING.invokeExact("nodelay");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void printNoDelay() throws Throwable {
+        PRINT_NO_DELAY.invokeExact(text, false, true);
+    }
+
+    @Benchmark
+    public void printWithDelaysNoDelay() throws Throwable {
+        PRINT_WITH_DELAYS.invokeExact(text, false, true);
+    }
+
+    @Benchmark
+    public int wordWrap() throws Throwable {
+        wrapped.setLength(0);
+        try (Writer writer = (Writer) NEW_WORD_WRAP_WRITER.invoke((Appendable) wrapped, LINE_WIDTH)) {
+            writer.append(text);
+        }
+        return wrapped.length();
+    }
+}
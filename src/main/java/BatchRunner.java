@@ -0,0 +1,107 @@
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * The BatchRunner class runs commands read from a script or a pipe, one per
+ * line, without a person at the terminal. Blank lines and lines starting with
+ * '#' are skipped. After each command a line with its result and the time it
+ * took is written to the report stream, and a summary is written at the end,
+ * so the output of the commands themselves stays on its own stream.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class BatchRunner {
+
+    /**
+     * The result of a whole batch.
+     *
+     * @param commands the number of commands run
+     * @param failed the number of commands that failed
+     * @param nanos the time all commands took
+     */
+    public record Summary(int commands, int failed, long nanos) {
+
+        /**
+         * Gets the exit status of the batch.
+         *
+         * @return 0 if every command succeeded, 1 otherwise
+         */
+        public int exitStatus() {
+            return failed == 0 ? 0 : 1;
+        }
+    }
+
+    private final Predicate<String> action;
+    private final PrintStream report;
+    private volatile boolean stopped = false;
+
+    /**
+     * Constructs a BatchRunner.
+     *
+     * @param action runs one command and returns whether it succeeded
+     * @param report where results and timings are written, or null for none
+     */
+    public BatchRunner(Predicate<String> action, PrintStream report) {
+        this.action = action;
+        this.report = report;
+    }
+
+    /**
+     * Runs every command from the input until it ends or {@link #stop()} is
+     * called. A command that throws counts as failed and does not stop the
+     * batch.
+     *
+     * @param input the commands, one per line
+     * @return the summary of the batch
+     * @throws IOException if the input could not be read
+     */
+    public Summary run(BufferedReader input) throws IOException {
+        int commands = 0;
+        int failed = 0;
+        long total = 0;
+        String line;
+        while (!stopped && (line = input.readLine()) != null) {
+            String command = line.strip();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            commands++;
+            long start = System.nanoTime();
+            boolean succeeded;
+            String error = null;
+            try {
+                succeeded = action.test(command);
+            } catch (RuntimeException e) {
+                succeeded = false;
+                error = e.toString();
+            }
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            if (!succeeded) {
+                failed++;
+            }
+            if (report != null) {
+                report.println(String.format(Locale.ROOT, "[%d] %s %.3f ms: %s", commands,
+                        succeeded ? "ok" : "failed", elapsed / 1e6, command)
+                        + (error == null ? "" : " (" + error + ")"));
+            }
+        }
+        Summary summary = new Summary(commands, failed, total);
+        if (report != null) {
+            report.println(String.format(Locale.ROOT, "%d commands, %d failed, %.3f ms", commands, failed, total / 1e6));
+        }
+        return summary;
+    }
+
+    /**
+     * Stops the batch after the command that is running.
+     */
+    public void stop() {
+        stopped = true;
+    }
+}
@@ -0,0 +1,235 @@
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CommandLexer class splits a command line into tokens in a single pass.
+ * Tokens are separated by whitespace. Single and double quotes group words
+ * into one token, a backslash outside of quotes escapes the next character,
+ * and a token that starts with a parenthesis or bracket runs to the matching
+ * closing one, nesting included, with its contents kept as written so they can
+ * be parsed again later. Tokens without quotes or escapes are sliced straight
+ * out of the input. In lenient mode a quote, parenthesis or bracket that is
+ * never closed is kept as an ordinary character instead of being an error, so
+ * free text such as "what's up" can be typed as it is.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public abstract class CommandLexer {
+
+    /**
+     * A token and the part of the input it was read from.
+     *
+     * @param text the text of the token
+     * @param start the offset of the first character of the token
+     * @param end the offset after the last character of the token
+     */
+    public record Token(String text, int start, int end) {
+    }
+
+    /**
+     * Thrown when a command line cannot be tokenized.
+     */
+    public static class SyntaxException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int position;
+
+        /**
+         * Constructs a SyntaxException.
+         *
+         * @param message the description of the problem
+         * @param position the offset in the input where the problem starts
+         */
+        public SyntaxException(String message, int position) {
+            super(message + " at column " + (position + 1));
+            this.position = position;
+        }
+
+        /**
+         * Gets the offset in the input where the problem starts.
+         *
+         * @return the position
+         */
+        public int getPosition() {
+            return position;
+        }
+    }
+
+    /**
+     * Splits a command line into the text of its tokens.
+     *
+     * @param command the command line
+     * @return the tokens
+     * @throws SyntaxException if a quote or group is not closed
+     */
+    public static List<String> split(String command) {
+        List<Token> tokens = tokenize(command);
+        List<String> texts = new ArrayList<>(tokens.size());
+        for (Token token : tokens) {
+            texts.add(token.text());
+        }
+        return texts;
+    }
+
+    /**
+     * Splits a command line into tokens.
+     *
+     * @param command the command line
+     * @return the tokens
+     * @throws SyntaxException if a quote or group is not closed
+     */
+    public static List<Token> tokenize(String command) {
+        return tokenize(command, false);
+    }
+
+    /**
+     * Splits a command line into tokens.
+     *
+     * @param command the command line
+     * @param lenient whether a quote or group that is not closed is kept as
+     * an ordinary character
+     * @return the tokens
+     * @throws SyntaxException if a quote or group is not closed and lenient
+     * is false
+     */
+    public static List<Token> tokenize(String command, boolean lenient) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder unescaped = null;
+        int length = command.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(command.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            int start = i;
+            char first = command.charAt(i);
+            if (first == '(' || first == '[') {
+                int close = findGroupEnd(command, i, lenient);
+                if (close >= 0) {
+                    tokens.add(new Token(command.substring(i + 1, close), start, close + 1));
+                    i = close + 1;
+                    continue;
+                }
+            }
+            boolean plain = true;
+            while (i < length && !Character.isWhitespace(command.charAt(i))) {
+                char ch = command.charAt(i);
+                if (ch == '\'' || ch == '"' || (ch == '\\' && i + 1 < length)) {
+                    if (plain) {
+                        plain = false;
+                        if (unescaped == null) {
+                            unescaped = new StringBuilder();
+                        }
+                        unescaped.setLength(0);
+                        unescaped.append(command, start, i);
+                    }
+                    if (ch == '\\') {
+                        unescaped.append(command.charAt(i + 1));
+                        i += 2;
+                    } else {
+                        int end = readQuoted(command, i, unescaped, lenient);
+                        if (end < 0) {
+                            unescaped.append(ch);
+                            i++;
+                        } else {
+                            i = end;
+                        }
+                    }
+                    continue;
+                }
+                if (!plain) {
+                    unescaped.append(ch);
+                }
+                i++;
+            }
+            tokens.add(new Token(plain ? command.substring(start, i) : unescaped.toString(), start, i));
+        }
+        return tokens;
+    }
+
+    /**
+     * Reads a quoted section into a buffer.
+     *
+     * @param command the command line
+     * @param open the offset of the opening quote
+     * @param out the buffer to append the contents to
+     * @param lenient whether a quote that is not closed is left unread
+     * @return the offset after the closing quote, or -1 if the quote is not
+     * closed and lenient is true
+     * @throws SyntaxException if the quote is not closed and lenient is false
+     */
+    private static int readQuoted(String command, int open, StringBuilder out, boolean lenient) {
+        char quote = command.charAt(open);
+        int mark = out.length();
+        int i = open + 1;
+        while (i < command.length()) {
+            char ch = command.charAt(i);
+            if (ch == quote) {
+                return i + 1;
+            }
+            if (quote == '"' && ch == '\\' && i + 1 < command.length()) {
+                char next = command.charAt(i + 1);
+                if (next == '"' || next == '\\') {
+                    out.append(next);
+                    i += 2;
+                    continue;
+                }
+            }
+            out.append(ch);
+            i++;
+        }
+        if (lenient) {
+            out.setLength(mark);
+            return -1;
+        }
+        throw new SyntaxException("Unterminated " + (quote == '"' ? "double" : "single") + " quote", open);
+    }
+
+    /**
+     * Finds the closing parenthesis or bracket of a group. Quoted sections
+     * inside the group are skipped and groups of the same kind may nest.
+     *
+     * @param command the command line
+     * @param open the offset of the opening parenthesis or bracket
+     * @param lenient whether a group that is not closed is no error
+     * @return the offset of the matching closing character, or -1 if the
+     * group is not closed and lenient is true
+     * @throws SyntaxException if the group is not closed and lenient is false
+     */
+    private static int findGroupEnd(String command, int open, boolean lenient) {
+        char opening = command.charAt(open);
+        char closing = opening == '(' ? ')' : ']';
+        int depth = 0;
+        char quote = 0;
+        for (int i = open; i < command.length(); i++) {
+            char ch = command.charAt(i);
+            if (quote != 0) {
+                if (ch == '\\' && quote == '"') {
+                    i++;
+                } else if (ch == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (ch == '\\') {
+                i++;
+            } else if (ch == '\'' || ch == '"') {
+                quote = ch;
+            } else if (ch == opening) {
+                depth++;
+            } else if (ch == closing && --depth == 0) {
+                return i;
+            }
+        }
+        if (lenient) {
+            return -1;
+        }
+        throw new SyntaxException("Missing '" + closing + "'", open);
+    }
+}
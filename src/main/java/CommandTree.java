@@ -0,0 +1,483 @@
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CommandTree class holds every command path as a node in a tree. Each
+ * node knows its sub-commands, how many arguments it takes and what handles
+ * it. The tree is built once at startup; resolving an input walks one hashed
+ * lookup per word, and the same tree drives help text, completion and
+ * validation. Dispatch keeps its state in a {@link Context} per call, so
+ * handlers may dispatch other commands.
+ *
+ * The sub-commands of a node marked as chained can follow each other in one
+ * input, for example "user shortcut enable list".
+ *
+ * A handler reports that its command failed by throwing a
+ * {@link CommandException}; the steps after it are then not run.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class CommandTree {
+
+    /**
+     * Handles a resolved command.
+     */
+    public interface Handler {
+
+        /**
+         * Runs the command.
+         *
+         * @param context the arguments and input of the command
+         * @throws CommandException if the command failed
+         */
+        void handle(Context context);
+    }
+
+    /**
+     * Thrown by a handler when its command failed.
+     */
+    public static class CommandException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a CommandException for a failure that was already
+         * reported to the user.
+         */
+        public CommandException() {
+            super();
+        }
+
+        /**
+         * Constructs a CommandException.
+         *
+         * @param message the description of the failure, shown to the user
+         */
+        public CommandException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The outcome of dispatching an input.
+     */
+    public enum Status {
+        OK, UNKNOWN_COMMAND, MISSING_ARGUMENTS, UNEXPECTED_ARGUMENT, FAILED
+    }
+
+    /**
+     * The result of dispatching an input.
+     *
+     * @param status how the dispatch went
+     * @param node the deepest node that was reached
+     * @param token the offending token, the description of why the command
+     * failed, or null
+     * @param resolveNanos the nanoseconds spent matching the input to commands
+     * @param runNanos the nanoseconds spent in the handlers
+     */
+    public record Result(Status status, Node node, String token, long resolveNanos, long runNanos) {
+
+        /**
+         * Checks whether the command ran.
+         *
+         * @return true if the dispatch succeeded, false otherwise
+         */
+        public boolean ok() {
+            return status == Status.OK;
+        }
+    }
+
+    /**
+     * The input and arguments of one command being handled.
+     */
+    public static class Context {
+
+        private final String line;
+        private final List<CommandLexer.Token> tokens;
+        private final int firstArgument;
+        private final int argumentCount;
+        private final Node node;
+
+        Context(String line, List<CommandLexer.Token> tokens, int firstArgument, int argumentCount, Node node) {
+            this.line = line;
+            this.tokens = tokens;
+            this.firstArgument = firstArgument;
+            this.argumentCount = argumentCount;
+            this.node = node;
+        }
+
+        /**
+         * Gets the whole input line.
+         *
+         * @return the input line
+         */
+        public String line() {
+            return line;
+        }
+
+        /**
+         * Gets the node being handled.
+         *
+         * @return the node
+         */
+        public Node node() {
+            return node;
+        }
+
+        /**
+         * Gets the number of arguments.
+         *
+         * @return the argument count
+         */
+        public int argumentCount() {
+            return argumentCount;
+        }
+
+        /**
+         * Gets an argument.
+         *
+         * @param index the index of the argument
+         * @return the argument, or null if there are not that many
+         */
+        public String argument(int index) {
+            return index < argumentCount ? tokens.get(firstArgument + index).text() : null;
+        }
+
+        /**
+         * Gets every argument.
+         *
+         * @return the arguments
+         */
+        public List<String> arguments() {
+            List<String> arguments = new ArrayList<>(argumentCount);
+            for (int i = 0; i < argumentCount; i++) {
+                arguments.add(argument(i));
+            }
+            return arguments;
+        }
+
+        /**
+         * Gets the input from the first argument to the end of the line as it
+         * was typed.
+         *
+         * @return the raw arguments, or an empty string if there are none
+         */
+        public String rawArguments() {
+            return argumentCount == 0 ? "" : line.substring(tokens.get(firstArgument).start());
+        }
+    }
+
+    /**
+     * A command path in the tree.
+     */
+    public static class Node {
+
+        private final String name;
+        private final Node parent;
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<Node> order = new ArrayList<>();
+        private final CommandTrie names = new CommandTrie();
+        private Handler handler;
+        private int minArguments = 0;
+        private int maxArguments = 0;
+        private String usage = "";
+        private boolean chained = false;
+        private boolean hidden = false;
+
+        Node(String name, Node parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        /**
+         * Gets the sub-command with the given name, creating it if needed.
+         *
+         * @param childName the name of the sub-command
+         * @return the sub-command
+         */
+        public Node command(String childName) {
+            Node child = children.get(childName);
+            if (child == null) {
+                child = new Node(childName, this);
+                children.put(childName, child);
+                order.add(child);
+                names.add(childName);
+            }
+            return child;
+        }
+
+        /**
+         * Sets the handler of a command that takes no arguments.
+         *
+         * @param commandHandler the handler
+         * @return this node
+         */
+        public Node handler(Handler commandHandler) {
+            return handler(0, 0, commandHandler);
+        }
+
+        /**
+         * Sets the handler and argument count of this command.
+         *
+         * @param min the least number of arguments
+         * @param max the most number of arguments, or Integer.MAX_VALUE
+         * @param commandHandler the handler
+         * @return this node
+         */
+        public Node handler(int min, int max, Handler commandHandler) {
+            this.minArguments = min;
+            this.maxArguments = max;
+            this.handler = commandHandler;
+            return this;
+        }
+
+        /**
+         * Sets the usage text shown after the name in help, for example
+         * "[ARGS]".
+         *
+         * @param usageText the usage text
+         * @return this node
+         */
+        public Node usage(String usageText) {
+            this.usage = usageText;
+            return this;
+        }
+
+        /**
+         * Lets the sub-commands of this node follow each other in one input.
+         *
+         * @return this node
+         */
+        public Node chained() {
+            this.chained = true;
+            return this;
+        }
+
+        /**
+         * Leaves this command out of help text. It can still be run and
+         * completed.
+         *
+         * @return this node
+         */
+        public Node hidden() {
+            this.hidden = true;
+            return this;
+        }
+
+        /**
+         * Gets the name of this command.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the usage text shown after the name in help.
+         *
+         * @return the usage text, or an empty string if there is none
+         */
+        public String getUsage() {
+            return usage;
+        }
+
+        /**
+         * Gets the full path of this command.
+         *
+         * @return the path, with words separated by spaces
+         */
+        public String getPath() {
+            if (parent == null || parent.parent == null) {
+                return name == null ? "" : name;
+            }
+            return parent.getPath() + " " + name;
+        }
+
+        /**
+         * Gets the sub-commands in the order they were added.
+         *
+         * @return the sub-commands
+         */
+        public List<Node> getChildren() {
+            return order;
+        }
+
+        /**
+         * Checks whether this command can be run.
+         *
+         * @return true if the command has a handler, false otherwise
+         */
+        public boolean isRunnable() {
+            return handler != null;
+        }
+
+        /**
+         * Describes this command and its sub-commands on one line, for
+         * example "startup: add [ARGS], remove [ARGS], list".
+         *
+         * @return the description
+         */
+        public String describe() {
+            if (order.isEmpty()) {
+                return usage.isEmpty() ? name : name + " " + usage;
+            }
+            StringBuilder description = new StringBuilder(name).append(": ");
+            boolean first = true;
+            for (Node child : order) {
+                if (child.hidden) {
+                    continue;
+                }
+                if (!first) {
+                    description.append(", ");
+                }
+                first = false;
+                description.append(child.name);
+                if (!child.usage.isEmpty()) {
+                    description.append(' ').append(child.usage);
+                }
+            }
+            return description.toString();
+        }
+    }
+
+    private final Node root = new Node(null, null);
+
+    /**
+     * Gets the root of the tree. Its children are the top-level commands.
+     *
+     * @return the root node
+     */
+    public Node root() {
+        return root;
+    }
+
+    /**
+     * Gets the node at a path, creating the missing nodes.
+     *
+     * @param path the words of the path, separated by spaces
+     * @return the node
+     */
+    public Node command(String path) {
+        Node node = root;
+        for (String word : path.split(" ")) {
+            node = node.command(word);
+        }
+        return node;
+    }
+
+    /**
+     * Finds the node at a path.
+     *
+     * @param path the words of the path, separated by spaces
+     * @return the node, or null if there is none
+     */
+    public Node find(String path) {
+        Node node = root;
+        for (String word : path.split(" ")) {
+            node = node.children.get(word);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Resolves and runs an input. The whole input is validated before any
+     * handler runs, and the handlers stop at the first one that fails. The
+     * time spent resolving and the time spent in the handlers are measured
+     * apart.
+     *
+     * @param line the input line
+     * @param tokens the tokens of the input line
+     * @return the result
+     */
+    public Result dispatch(String line, List<CommandLexer.Token> tokens) {
+        long start = System.nanoTime();
+        List<Context> steps = new ArrayList<>();
+        Node scope = root;
+        int position = 0;
+        while (position < tokens.size()) {
+            Node node = scope.children.get(tokens.get(position).text());
+            if (node == null) {
+                return new Result(scope == root ? Status.UNKNOWN_COMMAND : Status.UNEXPECTED_ARGUMENT, scope, tokens.get(position).text(), System.nanoTime() - start, 0);
+            }
+            position++;
+            while (position < tokens.size() && node.children.containsKey(tokens.get(position).text())) {
+                node = node.children.get(tokens.get(position).text());
+                position++;
+            }
+            if (node.handler == null) {
+                return new Result(Status.MISSING_ARGUMENTS, node, null, System.nanoTime() - start, 0);
+            }
+            int available = tokens.size() - position;
+            if (available < node.minArguments) {
+                return new Result(Status.MISSING_ARGUMENTS, node, null, System.nanoTime() - start, 0);
+            }
+            int count = node.minArguments;
+            boolean chaining = node.parent != null && node.parent.chained;
+            while (count < node.maxArguments && count < available
+                    && !(chaining && node.parent.children.containsKey(tokens.get(position + count).text()))) {
+                count++;
+            }
+            steps.add(new Context(line, tokens, position, count, node));
+            position += count;
+            if (position < tokens.size() && !chaining) {
+                return new Result(Status.UNEXPECTED_ARGUMENT, node, tokens.get(position).text(), System.nanoTime() - start, 0);
+            }
+            scope = node.parent;
+        }
+        if (steps.isEmpty()) {
+            return new Result(Status.UNKNOWN_COMMAND, root, null, System.nanoTime() - start, 0);
+        }
+        long resolved = System.nanoTime();
+        for (Context step : steps) {
+            try {
+                step.node.handler.handle(step);
+            } catch (CommandException e) {
+                return new Result(Status.FAILED, step.node, e.getMessage(), resolved - start, System.nanoTime() - resolved);
+            }
+        }
+        return new Result(Status.OK, steps.get(steps.size() - 1).node, null, resolved - start, System.nanoTime() - resolved);
+    }
+
+    /**
+     * Lists the completions of the last word of an input.
+     *
+     * @param words the words typed so far; the last one may be partial
+     * @return the commands that complete the last word
+     */
+    public List<String> complete(List<String> words) {
+        Node node = root;
+        for (int i = 0; i < words.size() - 1; i++) {
+            Node next = node.children.get(words.get(i));
+            if (next == null) {
+                return List.of();
+            }
+            node = next;
+        }
+        String partial = words.isEmpty() ? "" : words.get(words.size() - 1);
+        return node.names.candidates(partial);
+    }
+
+    /**
+     * Gets the help lines for a node: one description per sub-command.
+     *
+     * @param node the node to describe
+     * @return the help lines
+     */
+    public List<String> help(Node node) {
+        List<String> lines = new ArrayList<>();
+        for (Node child : node.order) {
+            if (!child.hidden) {
+                lines.add(child.describe());
+            }
+        }
+        return lines;
+    }
+}
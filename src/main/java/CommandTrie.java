@@ -0,0 +1,239 @@
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CommandTrie class compiles a command vocabulary into a prefix tree.
+ * Matching an input walks the tree once, so lookups, unique-prefix resolution
+ * and ambiguity checks cost time proportional to the length of the input
+ * rather than the number of commands.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public final class CommandTrie {
+
+    /**
+     * The outcome of resolving a prefix.
+     */
+    public enum Status {
+        EXACT, UNIQUE, AMBIGUOUS, NONE
+    }
+
+    /**
+     * The result of resolving a prefix against the vocabulary.
+     *
+     * @param status how the prefix resolved
+     * @param command the resolved command, or null if there is none
+     * @param candidates the commands that start with the prefix
+     */
+    public record Resolution(Status status, String command, List<String> candidates) {
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new LinkedHashMap<>();
+        private String command;
+        private String first;
+        private int count;
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * Constructs an empty CommandTrie.
+     */
+    public CommandTrie() {
+    }
+
+    /**
+     * Constructs a CommandTrie holding the given commands. When several
+     * commands match an input equally well, the one that comes first wins.
+     *
+     * @param commands the commands to add
+     */
+    public CommandTrie(String[] commands) {
+        for (String command : commands) {
+            add(command);
+        }
+    }
+
+    /**
+     * Adds a command to the vocabulary.
+     *
+     * @param command the command to add
+     */
+    public void add(String command) {
+        if (command == null) {
+            return;
+        }
+        if (contains(command)) {
+            return;
+        }
+        Node node = root;
+        visit(node, command);
+        for (int i = 0; i < command.length(); i++) {
+            node = node.children.computeIfAbsent(command.charAt(i), key -> new Node());
+            visit(node, command);
+        }
+        node.command = command;
+    }
+
+    /**
+     * Checks whether a command is in the vocabulary.
+     *
+     * @param command the command to look up
+     * @return true if the command is in the vocabulary, false otherwise
+     */
+    public boolean contains(String command) {
+        Node node = find(command);
+        return node != null && node.command != null;
+    }
+
+    /**
+     * Gets the number of characters of the input that match the best
+     * matching command.
+     *
+     * @param input the input to match
+     * @return the match length
+     */
+    public int matchLength(String input) {
+        if (input == null) {
+            return 0;
+        }
+        Node node = root;
+        int depth = 0;
+        while (depth < input.length()) {
+            Node next = node.children.get(input.charAt(depth));
+            if (next == null) {
+                break;
+            }
+            node = next;
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Gets the command that shares the longest prefix with the input.
+     *
+     * @param input the input to match
+     * @return the best matching command, or null if no command shares a
+     * first character with the input
+     */
+    public String longestPrefixMatch(String input) {
+        if (input == null) {
+            return null;
+        }
+        Node node = root;
+        for (int i = 0; i < input.length(); i++) {
+            Node next = node.children.get(input.charAt(i));
+            if (next == null) {
+                break;
+            }
+            node = next;
+        }
+        return node == root ? null : node.first;
+    }
+
+    /**
+     * Resolves a prefix to a command. The prefix resolves if it is a command
+     * or if exactly one command starts with it; it is ambiguous if several
+     * do.
+     *
+     * @param prefix the prefix to resolve
+     * @return the resolution
+     */
+    public Resolution resolve(String prefix) {
+        Node node = find(prefix);
+        if (node == null || node.count == 0) {
+            return new Resolution(Status.NONE, null, List.of());
+        }
+        if (node.command != null) {
+            return new Resolution(Status.EXACT, node.command, collect(node));
+        }
+        if (node.count == 1) {
+            return new Resolution(Status.UNIQUE, node.first, List.of(node.first));
+        }
+        return new Resolution(Status.AMBIGUOUS, null, collect(node));
+    }
+
+    /**
+     * Lists the commands that start with a prefix.
+     *
+     * @param prefix the prefix to complete
+     * @return the matching commands
+     */
+    public List<String> candidates(String prefix) {
+        Node node = find(prefix);
+        return node == null ? List.of() : collect(node);
+    }
+
+    /**
+     * Gets the number of commands in the vocabulary.
+     *
+     * @return the number of commands
+     */
+    public int size() {
+        return root.count;
+    }
+
+    /**
+     * Records that a command passes through a node.
+     *
+     * @param node the node
+     * @param command the command being added
+     */
+    private static void visit(Node node, String command) {
+        node.count++;
+        if (node.first == null) {
+            node.first = command;
+        }
+    }
+
+    /**
+     * Finds the node reached by a prefix.
+     *
+     * @param prefix the prefix to follow
+     * @return the node, or null if no command starts with the prefix
+     */
+    private Node find(String prefix) {
+        if (prefix == null) {
+            return null;
+        }
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Lists the commands below a node.
+     *
+     * @param node the node
+     * @return the commands
+     */
+    private static List<String> collect(Node node) {
+        List<String> commands = new ArrayList<>(node.count);
+        collect(node, commands);
+        return commands;
+    }
+
+    /**
+     * Adds the commands below a node to a list.
+     *
+     * @param node the node
+     * @param commands the list to add to
+     */
+    private static void collect(Node node, List<String> commands) {
+        if (node.command != null) {
+            commands.add(node.command);
+        }
+        for (Node child : node.children.values()) {
+            collect(child, commands);
+        }
+    }
+}
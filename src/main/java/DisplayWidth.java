@@ -0,0 +1,269 @@
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The DisplayWidth class measures how many terminal columns text takes up.
+ * ANSI escape sequences take no columns, combining marks and other
+ * zero-width characters take none, wide East Asian characters and emoji take
+ * two, and a tab reaches to the next tab stop. The widths of the Basic
+ * Multilingual Plane are kept in a lookup table that is filled in as
+ * characters are first seen, so measuring does not allocate and loading the
+ * class is cheap, and the widths of short strings that are printed
+ * repeatedly, such as prompts and headers, are cached.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public abstract class DisplayWidth {
+
+    public static final int TAB_WIDTH = 8;
+    private static final int MAX_CACHED_LENGTH = 256;
+    private static final int MAX_CACHE_SIZE = 512;
+    private static final char ESC = '\033';
+    private static final int ZERO_WIDTH_JOINER = 0x200D;
+    private static final byte UNKNOWN = -1;
+    private static final byte[] BMP_WIDTHS = new byte[0x10000];
+    private static final Map<String, Integer> CACHE = new ConcurrentHashMap<>();
+
+    private static final int[][] WIDE_RANGES = {
+        {0x1100, 0x115F}, {0x231A, 0x231B}, {0x2329, 0x232A}, {0x23E9, 0x23EC},
+        {0x23F0, 0x23F0}, {0x23F3, 0x23F3}, {0x25FD, 0x25FE}, {0x2614, 0x2615},
+        {0x2648, 0x2653}, {0x267F, 0x267F}, {0x2693, 0x2693}, {0x26A1, 0x26A1},
+        {0x26AA, 0x26AB}, {0x26BD, 0x26BE}, {0x26C4, 0x26C5}, {0x26CE, 0x26CE},
+        {0x26D4, 0x26D4}, {0x26EA, 0x26EA}, {0x26F2, 0x26F3}, {0x26F5, 0x26F5},
+        {0x26FA, 0x26FA}, {0x26FD, 0x26FD}, {0x2705, 0x2705}, {0x270A, 0x270B},
+        {0x2728, 0x2728}, {0x274C, 0x274C}, {0x274E, 0x274E}, {0x2753, 0x2755},
+        {0x2757, 0x2757}, {0x2795, 0x2797}, {0x27B0, 0x27B0}, {0x27BF, 0x27BF},
+        {0x2B1B, 0x2B1C}, {0x2B50, 0x2B50}, {0x2B55, 0x2B55}, {0x2E80, 0x303E},
+        {0x3041, 0x33FF}, {0x3400, 0x4DBF}, {0x4E00, 0x9FFF}, {0xA000, 0xA4CF},
+        {0xA960, 0xA97F}, {0xAC00, 0xD7A3}, {0xF900, 0xFAFF}, {0xFE10, 0xFE19},
+        {0xFE30, 0xFE6F}, {0xFF00, 0xFF60}, {0xFFE0, 0xFFE6},
+        {0x16FE0, 0x16FE4}, {0x17000, 0x18CFF}, {0x1B000, 0x1B2FF}, {0x1F004, 0x1F004},
+        {0x1F0CF, 0x1F0CF}, {0x1F18E, 0x1F18E}, {0x1F191, 0x1F19A}, {0x1F200, 0x1F2FF},
+        {0x1F300, 0x1F64F}, {0x1F680, 0x1F6FF}, {0x1F7E0, 0x1F7EB}, {0x1F90C, 0x1F9FF},
+        {0x1FA70, 0x1FAFF}, {0x20000, 0x2FFFD}, {0x30000, 0x3FFFD}
+    };
+
+    static {
+        Arrays.fill(BMP_WIDTHS, UNKNOWN);
+        for (int ch = 0; ch < 0x80; ch++) {
+            BMP_WIDTHS[ch] = (byte) computeWidth(ch);
+        }
+    }
+
+    /**
+     * Gets the number of columns a code point takes up. A tab takes up none
+     * here, as its width depends on the column; a {@link Meter} measures it.
+     *
+     * @param codePoint the code point
+     * @return 0, 1 or 2
+     */
+    public static int of(int codePoint) {
+        if (codePoint < BMP_WIDTHS.length) {
+            int width = BMP_WIDTHS[codePoint];
+            if (width == UNKNOWN) {
+                width = computeWidth(codePoint);
+                BMP_WIDTHS[codePoint] = (byte) width;
+            }
+            return width;
+        }
+        return computeWidth(codePoint);
+    }
+
+    /**
+     * Gets the number of columns a text takes up, ignoring escape sequences.
+     * New lines are not treated specially, except that tab stops are counted
+     * from the start of the line.
+     *
+     * @param text the text to measure
+     * @return the display width
+     */
+    public static int of(CharSequence text) {
+        Meter meter = new Meter();
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            width += meter.next(text.charAt(i));
+        }
+        return width;
+    }
+
+    /**
+     * Gets the display width of a string, reusing the result for strings that
+     * were measured before. Only short strings are cached.
+     *
+     * @param text the text to measure
+     * @return the display width
+     */
+    public static int cached(String text) {
+        if (text.length() > MAX_CACHED_LENGTH) {
+            return of(text);
+        }
+        Integer width = CACHE.get(text);
+        if (width == null) {
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            width = of(text);
+            CACHE.put(text, width);
+        }
+        return width;
+    }
+
+    /**
+     * Removes every escape sequence from a text.
+     *
+     * @param text the text to strip
+     * @return the text without escape sequences
+     */
+    public static String stripEscapes(CharSequence text) {
+        StringBuilder stripped = new StringBuilder(text.length());
+        Meter meter = new Meter();
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            meter.next(ch);
+            if (!meter.wasEscape()) {
+                stripped.append(ch);
+            }
+        }
+        return stripped.toString();
+    }
+
+    /**
+     * Works out the width of a code point from the Unicode tables.
+     *
+     * @param codePoint the code point
+     * @return 0, 1 or 2
+     */
+    private static int computeWidth(int codePoint) {
+        if (codePoint == 0 || codePoint < 0x20 || (codePoint >= 0x7F && codePoint < 0xA0)) {
+            return 0;
+        }
+        if (codePoint >= 0xFE00 && codePoint <= 0xFE0F) {
+            return 0;
+        }
+        int type = Character.getType(codePoint);
+        if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT) {
+            return 0;
+        }
+        if (codePoint >= 0x1160 && codePoint <= 0x11FF) {
+            return 0;
+        }
+        for (int[] range : WIDE_RANGES) {
+            if (codePoint < range[0]) {
+                break;
+            }
+            if (codePoint <= range[1]) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * A Meter measures text one character at a time. It keeps track of escape
+     * sequences, surrogate pairs, zero-width joiners and the column since the
+     * last line break across calls, so text can be measured as it streams in.
+     */
+    public static final class Meter {
+
+        private static final int TEXT = 0;
+        private static final int ESCAPE = 1;
+        private static final int CSI = 2;
+        private static final int OSC = 3;
+        private static final int OSC_ESCAPE = 4;
+
+        private int state = TEXT;
+        private char highSurrogate = 0;
+        private boolean joined = false;
+        private boolean escape = false;
+        private int column = 0;
+
+        /**
+         * Measures the next character.
+         *
+         * @param ch the character
+         * @return the number of columns the character adds
+         */
+        public int next(char ch) {
+            escape = state != TEXT || ch == ESC;
+            switch (state) {
+                case ESCAPE -> {
+                    state = ch == '[' ? CSI : ch == ']' ? OSC : TEXT;
+                    return 0;
+                }
+                case CSI -> {
+                    if (ch >= 0x40 && ch <= 0x7E) {
+                        state = TEXT;
+                    }
+                    return 0;
+                }
+                case OSC -> {
+                    if (ch == '\007') {
+                        state = TEXT;
+                    } else if (ch == ESC) {
+                        state = OSC_ESCAPE;
+                    }
+                    return 0;
+                }
+                case OSC_ESCAPE -> {
+                    state = ch == '\\' ? TEXT : OSC;
+                    return 0;
+                }
+                default -> {
+                    if (ch == ESC) {
+                        state = ESCAPE;
+                        return 0;
+                    }
+                }
+            }
+            if (Character.isHighSurrogate(ch)) {
+                highSurrogate = ch;
+                return 0;
+            }
+            int codePoint = ch;
+            if (Character.isLowSurrogate(ch) && highSurrogate != 0) {
+                codePoint = Character.toCodePoint(highSurrogate, ch);
+            }
+            highSurrogate = 0;
+            if (codePoint == ZERO_WIDTH_JOINER) {
+                joined = true;
+                return 0;
+            }
+            if (codePoint == '\n' || codePoint == '\r') {
+                column = 0;
+                return 0;
+            }
+            int width = codePoint == '\t' ? TAB_WIDTH - column % TAB_WIDTH : of(codePoint);
+            if (joined && width > 0) {
+                joined = false;
+                return 0;
+            }
+            column += width;
+            return width;
+        }
+
+        /**
+         * Checks whether the last character measured belonged to an escape
+         * sequence.
+         *
+         * @return true if the character was part of an escape sequence, false
+         * otherwise
+         */
+        public boolean wasEscape() {
+            return escape;
+        }
+
+        /**
+         * Forgets any partial escape sequence or surrogate pair.
+         */
+        public void reset() {
+            state = TEXT;
+            highSurrogate = 0;
+            joined = false;
+            escape = false;
+            column = 0;
+        }
+    }
+}
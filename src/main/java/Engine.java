@@ -1,16 +1,23 @@
 
+import java.io.BufferedReader;
 import java.io.Console;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import org.json.JSONObject;
 
@@ -28,14 +35,14 @@ public class Engine {
     private static boolean startCommandsOn = true;
     private static boolean incognitoChatMode = false;
     private static boolean usingChatCache = true;
-    private static boolean runningStartup = false;
+    private static volatile boolean runningStartup = false;
+    private static boolean startupCommandsFailed = false;
 
     private static final Console console = System.console();
     private static OpenAIPromptEngine openAIPromptEngine;
     private static TerminalPassthrough terminal;
 
     private static String commandPrefix = "!";
-    private static String lastCommandParsed = null;
     private static String applicationDirectory;
     private static final String GREEN_COLOR_BOLD = "\033[1;32m";
     private static final String RESET_COLOR = "\033[0m";
@@ -45,21 +52,48 @@ public class Engine {
     private static final String AI_CHAT_HEADER = GREEN_COLOR_BOLD + "AI Chat: " + RESET_COLOR;
 
     private static List<String> savedChatCache = new ArrayList<>();
-    private static Queue<String> commandsQueue = null;
     private static List<String> startupCommands;
     private static Map<String, String> shortcuts;
+    private static final ShortcutMacros SHORTCUTS = new ShortcutMacros();
     private static final File USER_DATA = new File(".USER_DATA.json");
     private static final File USER_COMMAND_HISTORY = new File(".USER_COMMAND_HISTORY.txt");
+    private static final UserDataStore USER_DATA_STORE = createUserDataStore();
+    private static final HistoryStore USER_HISTORY = new HistoryStore(USER_COMMAND_HISTORY.toPath(), Path.of(".USER_COMMAND_HISTORY.idx"));
+    private static final int HISTORY_PAGE = 100;
+    private static final HistoryWriter USER_HISTORY_WRITER = new HistoryWriter(USER_COMMAND_HISTORY.toPath(), 250);
+    private static final CommandTree COMMANDS = buildCommandTree();
+    private static final StartupPipeline STARTUP = new StartupPipeline(4);
+    private static final int STARTUP_COMMAND_THREADS = 4;
+    private static volatile CompletableFuture<Void> apiKeyCheck;
+    private static volatile boolean apiKeyValid = false;
+    private static BatchRunner batch;
+    private static final JobTable JOBS = new JobTable(64 * 1024, 20);
+    private static final long JOB_WATCH_INTERVAL = 250;
 
     /**
-     * Main method to start the application.
+     * Main method to start the application. With "--batch FILE", or when
+     * input is not a terminal, commands are read from the file or from
+     * standard input and run without prompts; "--batch -" reads standard
+     * input.
      *
      * @param args Command line arguments
      */
     public static void main(String[] args) {
-        System.out.println(TextEngine.setWidth());
-        TextEngine.clearScreen();
-        TextEngine.printWithDelays("Loading...", false, true);
+        String batchSource = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--batch")) {
+                batchSource = i + 1 < args.length ? args[++i] : "-";
+            } else {
+                System.err.println("Unknown argument: " + args[i]);
+                System.err.println("Usage: Engine [--batch FILE|-]");
+                System.exit(2);
+            }
+        }
+        if (batchSource == null && console == null) {
+            batchSource = "-";
+        }
+        boolean interactive = batchSource == null;
+        TextEngine.setInteractive(interactive);
         applicationDirectory = System.getProperty("user.dir");
         if (System.getProperty("os.name").toLowerCase().contains("win")) {
             applicationDirectory = applicationDirectory.substring(applicationDirectory.indexOf(":") + 1);
@@ -67,41 +101,141 @@ public class Engine {
         startupCommands = new ArrayList<>();
         shortcuts = new HashMap<>();
         terminal = new TerminalPassthrough();
+        terminal.setCaptureOutput(!interactive);
+        terminal.setInheritInput(interactive);
         openAIPromptEngine = new OpenAIPromptEngine();
-        if (!USER_DATA.exists()) {
-            createNewUSER_DATAFile();
-        } else {
-            loadUserData();
-        }
-        if (!USER_COMMAND_HISTORY.exists()) {
-            createNewUSER_HISTORYfile();
-        }
-        if (openAIPromptEngine.getAPIKey() == null || openAIPromptEngine.getAPIKey().isEmpty()) {
-            System.out.println("OpenAI API key not found.");
-            defaultTextEntryOnAI = false;
-        } else {
-            if (openAIPromptEngine.testAPIKey(openAIPromptEngine.getAPIKey())) {
-                defaultTextEntryOnAI = true;
-                TextEngine.printWithDelays(AI_CHAT_HEADER + "Successfully Connected to OpenAI servers!", false, true);
+        STARTUP.phase("screen", () -> {
+            if (interactive) {
+                System.out.println(TextEngine.setWidth());
+                TextEngine.clearScreen();
+                TextEngine.printNoDelay("Loading...", false, true);
+            }
+        });
+        STARTUP.phase("user data", () -> {
+            if (!USER_DATA.exists()) {
+                createNewUSER_DATAFile();
             } else {
-                TextEngine.printWithDelays(AI_CHAT_HEADER + "An error occurred while connecting to OpenAI servers.", false, true);
-                TextEngine.printWithDelays(AI_CHAT_HEADER + "Please check your internet connection and try again later.", false, true);
+                loadUserData();
+            }
+            if (openAIPromptEngine.getAPIKey() == null || openAIPromptEngine.getAPIKey().isEmpty()) {
+                System.out.println("OpenAI API key not found.");
                 defaultTextEntryOnAI = false;
             }
-        }
-        if (startupCommands != null && !startupCommands.isEmpty() && startCommandsOn) {
-            runningStartup = true;
-            System.out.println("Running startup commands...");
-            for (String command : startupCommands) {
-                commandParser(commandPrefix + command);
+        }, "screen");
+        STARTUP.phase("history file", () -> {
+            if (!USER_COMMAND_HISTORY.exists()) {
+                createNewUSER_HISTORYfile();
+            }
+        }, "screen");
+        STARTUP.background("api key", Engine::checkAPIKey, "user data");
+        STARTUP.phase("startup commands", () -> {
+            if (startupCommands != null && !startupCommands.isEmpty() && startCommandsOn) {
+                startupCommandsFailed = !runStartupCommands();
             }
-            runningStartup = false;
+        }, "user data", "history file");
+        STARTUP.run();
+        apiKeyCheck = STARTUP.completion("api key");
+        if (!interactive) {
+            System.exit(runBatch(batchSource));
         }
         TextEngine.printNoDelay("DevToolsTerminal - Caden Finley (c) 2025", false, true);
         TextEngine.printNoDelay("Created 2025 @ " + PURPLE_COLOR_BOLD + "Abilene Chrsitian University" + RESET_COLOR, false, true);
         mainProcessLoop();
     }
 
+    /**
+     * Checks the OpenAI API key loaded from the user data. It runs in the
+     * background during startup; the result is reported on first AI use.
+     */
+    private static void checkAPIKey() {
+        String apiKey = openAIPromptEngine.getAPIKey();
+        if (apiKey == null || apiKey.isEmpty()) {
+            apiKeyValid = false;
+            return;
+        }
+        apiKeyValid = openAIPromptEngine.testAPIKey(apiKey);
+    }
+
+    /**
+     * Waits for the API key check started at startup and reports its result
+     * the first time AI is used.
+     *
+     * @return false if the key was found to be invalid just now, true otherwise
+     */
+    private static boolean awaitAPIKeyCheck() {
+        CompletableFuture<Void> check = apiKeyCheck;
+        if (check == null) {
+            return true;
+        }
+        apiKeyCheck = null;
+        try {
+            check.join();
+        } catch (CompletionException | CancellationException e) {
+            apiKeyValid = false;
+        }
+        if (openAIPromptEngine.getAPIKey() == null || openAIPromptEngine.getAPIKey().isEmpty()) {
+            return true;
+        }
+        if (!apiKeyValid) {
+            TextEngine.printWithDelays(AI_CHAT_HEADER + "An error occurred while connecting to OpenAI servers.", false, true);
+            TextEngine.printWithDelays(AI_CHAT_HEADER + "Please check your internet connection and try again later.", false, true);
+            defaultTextEntryOnAI = false;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the commands of a batch through the same parser as typed input and
+     * saves the user data and history once they are done. A failed startup
+     * command fails the batch as well.
+     *
+     * @param source The file to read commands from, or "-" for standard input
+     * @return The exit status of the batch
+     */
+    private static int runBatch(String source) {
+        batch = new BatchRunner(Engine::commandParser, System.err);
+        int status;
+        try (BufferedReader input = new BufferedReader(source.equals("-")
+                ? new InputStreamReader(System.in)
+                : new FileReader(source))) {
+            status = batch.run(input).exitStatus();
+            if (startupCommandsFailed) {
+                status = Math.max(status, 1);
+            }
+            JOBS.waitForAll();
+            printJobNotices(System.err);
+        } catch (IOException e) {
+            System.err.println("An error occurred while reading the batch input: " + e.getMessage());
+            status = 2;
+        }
+        try {
+            USER_DATA_STORE.save();
+        } catch (IOException e) {
+            TextEngine.printWithDelays("An error occurred while writing to the user data file.", false, true);
+            status = Math.max(status, 1);
+        }
+        flushUserHistory();
+        stopFlightRecording();
+        terminal.close();
+        return status;
+    }
+
+    /**
+     * Stops a flight recording started with 'user jfr start' and writes it to
+     * a file, so it is not lost when the application exits.
+     */
+    private static void stopFlightRecording() {
+        try {
+            Path file = FlightEvents.stop(null);
+            if (file != null) {
+                TextEngine.printWithDelays("Flight recording written to " + file, false, true);
+            }
+        } catch (IOException e) {
+            TextEngine.printWithDelays("An error occurred while writing the flight recording: " + e.getMessage(), false, true);
+        }
+    }
+
     /**
      * Main process loop to handle user input and command parsing.
      */
@@ -110,12 +244,17 @@ public class Engine {
             if (TESTING) {
                 System.out.println(RED_COLOR_BOLD + "DEV MODE" + RESET_COLOR);
             }
+            printJobNotices(System.out);
             if (defaultTextEntryOnAI) {
                 TextEngine.printNoDelay(MAIN_MENU_HEADER, textBuffer, false);
             } else {
                 TextEngine.printNoDelay(terminal.returnCurrentTerminalPosition(), textBuffer, false);
             }
             String command = console.readLine();
+            if (command == null) {
+                exit();
+            }
+            TextEngine.resumeTyping();
             commandParser(command);
         }
     }
@@ -127,6 +266,7 @@ public class Engine {
         try {
             System.out.println("User data file not found. Creating new file...");
             USER_DATA.createNewFile();
+            USER_DATA_STORE.clear();
             startupCommands.add("terminal cd /");
             writeUserData();
         } catch (IOException e) {
@@ -151,7 +291,7 @@ public class Engine {
      */
     private static void loadUserData() {
         try {
-            JSONObject userData = new JSONObject(Files.readString(USER_DATA.toPath()));
+            JSONObject userData = USER_DATA_STORE.load();
             openAIPromptEngine.setAPIKey(userData.getString("OpenAI_API_KEY"));
             savedChatCache = new ArrayList<>();
             userData.getJSONArray("Chat_Cache").forEach(item -> savedChatCache.add((String) item));
@@ -162,6 +302,7 @@ public class Engine {
             shotcutsEnabled = userData.getBoolean("Shortcuts_Enabled");
             shortcuts = new HashMap<>();
             userData.getJSONObject("Shortcuts").toMap().forEach((key, value) -> shortcuts.put(key, (String) value));
+            SHORTCUTS.load(shortcuts).forEach((name, error) -> System.out.println("Shortcut '" + name + "' cannot be run: " + error));
             textBuffer = userData.getBoolean("Text_Buffer");
             defaultTextEntryOnAI = userData.getBoolean("Text_Entry");
             commandPrefix = userData.getString("Command_Prefix");
@@ -170,23 +311,33 @@ public class Engine {
         }
     }
 
+    /**
+     * Creates the store that saves the user data file, with one section per
+     * top-level key.
+     *
+     * @return The user data store
+     */
+    private static UserDataStore createUserDataStore() {
+        UserDataStore store = new UserDataStore(USER_DATA.toPath(), 500);
+        store.section("OpenAI_API_KEY", () -> openAIPromptEngine.getAPIKey() == null ? "" : openAIPromptEngine.getAPIKey());
+        store.section("Chat_Cache", () -> savedChatCache);
+        store.section("Startup_Commands", () -> startupCommands);
+        store.section("Text_Speed", TextEngine::getSpeedSetting);
+        store.section("Shortcuts_Enabled", () -> shotcutsEnabled);
+        store.section("Shortcuts", () -> shortcuts);
+        store.section("Text_Buffer", () -> textBuffer);
+        store.section("Text_Entry", () -> defaultTextEntryOnAI);
+        store.section("Command_Prefix", () -> commandPrefix);
+        return store;
+    }
+
     /**
      * Writes user data to the user data file.
      */
     private static void writeUserData() {
-        try (FileWriter file = new FileWriter(USER_DATA)) {
-            JSONObject userData = new JSONObject();
-            userData.put("OpenAI_API_KEY", openAIPromptEngine.getAPIKey());
-            userData.put("Chat_Cache", savedChatCache);
-            userData.put("Startup_Commands", startupCommands);
-            userData.put("Text_Speed", TextEngine.getSpeedSetting());
-            userData.put("Shortcuts_Enabled", shotcutsEnabled);
-            userData.put("Shortcuts", shortcuts);
-            userData.put("Text_Buffer", textBuffer);
-            userData.put("Text_Entry", defaultTextEntryOnAI);
-            userData.put("Command_Prefix", commandPrefix);
-            file.write(userData.toString());
-            file.flush();
+        try {
+            USER_DATA_STORE.updateAll();
+            USER_DATA_STORE.save();
         } catch (IOException e) {
             TextEngine.printWithDelays("An error occurred while writing to the user data file.", false, true);
         }
@@ -195,9 +346,8 @@ public class Engine {
     /**
      * Changes the directory to the application directory.
      */
-    private static void goToApplicationDirectory() {
-        commandProcesser("terminal cd /");
-        commandProcesser("terminal cd " + applicationDirectory);
+    private static boolean goToApplicationDirectory() {
+        return commandProcesser("terminal cd /") && commandProcesser("terminal cd " + applicationDirectory);
     }
 
     /**
@@ -218,847 +368,1010 @@ public class Engine {
         }
     }
 
-    /**
-     * Splits a command string into an array of commands.
-     *
-     * @param command The command string to split
-     * @return An array of commands
-     */
-    private static String[] commandSplicer(String command) {
-        int numberOfWordsInSeparates = 0;
-        String[] commands = command.split(" ");
-        for (int i = 0; i < commands.length; i++) {
-            if (commands[i].startsWith("'") || commands[i].startsWith("(")) {
-                char startChar = commands[i].charAt(0);
-                char endChar = startChar == '(' ? ')' : startChar == '[' ? ']' : '\'';
-                commands[i] = commands[i].substring(1);
-                StringBuilder combined = new StringBuilder(commands[i]);
-                while (!commands[i].endsWith(String.valueOf(endChar))) {
-                    i++;
-                    numberOfWordsInSeparates++;
-                    if (i >= commands.length) {
-                        break;
-                    }
-                    combined.append(" ").append(commands[i]);
-                }
-                combined.deleteCharAt(combined.length() - 1);
-                commands[i] = combined.toString();
-            }
-            commands = Arrays.stream(commands).filter(s -> !s.equals("'") && !s.equals("(") && !s.equals(")")).toArray(String[]::new);
-        }
-        int index = commands.length - 2;
-        String bufferCommand = commands[commands.length - 1];
-        for (int i = 1; i < numberOfWordsInSeparates; i++) {
-            commands = Arrays.copyOf(commands, index);
-            index--;
-        }
-        commands[commands.length - 1] = bufferCommand;
-        return commands;
-    }
-
     /**
      * Parses and processes a command string.
      *
      * @param command The command string to parse
+     * @return false if the command could not be run, true otherwise
      */
-    private static void commandParser(String command) {
+    private static boolean commandParser(String command) {
         if (command == null || command.isEmpty()) {
             TextEngine.printWithDelays("Invalid input. Please try again.", false, true);
-            return;
+            return false;
         }
-        if (!runningStartup) {
-            addUserInputToHistory(command);
-        }
-        if (command.startsWith(commandPrefix + "")) {
-            commandProcesser(command.substring(1));
-            return;
-        }
-        if (defaultTextEntryOnAI) {
-            chatProcess(command);
-        } else {
-            sendTerminalCommand(command);
+        long start = System.nanoTime();
+        Metrics.count("input lines");
+        try {
+            if (!runningStartup) {
+                addUserInputToHistory(command);
+            }
+            if (command.startsWith(commandPrefix + "")) {
+                return commandProcesser(command.substring(1));
+            }
+            if (defaultTextEntryOnAI) {
+                return chatProcess(command);
+            }
+            return sendTerminalCommand(command);
+        } finally {
+            Metrics.recordSince("input", start);
         }
     }
 
     /**
-     * Adds user input to the user input history file.
+     * Queues user input to be added to the user input history file.
      *
      * @param input The user input to add
      */
     private static void addUserInputToHistory(String input) {
-        try (FileWriter file = new FileWriter(USER_COMMAND_HISTORY, true)) {
-            file.write(TimeEngine.timeStamp() + " " + input + "\n");
-            file.flush();
+        USER_HISTORY_WRITER.append(TimeEngine.timeStamp() + " " + input);
+    }
+
+    /**
+     * Writes the queued user input history to the user input history file.
+     */
+    private static void flushUserHistory() {
+        try {
+            USER_HISTORY_WRITER.flush();
         } catch (IOException e) {
             TextEngine.printWithDelays("An error occurred while writing to the user input history file.", false, true);
         }
     }
 
     /**
-     * Processes a shortcut command.
+     * Processes a shortcut command. The commands of the shortcut were split
+     * into tokens when it was defined, so they are dispatched as they are.
      *
-     * @param command The shortcut command to process
+     * @param shortcut The name of the shortcut to run, or null if none was
+     * given
+     * @param arguments The arguments to fill into the shortcut
+     * @return false if the shortcut or one of its commands could not be run,
+     * true otherwise
      */
-    private static void shortcutProcesser(String command) {
+    private static boolean shortcutProcesser(String shortcut, List<String> arguments) {
         if (!shotcutsEnabled) {
             System.out.println("Shortcuts are disabled.");
-            return;
+            return false;
         }
-        if (shortcuts != null && !shortcuts.isEmpty()) {
-            command = command.substring(2);
-            if (command.isBlank() || command.isEmpty() || command.equals(" ")) {
-                System.out.println("No shortcut given.");
-                return;
-            }
-            String strippedCommand = command.trim();
-            if (shortcuts.containsKey(strippedCommand)) {
-                commandProcesser(shortcuts.get(strippedCommand));
-            } else {
-                System.out.println("No command for given shortcut.");
-            }
-        } else {
+        if (shortcuts == null || shortcuts.isEmpty()) {
             System.out.println("No shortcuts.");
+            return false;
+        }
+        if (shortcut == null || shortcut.isBlank()) {
+            System.out.println("No shortcut given.");
+            return false;
+        }
+        String strippedCommand = shortcut.trim();
+        ShortcutMacros.Macro macro = SHORTCUTS.get(strippedCommand);
+        if (macro == null) {
+            String error = SHORTCUTS.getError(strippedCommand);
+            System.out.println(error == null ? "No command for given shortcut." : "Shortcut cannot be run: " + error);
+            return false;
+        }
+        List<ShortcutMacros.Command> commands;
+        long start = System.nanoTime();
+        try {
+            commands = macro.expand(arguments);
+        } catch (ShortcutMacros.MacroException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } finally {
+            Metrics.recordSince("shortcut expand", start);
+        }
+        for (ShortcutMacros.Command command : commands) {
+            if (!dispatchCommand(command.line(), command.tokens())) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
      * Processes a command string.
      *
      * @param command The command string to process
+     * @return false if the command could not be run, true otherwise
+     */
+    private static boolean commandProcesser(String command) {
+        List<CommandLexer.Token> tokens = null;
+        FlightEvents.CommandParse event = new FlightEvents.CommandParse();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            tokens = CommandLexer.tokenize(command, true);
+        } finally {
+            Metrics.recordSince("parse", start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = command;
+                event.tokens = tokens == null ? 0 : tokens.size();
+                event.valid = tokens != null;
+                event.commit();
+            }
+        }
+        return dispatchCommand(command, tokens);
+    }
+
+    /**
+     * Runs a command that was already split into tokens.
+     *
+     * @param command The command string
+     * @param tokens The tokens of the command
+     * @return false if the command could not be run, true otherwise
      */
-    private static void commandProcesser(String command) {
-        commandsQueue = new LinkedList<>();
-        commandsQueue.addAll(Arrays.asList(commandSplicer(command)));
+    private static boolean dispatchCommand(String command, List<CommandLexer.Token> tokens) {
         if (TESTING) {
-            System.out.println(commandsQueue);
+            System.out.println(tokens.stream().map(CommandLexer.Token::text).toList());
         }
-        if (commandsQueue.isEmpty()) {
+        if (tokens.isEmpty()) {
             TextEngine.printWithDelays("Unknown command. Please try again.", false, true);
-        }
-        getNextCommand();
-        switch (lastCommandParsed) {
-            case "ss" -> {
-                shortcutProcesser(command);
-            }
-            case "approot" -> {
-                goToApplicationDirectory();
-            }
-            case "clear" -> {
-                System.out.println("Clearing screen and terminal cache...");
-                TextEngine.clearScreen();
-                terminal.clearTerminalCache();
-            }
-            case "ai" -> {
-                aiSettingsCommands();
-            }
-            case "user" -> {
-                userSettingsCommands();
-            }
-            case "aihelp" -> {
-                if (!defaultTextEntryOnAI && openAIPromptEngine.getAPIKey() != null && !openAIPromptEngine.getAPIKey().isEmpty()) {
-                    String message = ("I am encountering these errors in the " + terminal.getTerminalName() + " and would like some help solving these issues. User input " + terminal.returnMostRecentUserInput() + " Terminal output " + terminal.returnMostRecentTerminalOutput());
-                    if (TESTING) {
-                        System.out.println(message);
-                    }
-                    TextEngine.printWithDelays(openAIPromptEngine.buildPromptAndReturnResponce(message, false), false, true);
-                    System.out.println();
-                    return;
+            return false;
+        }
+        FlightEvents.CommandDispatch event = new FlightEvents.CommandDispatch();
+        event.begin();
+        CommandTree.Result result = COMMANDS.dispatch(command, tokens);
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.path = result.node().getPath();
+            event.status = result.status().name();
+            event.commit();
+        }
+        Metrics.histogram("dispatch").record(result.resolveNanos());
+        if (TESTING) {
+            System.out.println("Processed Command: " + result.node().getPath());
+        }
+        switch (result.status()) {
+            case OK -> {
+                Metrics.histogram("command " + result.node().getPath()).record(result.runNanos());
+                return true;
+            }
+            case FAILED -> {
+                Metrics.histogram("command " + result.node().getPath()).record(result.runNanos());
+                Metrics.count("failed commands");
+                if (result.token() != null) {
+                    TextEngine.printWithDelays(result.token(), false, true);
                 }
-                commandProcesser("help");
-                return;
-            }
-            case "terminal" -> {
-                String strippedCommand;
-                try {
-                    strippedCommand = command.substring(9);
-                    sendTerminalCommand(strippedCommand);
-                } catch (StringIndexOutOfBoundsException e) {
-                    defaultTextEntryOnAI = false;
-                    return;
+                return false;
+            }
+            case UNKNOWN_COMMAND -> {
+                Metrics.count("unknown commands");
+                List<String> suggestions = COMMANDS.complete(List.of(tokens.get(0).text()));
+                if (!suggestions.isEmpty()) {
+                    TextEngine.printWithDelays("Unknown command. Did you mean: " + String.join(", ", suggestions) + "?", false, true);
+                    return false;
                 }
+                TextEngine.printWithDelays("Unknown command. Please try again. Type 'help' or '.help' if you need help", false, true);
             }
-            case "exit" ->
-                exit();
-            case "help" -> {
-                TextEngine.printWithDelays("Commands:", false, true);
-                TextEngine.printWithDelays("Command Prefix: " + commandPrefix, false, true);
-                TextEngine.printWithDelays("ss [ARGS]", false, true);
-                TextEngine.printWithDelays("approot", false, true);
-                TextEngine.printWithDelays("ai o[ARGS]", false, true);
-                TextEngine.printWithDelays("terminal o[ARGS]", false, true);
-                TextEngine.printWithDelays("user", false, true);
-                TextEngine.printWithDelays("exit", false, true);
-                TextEngine.printWithDelays("clear", false, true);
-                TextEngine.printWithDelays("help", false, true);
-                TextEngine.printWithDelays("aihelp", false, true);
+            default -> {
+                Metrics.count("unknown commands");
+                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
             }
-            default ->
-                TextEngine.printWithDelays("Unknown command. Please try again. Type 'help' or '.help' if you need help", false, true);
         }
+        return false;
     }
 
     /**
-     * Sends a command to the terminal.
+     * Builds the tree of every command the application understands.
      *
-     * @param command The command to send
+     * @return The command tree
      */
-    private static void sendTerminalCommand(String command) {
-        if (TESTING) {
-            System.out.println("Sending Command: " + command);
-        }
-        Thread commandThread = terminal.executeCommand(command, true);
-        try {
-            commandThread.join();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("Thread Interrupted");
-        }
-    }
-
-    /**
-     * Processes AI settings commands.
-     */
-    private static void aiSettingsCommands() {
-        getNextCommand();
-        if (lastCommandParsed == null) {
+    private static CommandTree buildCommandTree() {
+        CommandTree tree = new CommandTree();
+        tree.command("ss").usage("[ARGS]").handler(0, Integer.MAX_VALUE, context -> {
+            List<String> arguments = context.arguments();
+            if (!shortcutProcesser(context.argument(0), arguments.isEmpty() ? arguments : arguments.subList(1, arguments.size()))) {
+                throw new CommandTree.CommandException();
+            }
+        });
+        tree.command("approot").handler(context -> {
+            if (!goToApplicationDirectory()) {
+                throw new CommandTree.CommandException();
+            }
+        });
+        tree.command("ai").usage("o[ARGS]").handler(context -> {
             defaultTextEntryOnAI = true;
             showChatHistory();
-            return;
-        }
-        if (lastCommandParsed.equals("log")) {
-            String lastChatSent = openAIPromptEngine.getLastPromptUsed();
-            String lastChatRecieved = openAIPromptEngine.getLastResponseReceived();
-            File fileName = new File("OpenAPI_Chat_" + TimeEngine.timeStamp() + ".txt");
-            try {
-                fileName.createNewFile();
-            } catch (IOException e) {
-                TextEngine.printWithDelays("An error occurred while creating the chat file.", false, true);
+        });
+        tree.command("terminal").usage("o[ARGS]").handler(0, Integer.MAX_VALUE, context -> {
+            if (context.argumentCount() == 0) {
+                defaultTextEntryOnAI = false;
+                return;
             }
-            try (FileWriter file = new FileWriter(fileName)) {
-                file.write("Chat Sent: " + lastChatSent + "\n");
-                file.write("Chat Recieved: " + lastChatRecieved + "\n");
-                file.flush();
-                TextEngine.printWithDelays("Chat log saved to " + fileName.getName(), false, true);
-            } catch (IOException e) {
-                TextEngine.printWithDelays("An error occurred while writing to the chat file.", false, true);
+            if (!sendTerminalCommand(context.rawArguments())) {
+                throw new CommandTree.CommandException();
             }
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
+        });
+        tree.command("terminal bg").usage("[ARGS]").handler(1, Integer.MAX_VALUE, context -> {
+            if (!startJob(context.rawArguments())) {
+                throw new CommandTree.CommandException();
             }
-            if (lastCommandParsed.equals("extract")) {
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    extractCodeSnippet(fileName, "extracted_code");
-                    fileName.delete();
-                    return;
-                }
-                extractCodeSnippet(fileName, lastCommandParsed);
-                fileName.delete();
+        });
+        tree.command("jobs").handler(context -> {
+            List<JobTable.Job> jobs = JOBS.list();
+            if (jobs.isEmpty()) {
+                System.out.println("No jobs.");
                 return;
             }
-            System.out.println("Unknown command. No given ARGS. Try 'help'");
-            return;
-        }
-        if (lastCommandParsed.equals("apikey")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
+            JOBS.drainFinished();
+            jobs.forEach(System.out::println);
+        });
+        tree.command("jobs watch").handler(context -> watchJobs());
+        tree.command("fg").usage("o[ARGS]").handler(0, 1, context -> {
+            JobTable.Job job = findJob(context.argument(0));
+            if (job == null) {
+                throw new CommandTree.CommandException();
+            }
+            JOBS.foreground(job, System.out);
+            System.out.println(job);
+        });
+        tree.command("wait").usage("o[ARGS]").handler(0, 1, context -> {
+            if (context.argumentCount() == 0) {
+                JOBS.waitForAll().forEach(System.out::println);
                 return;
             }
-            if (lastCommandParsed.equals("set")) {
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                    return;
+            JobTable.Job job = findJob(context.argument(0));
+            if (job == null) {
+                throw new CommandTree.CommandException();
+            }
+            JOBS.waitFor(job);
+            System.out.println(job);
+        });
+        tree.command("kill").usage("[ARGS]").handler(1, 1, context -> {
+            JobTable.Job job = findJob(context.argument(0));
+            if (job == null) {
+                throw new CommandTree.CommandException();
+            }
+            if (!JOBS.kill(job)) {
+                throw new CommandTree.CommandException("Job " + job.getId() + " is not running.");
+            }
+        });
+        tree.command("user");
+        tree.command("exit").handler(context -> {
+            if (batch != null) {
+                batch.stop();
+            } else {
+                exit();
+            }
+        });
+        tree.command("clear").handler(context -> {
+            System.out.println("Clearing screen and terminal cache...");
+            TextEngine.clearScreen();
+            terminal.clearTerminalCache();
+        });
+        tree.command("help").handler(context -> {
+            TextEngine.printWithDelays("Commands:", false, true);
+            TextEngine.printWithDelays("Command Prefix: " + commandPrefix, false, true);
+            for (CommandTree.Node command : tree.root().getChildren()) {
+                String usage = command.getUsage();
+                TextEngine.printWithDelays(usage.isEmpty() ? command.getName() : command.getName() + " " + usage, false, true);
+            }
+        });
+        tree.command("aihelp").handler(context -> {
+            if (!defaultTextEntryOnAI && openAIPromptEngine.getAPIKey() != null && !openAIPromptEngine.getAPIKey().isEmpty()
+                    && awaitAPIKeyCheck()) {
+                String message = ("I am encountering these errors in the " + terminal.getTerminalName() + " and would like some help solving these issues. User input " + terminal.returnMostRecentUserInput() + " Terminal output " + terminal.returnMostRecentTerminalOutput());
+                if (TESTING) {
+                    System.out.println(message);
                 }
-                openAIPromptEngine.setAPIKey(lastCommandParsed);
-                if (openAIPromptEngine.testAPIKey(openAIPromptEngine.getAPIKey())) {
-                    System.out.println("OpenAI API key set.");
-                    return;
-                } else {
-                    TextEngine.printWithDelays("Invalid API key. AI services have been disabled", false, true);
-                    return;
+                String response = openAIPromptEngine.buildPromptAndStreamResponse(message, false, TextEngine::printChunk);
+                TextEngine.endChunks(true);
+                System.out.println();
+                if (response == null) {
+                    throw new CommandTree.CommandException();
                 }
-            }
-            if (lastCommandParsed.equals("get")) {
-                System.out.println(openAIPromptEngine.getAPIKey());
                 return;
             }
-            System.out.println("Unknown command. No given ARGS. Try 'help'");
-        }
-        if (lastCommandParsed == null) {
+            commandProcesser("help");
+        });
+        addAISettingsCommands(tree);
+        addStartupCommands(tree);
+        addAIChatCommands(tree);
+        addTextCommands(tree);
+        addShortcutCommands(tree);
+        addUserDataCommands(tree);
+        addHelpCommands(tree, tree.find("ai"));
+        addHelpCommands(tree, tree.find("user"));
+        return tree;
+    }
+
+    /**
+     * Adds a help command to a command and each of its sub-commands that has
+     * sub-commands of its own. The help text is read from the tree.
+     *
+     * @param tree The command tree
+     * @param node The command to add help to
+     */
+    private static void addHelpCommands(CommandTree tree, CommandTree.Node node) {
+        if (node.getChildren().isEmpty() || node.getName().equals("help")) {
             return;
         }
-        if (lastCommandParsed.equals("chat")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            TextEngine.printWithDelays(TimeEngine.timeStamp() + " Sent message to GPT: " + lastCommandParsed, false, true);
-            chatProcess(lastCommandParsed);
-            return;
+        for (CommandTree.Node child : List.copyOf(node.getChildren())) {
+            addHelpCommands(tree, child);
         }
-        if (lastCommandParsed.equals("get")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
+        node.command("help").hidden().handler(context -> {
+            System.out.println("Commands:");
+            for (String line : tree.help(node)) {
+                System.out.println(line);
             }
-            System.out.println(openAIPromptEngine.getResponseData(lastCommandParsed));
-            return;
-        }
-        if (lastCommandParsed.equals("dump")) {
+        });
+    }
+
+    /**
+     * Adds the AI settings commands.
+     *
+     * @param tree The command tree
+     */
+    private static void addAISettingsCommands(CommandTree tree) {
+        tree.command("ai log").handler(context -> writeChatLog());
+        tree.command("ai log extract").usage("o[ARGS]").handler(0, 1, context -> {
+            File fileName = writeChatLog();
+            String name = context.argument(0);
+            extractCodeSnippet(fileName, name == null ? "extracted_code" : name);
+            fileName.delete();
+        });
+        tree.command("ai apikey set").usage("[ARGS]").handler(1, 1, context -> {
+            openAIPromptEngine.setAPIKey(context.argument(0));
+            USER_DATA_STORE.update("OpenAI_API_KEY");
+            apiKeyCheck = null;
+            if (!openAIPromptEngine.testAPIKey(openAIPromptEngine.getAPIKey())) {
+                throw new CommandTree.CommandException("Invalid API key. AI services have been disabled");
+            }
+            System.out.println("OpenAI API key set.");
+        });
+        tree.command("ai apikey get").handler(context -> System.out.println(openAIPromptEngine.getAPIKey()));
+        tree.command("ai chat").usage("[ARGS]").handler(1, Integer.MAX_VALUE, context -> {
+            String message = String.join(" ", context.arguments());
+            TextEngine.printWithDelays(TimeEngine.timeStamp() + " Sent message to GPT: " + message, false, true);
+            if (!chatProcess(message)) {
+                throw new CommandTree.CommandException();
+            }
+        });
+        tree.command("ai get").usage("[ARGS]").handler(1, 1, context -> System.out.println(openAIPromptEngine.getResponseData(context.argument(0))));
+        tree.command("ai dump").handler(context -> {
             System.out.println(openAIPromptEngine.getResponseData("all"));
             System.out.println(openAIPromptEngine.getLastPromptUsed());
-            return;
-        }
-        if (lastCommandParsed.equals("help")) {
-            System.out.println("Commands: ");
-            System.out.println("log: extract o[ARGS]");
-            System.out.println("apikey: set [ARGS], get");
-            System.out.println("chat: [ARGS]");
-            System.out.println("get: [ARGS]");
-            System.out.println("dump");
-            return;
-        }
-        TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
+        });
     }
 
     /**
-     * Processes user settings commands.
+     * Writes the last prompt and response to a chat log file.
+     *
+     * @return The chat log file
      */
-    private static void userSettingsCommands() {
-        getNextCommand();
-        if (lastCommandParsed == null) {
-            TextEngine.printWithDelays("Unknown command. No given ARGS.", false, true);
-            return;
-        }
-        if (lastCommandParsed.equals("startup")) {
-            startupCommands();
-            return;
-        }
-        if (lastCommandParsed.equals("chat")) {
-            aiChatCommands();
-            return;
-        }
-        if (lastCommandParsed.equals("text")) {
-            textCommands();
-            return;
-        }
-        if (lastCommandParsed.equals("shortcut")) {
-            shortcutCommands();
-            return;
-        }
-        if (lastCommandParsed.equals("testing")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            if (lastCommandParsed.equals("enable")) {
-                TESTING = true;
-                TextEngine.printWithDelays("Testing mode enabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
-            }
-            if (lastCommandParsed.equals("disable")) {
-                TESTING = false;
-                TextEngine.printWithDelays("Testing mode disabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
-            }
-            System.out.println("Unknown command. No given ARGS. Try 'help'");
-            return;
-        }
-        if (lastCommandParsed.equals("data")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            if (lastCommandParsed.equals("get")) {
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                    return;
-                }
-                if (lastCommandParsed.equals("userdata")) {
-                    System.out.println(readAndReturnUserDataFile());
-                    return;
-                }
-                if (lastCommandParsed.equals("userhistory")) {
-                    try {
-                        System.out.println(Files.readString(USER_COMMAND_HISTORY.toPath()));
-                        return;
-                    } catch (IOException e) {
-                        TextEngine.printWithDelays("An error occurred while reading the user history file.", false, true);
-                        return;
-                    }
-                }
-                if (lastCommandParsed.equals("all")) {
-                    System.out.println(readAndReturnUserDataFile());
-                    try {
-                        System.out.println(Files.readString(USER_COMMAND_HISTORY.toPath()));
-                    } catch (IOException e) {
-                        TextEngine.printWithDelays("An error occurred while reading the user history file.", false, true);
-                        return;
-                    }
-                    return;
-                }
-            }
-            if (lastCommandParsed.equals("clear")) {
-                try {
-                    Files.delete(USER_DATA.toPath());
-                    createNewUSER_DATAFile();
-                    TextEngine.printWithDelays("User data file cleared.", false, true);
-                    Files.delete(USER_COMMAND_HISTORY.toPath());
-                    createNewUSER_HISTORYfile();
-                    TextEngine.printWithDelays("User history file cleared.", false, true);
-                    return;
-                } catch (IOException e) {
-                    TextEngine.printWithDelays("An error occurred while clearing the user data file.", false, true);
-                    return;
-                }
-            }
-            TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-            return;
+    private static File writeChatLog() {
+        String lastChatSent = openAIPromptEngine.getLastPromptUsed();
+        String lastChatRecieved = openAIPromptEngine.getLastResponseReceived();
+        File fileName = new File("OpenAPI_Chat_" + TimeEngine.timeStamp() + ".txt");
+        try {
+            fileName.createNewFile();
+        } catch (IOException e) {
+            TextEngine.printWithDelays("An error occurred while creating the chat file.", false, true);
         }
-        if (lastCommandParsed.equals("help")) {
-            System.out.println("Commands: ");
-            System.out.println("startup: add [ARGS], remove [ARGS], clear, enable, disable, list, runall");
-            System.out.println("chat: history [ARGS], cache [ARGS]");
-            System.out.println("text: textspeed [ARGS], textbuffer [ARGS], defaultentry [ARGS], commandprefix [ARGS], displayfullpath [ARGS]");
-            System.out.println("shortcut: clear, enable, disable, add [ARGS], remove [ARGS], list");
-            System.out.println("testing [ARGS]");
-            System.out.println("data: get [ARGS], clear");
-            return;
+        try (FileWriter file = new FileWriter(fileName)) {
+            file.write("Chat Sent: " + lastChatSent + "\n");
+            file.write("Chat Recieved: " + lastChatRecieved + "\n");
+            file.flush();
+            TextEngine.printWithDelays("Chat log saved to " + fileName.getName(), false, true);
+        } catch (IOException e) {
+            TextEngine.printWithDelays("An error occurred while writing to the chat file.", false, true);
         }
-        TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
+        return fileName;
     }
 
     /**
-     * Processes startup commands.
+     * Adds the startup commands.
+     *
+     * @param tree The command tree
      */
-    private static void startupCommands() {
-        getNextCommand();
-        if (lastCommandParsed == null) {
-            TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-            return;
-        }
-        if (lastCommandParsed.equals("add")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            startupCommands.add(lastCommandParsed);
-            String commandAdded = lastCommandParsed;
+    private static void addStartupCommands(CommandTree tree) {
+        tree.command("user startup").chained();
+        tree.command("user startup add").usage("[ARGS]").handler(1, 2, context -> {
+            String commandAdded = context.argument(0);
+            startupCommands.add(commandAdded);
+            USER_DATA_STORE.update("Startup_Commands");
             TextEngine.printWithDelays("Command added to startup commands.", false, true);
-            if (startupCommands != null && !startupCommands.isEmpty()) {
-                System.out.println("Startup commands:");
-                for (String command : startupCommands) {
-                    TextEngine.printNoDelay(command, false, true);
+            listStartupCommands();
+            if (context.argumentCount() > 1) {
+                if (!context.argument(1).equals("run")) {
+                    throw new CommandTree.CommandException("Unknown command. No given ARGS. Try 'help'");
                 }
-            } else {
-                System.out.println("No startup commands.");
-            }
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-            if (lastCommandParsed.equals("run")) {
-                commandParser("." + commandAdded);
-                return;
-            }
-            System.out.println("Unknown command. No given ARGS. Try 'help'");
-        }
-        if (lastCommandParsed.equals("remove")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            startupCommands.remove(lastCommandParsed);
-            TextEngine.printWithDelays("Command removed from startup commands.", false, true);
-            if (startupCommands != null && !startupCommands.isEmpty()) {
-                System.out.println("Startup commands:");
-                for (String command : startupCommands) {
-                    TextEngine.printNoDelay(command, false, true);
+                if (!commandParser(commandPrefix + commandAdded)) {
+                    throw new CommandTree.CommandException();
                 }
-            } else {
-                System.out.println("No startup commands.");
             }
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("clear")) {
+        });
+        tree.command("user startup remove").usage("[ARGS]").handler(1, 1, context -> {
+            startupCommands.remove(context.argument(0));
+            USER_DATA_STORE.update("Startup_Commands");
+            TextEngine.printWithDelays("Command removed from startup commands.", false, true);
+            listStartupCommands();
+        });
+        tree.command("user startup clear").handler(context -> {
             startupCommands = new ArrayList<>();
+            USER_DATA_STORE.update("Startup_Commands");
             TextEngine.printWithDelays("Startup commands cleared.", false, true);
-            if (startupCommands != null && !startupCommands.isEmpty()) {
-                System.out.println("Startup commands:");
-                for (String command : startupCommands) {
-                    TextEngine.printNoDelay(command, false, true);
-                }
-            } else {
-                System.out.println("No startup commands.");
-            }
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("enable")) {
+            listStartupCommands();
+        });
+        tree.command("user startup enable").handler(context -> {
             startCommandsOn = true;
             TextEngine.printWithDelays("Startup commands enabled.", false, true);
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("disable")) {
+        });
+        tree.command("user startup disable").handler(context -> {
             startCommandsOn = false;
             TextEngine.printWithDelays("Startup commands disabled.", false, true);
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("list")) {
+        });
+        tree.command("user startup list").handler(context -> listStartupCommands());
+        tree.command("user startup timings").handler(context -> printStartupTimings());
+        tree.command("user startup runall").handler(context -> {
             if (startupCommands != null && !startupCommands.isEmpty()) {
-                System.out.println("Startup commands:");
-                for (String command : startupCommands) {
-                    TextEngine.printNoDelay(command, false, true);
+                if (!runStartupCommands()) {
+                    throw new CommandTree.CommandException();
                 }
             } else {
                 System.out.println("No startup commands.");
             }
-            return;
-        }
-        if (lastCommandParsed.equals("runall")) {
-            if (startupCommands != null && !startupCommands.isEmpty()) {
-                System.out.println("Running startup commands...");
-                for (String command : startupCommands) {
-                    commandParser("." + command);
-                }
-            } else {
-                System.out.println("No startup commands.");
+        });
+    }
+
+    /**
+     * Runs the startup commands. Terminal commands that do not depend on each
+     * other run at the same time; see {@link StartupCommandRunner}. Each
+     * command that fails is reported once all of them are done.
+     *
+     * @return false if the startup commands could not be run or one of them
+     * failed, true otherwise
+     */
+    private static boolean runStartupCommands() {
+        boolean wasRunningStartup = runningStartup;
+        runningStartup = true;
+        System.out.println("Running startup commands...");
+        try {
+            List<String> failed = new StartupCommandRunner(STARTUP_COMMAND_THREADS).run(new ArrayList<>(startupCommands), command -> commandParser(commandPrefix + command));
+            for (String command : failed) {
+                TextEngine.printWithDelays("Startup command failed: " + command, false, true);
             }
-            return;
-        }
-        if (lastCommandParsed.equals("help")) {
-            System.out.println("Commands:");
-            System.out.println("add [ARGS], remove [ARGS], clear, enable, disable, list, runall");
+            return failed.isEmpty();
+        } catch (IllegalArgumentException e) {
+            TextEngine.printWithDelays("Invalid startup commands: " + e.getMessage(), false, true);
+            return false;
+        } finally {
+            runningStartup = wasRunningStartup;
         }
     }
 
     /**
-     * Processes AI chat commands.
+     * Prints how long each startup phase took.
      */
-    private static void aiChatCommands() {
-        getNextCommand();
-        if (lastCommandParsed == null) {
-            TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
+    private static void printStartupTimings() {
+        if (STARTUP.getForegroundNanos() < 0) {
+            System.out.println("Startup has not finished.");
             return;
         }
-        if (lastCommandParsed.equals("history")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            if (lastCommandParsed.equals("disable")) {
-                incognitoChatMode = true;
-                savedChatCache = new ArrayList<>();
-                openAIPromptEngine.setChatCache(savedChatCache);
-                TextEngine.printNoDelay("Incognito mode enabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
-            }
-            if (lastCommandParsed.equals("enable")) {
-                incognitoChatMode = false;
-                TextEngine.printNoDelay("Incognito mode disabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
-            }
-            if (lastCommandParsed.equals("save")) {
-                savedChatCache = openAIPromptEngine.getChatCache();
-                TextEngine.printWithDelays("Chat history saved.", false, true);
-                return;
-            }
-            if (lastCommandParsed.equals("clear")) {
-                openAIPromptEngine.clearChatCache();
-                savedChatCache = new ArrayList<>();
-                TextEngine.printWithDelays("Chat history cleared.", false, true);
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("cache")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            if (lastCommandParsed.equals("enable")) {
-                usingChatCache = true;
-                TextEngine.printWithDelays("Chat cache enabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
-            }
-            if (lastCommandParsed.equals("disable")) {
-                usingChatCache = false;
-                TextEngine.printWithDelays("Chat cache disabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
-            }
-            if (lastCommandParsed.equals("clear")) {
-                openAIPromptEngine.clearChatCache();
-                savedChatCache = new ArrayList<>();
-                TextEngine.printWithDelays("Chat history cleared.", false, true);
-                return;
-            }
+        System.out.println("Startup phases:");
+        for (StartupPipeline.Timing timing : STARTUP.getTimings()) {
+            TextEngine.printNoDelay(String.format("%s: %.1f ms, started at %.1f ms%s", timing.phase(),
+                    timing.durationNanos() / 1e6, timing.startNanos() / 1e6, timing.background() ? " (background)" : ""), false, true);
         }
-        if (lastCommandParsed.equals("help")) {
-            System.out.println("Commands:");
-            System.out.println("history: disable, enable, save, clear");
-            System.out.println("cache: enable, disable, clear");
+        if (!STARTUP.completion("api key").isDone()) {
+            System.out.println("api key: still running (background)");
         }
+        System.out.println(String.format("Time to first prompt: %.1f ms", STARTUP.getForegroundNanos() / 1e6));
     }
 
     /**
-     * Processes shortcut commands.
+     * Prints the startup commands.
      */
-    private static void shortcutCommands() {
-        getNextCommand();
-        if (lastCommandParsed == null) {
-            TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-            return;
+    private static void listStartupCommands() {
+        if (startupCommands != null && !startupCommands.isEmpty()) {
+            System.out.println("Startup commands:");
+            for (String command : startupCommands) {
+                TextEngine.printNoDelay(command, false, true);
+            }
+        } else {
+            System.out.println("No startup commands.");
         }
-        if (lastCommandParsed.equals("clear")) {
+    }
+
+    /**
+     * Adds the AI chat commands.
+     *
+     * @param tree The command tree
+     */
+    private static void addAIChatCommands(CommandTree tree) {
+        tree.command("user chat history").chained();
+        tree.command("user chat history disable").handler(context -> {
+            incognitoChatMode = true;
+            savedChatCache = new ArrayList<>();
+            openAIPromptEngine.setChatCache(savedChatCache);
+            USER_DATA_STORE.update("Chat_Cache");
+            TextEngine.printNoDelay("Incognito mode enabled.", false, true);
+        });
+        tree.command("user chat history enable").handler(context -> {
+            incognitoChatMode = false;
+            TextEngine.printNoDelay("Incognito mode disabled.", false, true);
+        });
+        tree.command("user chat history save").handler(context -> {
+            savedChatCache = openAIPromptEngine.getChatCache();
+            USER_DATA_STORE.update("Chat_Cache");
+            TextEngine.printWithDelays("Chat history saved.", false, true);
+        });
+        tree.command("user chat history clear").handler(context -> clearChatHistory());
+        tree.command("user chat cache").chained();
+        tree.command("user chat cache enable").handler(context -> {
+            usingChatCache = true;
+            TextEngine.printWithDelays("Chat cache enabled.", false, true);
+        });
+        tree.command("user chat cache disable").handler(context -> {
+            usingChatCache = false;
+            TextEngine.printWithDelays("Chat cache disabled.", false, true);
+        });
+        tree.command("user chat cache clear").handler(context -> clearChatHistory());
+    }
+
+    /**
+     * Clears the chat history.
+     */
+    private static void clearChatHistory() {
+        openAIPromptEngine.clearChatCache();
+        savedChatCache = new ArrayList<>();
+        USER_DATA_STORE.update("Chat_Cache");
+        TextEngine.printWithDelays("Chat history cleared.", false, true);
+    }
+
+    /**
+     * Adds the text commands.
+     *
+     * @param tree The command tree
+     */
+    private static void addTextCommands(CommandTree tree) {
+        tree.command("user text textbuffer").chained();
+        tree.command("user text textbuffer enable").handler(context -> {
+            textBuffer = true;
+            USER_DATA_STORE.update("Text_Buffer");
+            TextEngine.printWithDelays("Text buffer enabled.", false, true);
+        });
+        tree.command("user text textbuffer disable").handler(context -> {
+            textBuffer = false;
+            USER_DATA_STORE.update("Text_Buffer");
+            TextEngine.printWithDelays("Text buffer disabled.", false, true);
+        });
+        tree.command("user text defaultentry ai").handler(context -> {
+            System.out.println("Default text entry set to AI.");
+            defaultTextEntryOnAI = true;
+            USER_DATA_STORE.update("Text_Entry");
+        });
+        tree.command("user text defaultentry terminal").handler(context -> {
+            System.out.println("Default text entry set to terminal.");
+            defaultTextEntryOnAI = false;
+            USER_DATA_STORE.update("Text_Entry");
+        });
+        tree.command("user text displayfullpath").chained();
+        tree.command("user text displayfullpath enable").handler(context -> {
+            terminal.setDisplayWholePath(true);
+            TextEngine.printWithDelays("Displaying full file path enabled.", false, true);
+        });
+        tree.command("user text displayfullpath disable").handler(context -> {
+            terminal.setDisplayWholePath(false);
+            TextEngine.printWithDelays("Displaying full file path disabled.", false, true);
+        });
+        tree.command("user text persistentshell").chained();
+        tree.command("user text persistentshell enable").handler(context -> {
+            if (!terminal.setPersistentShell(true)) {
+                throw new CommandTree.CommandException("Persistent shell is not supported on this system.");
+            }
+            TextEngine.printWithDelays("Persistent shell enabled.", false, true);
+        });
+        tree.command("user text persistentshell disable").handler(context -> {
+            terminal.setPersistentShell(false);
+            TextEngine.printWithDelays("Persistent shell disabled.", false, true);
+        });
+        tree.command("user text cachebudget").usage("[ARGS]").handler(1, 1, context -> {
+            long kilobytes;
+            try {
+                kilobytes = Long.parseLong(context.argument(0));
+            } catch (NumberFormatException e) {
+                kilobytes = 0;
+            }
+            if (kilobytes <= 0) {
+                throw new CommandTree.CommandException("Invalid cache budget. Must be a positive number of kilobytes.");
+            }
+            terminal.setCacheMemoryBudget(kilobytes * 1024);
+            TextEngine.printWithDelays("Terminal cache budget set to " + kilobytes + " KB.", false, true);
+        });
+        tree.command("user text commandprefix").usage("[ARGS]").handler(1, 1, context -> {
+            String prefix = context.argument(0);
+            if (prefix.length() > 1 || prefix.isEmpty()) {
+                throw new CommandTree.CommandException("Invalid command prefix. Must be a single character.");
+            }
+            commandPrefix = prefix;
+            USER_DATA_STORE.update("Command_Prefix");
+            TextEngine.printWithDelays("Command prefix set to " + commandPrefix, false, true);
+        });
+    }
+
+    /**
+     * Adds the shortcut commands.
+     *
+     * @param tree The command tree
+     */
+    private static void addShortcutCommands(CommandTree tree) {
+        tree.command("user shortcut").chained();
+        tree.command("user shortcut clear").handler(context -> {
             shortcuts = new HashMap<>();
+            SHORTCUTS.load(shortcuts);
+            USER_DATA_STORE.update("Shortcuts");
             TextEngine.printWithDelays("Shortcuts cleared.", false, true);
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("enable")) {
+        });
+        tree.command("user shortcut enable").handler(context -> {
             shotcutsEnabled = true;
+            USER_DATA_STORE.update("Shortcuts_Enabled");
             TextEngine.printWithDelays("Shortcuts enabled.", false, true);
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("disable")) {
+        });
+        tree.command("user shortcut disable").handler(context -> {
             shotcutsEnabled = false;
+            USER_DATA_STORE.update("Shortcuts_Enabled");
             TextEngine.printWithDelays("Shortcuts disabled.", false, true);
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("add")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            String shortcut = lastCommandParsed;
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
+        });
+        tree.command("user shortcut add").usage("[ARGS]").handler(2, 2, context -> {
+            try {
+                SHORTCUTS.define(context.argument(0), context.argument(1));
+            } catch (ShortcutMacros.MacroException e) {
+                throw new CommandTree.CommandException(e.getMessage());
             }
-            String command = lastCommandParsed;
-            shortcuts.put(shortcut, command);
+            shortcuts.put(context.argument(0), context.argument(1));
+            USER_DATA_STORE.update("Shortcuts");
             TextEngine.printWithDelays("Shortcut added.", false, true);
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
-            }
-        }
-        if (lastCommandParsed.equals("remove")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            shortcuts.remove(lastCommandParsed);
+        });
+        tree.command("user shortcut remove").usage("[ARGS]").handler(1, 1, context -> {
+            List<String> broken = SHORTCUTS.remove(context.argument(0));
+            shortcuts.remove(context.argument(0));
+            USER_DATA_STORE.update("Shortcuts");
             TextEngine.printWithDelays("Shortcut removed.", false, true);
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                return;
+            if (!broken.isEmpty()) {
+                TextEngine.printWithDelays("These shortcuts can no longer be run: " + String.join(", ", broken), false, true);
             }
-        }
-        if (lastCommandParsed.equals("list")) {
+        });
+        tree.command("user shortcut list").handler(context -> {
             if (shortcuts != null && !shortcuts.isEmpty()) {
                 System.out.println("Shortcuts:");
                 for (Map.Entry<String, String> entry : shortcuts.entrySet()) {
-                    TextEngine.printNoDelay(entry.getKey() + " = " + entry.getValue(), false, true);
+                    String error = SHORTCUTS.getError(entry.getKey());
+                    TextEngine.printNoDelay(entry.getKey() + " = " + entry.getValue() + (error == null ? "" : " (" + error + ")"), false, true);
                 }
             } else {
                 System.out.println("No shortcuts.");
             }
-            return;
-        }
-        if (lastCommandParsed.equals("help")) {
-            System.out.println("Commands:");
-            System.out.println("clear, enable, disable, add [ARGS], remove [ARGS], list");
-        }
+        });
     }
 
     /**
-     * Processes text commands.
+     * Adds the testing and user data commands.
+     *
+     * @param tree The command tree
      */
-    private static void textCommands() {
-        getNextCommand();
-        if (lastCommandParsed == null) {
-            TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-            return;
-        }
-        if (lastCommandParsed.equals("textbuffer")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
+    private static void addUserDataCommands(CommandTree tree) {
+        tree.command("user stats").handler(context -> {
+            List<String> lines = Metrics.report();
+            if (lines.isEmpty()) {
+                System.out.println("No stats yet.");
                 return;
             }
-            if (lastCommandParsed.equals("enable")) {
-                textBuffer = true;
-                TextEngine.printWithDelays("Text buffer enabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
+            lines.forEach(System.out::println);
+        });
+        tree.command("user stats json").handler(context -> System.out.println(Metrics.toJSON().toString(2)));
+        tree.command("user stats reset").handler(context -> {
+            Metrics.reset();
+            TextEngine.printWithDelays("Stats reset.", false, true);
+        });
+        tree.command("user jfr start").handler(context -> {
+            try {
+                TextEngine.printWithDelays(FlightEvents.start() ? "Flight recording started." : "A flight recording is already running.", false, true);
+            } catch (IOException e) {
+                throw new CommandTree.CommandException("An error occurred while starting the flight recording: " + e.getMessage());
             }
-            if (lastCommandParsed.equals("disable")) {
-                textBuffer = false;
-                TextEngine.printWithDelays("Text buffer disabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
-                }
+        });
+        tree.command("user jfr dump").usage("o[ARGS]").handler(0, 1, context -> {
+            try {
+                Path file = FlightEvents.dump(context.argument(0) == null ? null : Path.of(context.argument(0)));
+                TextEngine.printWithDelays(file == null ? "No flight recording is running." : "Flight recording written to " + file, false, true);
+            } catch (IOException e) {
+                throw new CommandTree.CommandException("An error occurred while writing the flight recording: " + e.getMessage());
             }
-        }
-        if (lastCommandParsed.equals("defaultentry")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
+        });
+        tree.command("user jfr stop").usage("o[ARGS]").handler(0, 1, context -> {
+            try {
+                Path file = FlightEvents.stop(context.argument(0) == null ? null : Path.of(context.argument(0)));
+                TextEngine.printWithDelays(file == null ? "No flight recording is running." : "Flight recording stopped and written to " + file, false, true);
+            } catch (IOException e) {
+                throw new CommandTree.CommandException("An error occurred while writing the flight recording: " + e.getMessage());
+            }
+        });
+        tree.command("user jfr status").handler(context -> System.out.println(FlightEvents.isRecording() ? "Flight recording is running." : "No flight recording is running."));
+        tree.command("user testing").chained();
+        tree.command("user testing enable").handler(context -> {
+            TESTING = true;
+            TextEngine.printWithDelays("Testing mode enabled.", false, true);
+        });
+        tree.command("user testing disable").handler(context -> {
+            TESTING = false;
+            TextEngine.printWithDelays("Testing mode disabled.", false, true);
+        });
+        tree.command("user data get userdata").handler(context -> System.out.println(readAndReturnUserDataFile()));
+        tree.command("user data get userhistory").handler(context -> printUserHistory(() -> USER_HISTORY.tail(HISTORY_PAGE)));
+        tree.command("user data get userhistory tail").usage("o[ARGS]").handler(0, 1, context -> {
+            try {
+                int lines = context.argumentCount() == 0 ? HISTORY_PAGE : Integer.parseInt(context.argument(0));
+                printUserHistory(() -> USER_HISTORY.tail(lines));
+            } catch (NumberFormatException e) {
+                throw new CommandTree.CommandException("Invalid number of lines: " + context.argument(0));
             }
-            if (lastCommandParsed.equals("ai")) {
-                System.out.println("Default text entry set to AI.");
-                defaultTextEntryOnAI = true;
-                return;
+        });
+        tree.command("user data get userhistory range").usage("[ARGS]").handler(1, 2, context -> {
+            try {
+                long from = HistoryStore.parseFrom(context.argument(0));
+                long to = HistoryStore.parseTo(context.argumentCount() > 1 ? context.argument(1) : context.argument(0));
+                printUserHistory(() -> USER_HISTORY.between(from, to));
+            } catch (IllegalArgumentException e) {
+                throw new CommandTree.CommandException(e.getMessage() + ". Use yyyy-MM-dd_HH-mm-ss or a leading part of it.");
+            }
+        });
+        tree.command("user data get userhistory prefix").usage("[ARGS]").handler(1, 1, context -> printUserHistory(() -> USER_HISTORY.withPrefix(context.argument(0), HISTORY_PAGE)));
+        tree.command("user data get userhistory search").usage("[ARGS]").handler(1, 1, context -> printUserHistory(() -> USER_HISTORY.containing(context.argument(0), HISTORY_PAGE)));
+        tree.command("user data get terminaloutput").usage("o[ARGS]").handler(0, 1, context -> {
+            int entries;
+            try {
+                entries = context.argumentCount() == 0 ? HISTORY_PAGE : Integer.parseInt(context.argument(0));
+            } catch (NumberFormatException e) {
+                throw new CommandTree.CommandException("Invalid number of entries: " + context.argument(0));
             }
-            if (lastCommandParsed.equals("terminal")) {
-                System.out.println("Default text entry set to terminal.");
-                defaultTextEntryOnAI = false;
+            try {
+                for (String output : terminal.getTerminalCacheTerminalOutput().tail(entries)) {
+                    System.out.print(output.endsWith("\n") || output.isEmpty() ? output : output + "\n");
+                }
+            } catch (UncheckedIOException e) {
+                throw new CommandTree.CommandException("An error occurred while reading the terminal output: " + e.getCause().getMessage());
+            }
+        });
+        tree.command("user data get all").handler(context -> {
+            System.out.println(readAndReturnUserDataFile());
+            printUserHistory(() -> USER_HISTORY.tail(HISTORY_PAGE));
+        });
+        tree.command("user data clear").handler(context -> {
+            try {
+                USER_HISTORY_WRITER.closeFile();
+                USER_HISTORY.reset();
+                Files.delete(USER_DATA.toPath());
+                createNewUSER_DATAFile();
+                TextEngine.printWithDelays("User data file cleared.", false, true);
+                Files.delete(USER_COMMAND_HISTORY.toPath());
+                createNewUSER_HISTORYfile();
+                TextEngine.printWithDelays("User history file cleared.", false, true);
+            } catch (IOException e) {
+                throw new CommandTree.CommandException("An error occurred while clearing the user data file.");
+            }
+        });
+    }
+
+    /**
+     * A query on the user input history.
+     */
+    private interface HistoryQuery {
+
+        /**
+         * Runs the query.
+         *
+         * @return The matching lines
+         * @throws IOException if the history could not be read
+         */
+        List<String> run() throws IOException;
+    }
+
+    /**
+     * Prints the lines of the user input history that match a query.
+     *
+     * @param query The query to run
+     */
+    private static void printUserHistory(HistoryQuery query) {
+        flushUserHistory();
+        try {
+            List<String> lines = query.run();
+            if (lines.isEmpty()) {
+                System.out.println("No matching history.");
                 return;
             }
-            System.out.println("Unknown command. No given ARGS. Try 'help'");
+            System.out.println(String.join("\n", lines));
+        } catch (IOException e) {
+            throw new CommandTree.CommandException("An error occurred while reading the user history file.");
+        }
+    }
+
+    /**
+     * Sends a command to the terminal and waits for it. A command ending in a
+     * single '&' is started as a background job instead.
+     *
+     * @param command The command to send
+     * @return true if the command exited with 0 or the job was started, false
+     * otherwise
+     */
+    private static boolean sendTerminalCommand(String command) {
+        if (TESTING) {
+            System.out.println("Sending Command: " + command);
+        }
+        String trimmed = command.trim();
+        if (trimmed.endsWith("&") && !trimmed.endsWith("&&")) {
+            return startJob(trimmed.substring(0, trimmed.length() - 1).trim());
+        }
+        long start = System.nanoTime();
+        CompletableFuture<TerminalPassthrough.CommandResult> run = terminal.executeCommand(command, true);
+        try {
+            return run.get().exitCode() == 0;
+        } catch (InterruptedException e) {
+            run.cancel(true);
+            Thread.currentThread().interrupt();
+            System.err.println("Thread Interrupted");
+            return false;
+        } catch (ExecutionException e) {
+            System.out.println("Error executing command: '" + command + "' " + e.getCause().getMessage());
+            return false;
+        } finally {
+            Metrics.recordSince("terminal command", start);
+        }
+    }
+
+    /**
+     * Starts a terminal command as a background job.
+     *
+     * @param command The command to start
+     * @return true if the job was started, false otherwise
+     */
+    private static boolean startJob(String command) {
+        if (command.isEmpty()) {
+            TextEngine.printWithDelays("No command given to run in the background.", false, true);
+            return false;
+        }
+        try {
+            JobTable.Job job = JOBS.start(command, terminal.startProcess(command));
+            System.out.println("[" + job.getId() + "] Started  " + command);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error executing command: '" + command + "' " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Prints a notice for every job that finished since the last notices.
+     *
+     * @param out Where to print the notices
+     */
+    private static void printJobNotices(PrintStream out) {
+        for (JobTable.Job job : JOBS.drainFinished()) {
+            out.println(job);
+        }
+    }
+
+    /**
+     * Shows every job with the last line of its output on a screen that is
+     * redrawn until no job is running. Without a person at the terminal it
+     * only waits for the jobs.
+     */
+    private static void watchJobs() {
+        if (!TextEngine.isInteractive()) {
+            JOBS.waitForAll().forEach(System.out::println);
             return;
         }
-        if (lastCommandParsed.equals("displayfullpath")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            if (lastCommandParsed.equals("enable")) {
-                terminal.setDisplayWholePath(true);
-                TextEngine.printWithDelays("Displaying full file path enabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
+        VirtualScreen screen = new VirtualScreen(TerminalGeometry.getWidth(), TerminalGeometry.getHeight());
+        long start = System.nanoTime();
+        int rows;
+        boolean running;
+        do {
+            if (screen.getWidth() != TerminalGeometry.getWidth() || screen.getHeight() != TerminalGeometry.getHeight()) {
+                screen.resize(TerminalGeometry.getWidth(), TerminalGeometry.getHeight());
+            }
+            List<JobTable.Job> jobs = JOBS.list();
+            long count = jobs.stream().filter(job -> job.getState() == JobTable.State.RUNNING).count();
+            running = count > 0;
+            screen.clear();
+            screen.print(0, 0, "Jobs: " + count + " running, " + (System.nanoTime() - start) / 1_000_000_000L + "s",
+                    VirtualScreen.attribute(VirtualScreen.BLUE, true));
+            rows = 2;
+            for (JobTable.Job job : jobs) {
+                if (rows + 1 >= screen.getHeight()) {
+                    break;
                 }
-            }
-            if (lastCommandParsed.equals("disable")) {
-                terminal.setDisplayWholePath(false);
-                TextEngine.printWithDelays("Displaying full file path disabled.", false, true);
-                getNextCommand();
-                if (lastCommandParsed == null) {
-                    return;
+                int color = switch (job.getState()) {
+                    case RUNNING ->
+                        VirtualScreen.YELLOW;
+                    case DONE ->
+                        VirtualScreen.GREEN;
+                    default ->
+                        VirtualScreen.RED;
+                };
+                screen.print(rows++, 0, job.toString(), VirtualScreen.attribute(color, false));
+                String output = job.getOutput().stripTrailing();
+                screen.print(rows++, 2, output.substring(output.lastIndexOf('\n') + 1), VirtualScreen.DEFAULT);
+            }
+            TextEngine.renderScreen(screen);
+            if (running) {
+                try {
+                    Thread.sleep(JOB_WATCH_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
                 }
             }
-        }
-        if (lastCommandParsed.equals("commandprefix")) {
-            getNextCommand();
-            if (lastCommandParsed == null) {
-                TextEngine.printWithDelays("Unknown command. No given ARGS. Try 'help'", false, true);
-                return;
-            }
-            if (lastCommandParsed.length() > 1 || lastCommandParsed.isEmpty()) {
-                TextEngine.printWithDelays("Invalid command prefix. Must be a single character.", false, true);
-                return;
+        } while (running);
+        TextEngine.moveCursor(rows, 0);
+        JOBS.drainFinished();
+    }
+
+    /**
+     * Finds the job given to a job command: the job with the given number,
+     * which may start with '%', or the last running job if none is given.
+     *
+     * @param id The job number, or null
+     * @return The job, or null if there is none
+     */
+    private static JobTable.Job findJob(String id) {
+        JobTable.Job job = null;
+        if (id == null) {
+            job = JOBS.getLastRunning();
+        } else {
+            try {
+                job = JOBS.get(Integer.parseInt(id.startsWith("%") ? id.substring(1) : id));
+            } catch (NumberFormatException e) {
+                //not a job number
             }
-            commandPrefix = lastCommandParsed;
-            TextEngine.printWithDelays("Command prefix set to " + commandPrefix, false, true);
-            return;
         }
-        if (lastCommandParsed.equals("help")) {
-            System.out.println("Commands:");
-            System.out.println("textbuffer [ARGS], defaultentry [ARGS], displayfullfilepath [ARGS]");
+        if (job == null) {
+            TextEngine.printWithDelays(id == null ? "No running jobs." : "No such job: " + id, false, true);
         }
+        return job;
     }
 
     /**
-     * Processes a chat message.
+     * Processes a chat message. The response is printed as it arrives.
      *
      * @param message The chat message to process
+     * @return false if the message could not be sent or no response came,
+     * true otherwise
      */
-    private static void chatProcess(String message) {
+    private static boolean chatProcess(String message) {
         System.out.println();
         if (message == null || message.isEmpty()) {
             TextEngine.printWithDelays(AI_CHAT_HEADER + "Invalid input. Please try again.", false, true);
-            return;
+            return false;
         }
         if (openAIPromptEngine.getAPIKey() == null || openAIPromptEngine.getAPIKey().isEmpty()) {
             TextEngine.printWithDelays(AI_CHAT_HEADER + "There is no OpenAPI key set.", false, true);
-            return;
+            return false;
         }
-        String response = openAIPromptEngine.buildPromptAndReturnResponce(message, usingChatCache);
-        TextEngine.printWithDelays(GREEN_COLOR_BOLD + "ChatGPT: " + RESET_COLOR + response, false, true);
-        System.out.println();
-    }
-
-    /**
-     * Retrieves the next command from the command queue.
-     */
-    private static void getNextCommand() {
-        if (!commandsQueue.isEmpty()) {
-            lastCommandParsed = commandsQueue.poll();
-            if (TESTING) {
-                System.out.println("Processed Command: " + lastCommandParsed);
-            }
-        } else {
-            lastCommandParsed = null;
+        if (!awaitAPIKeyCheck()) {
+            return false;
         }
+        long start = System.nanoTime();
+        TextEngine.printChunk(GREEN_COLOR_BOLD + "ChatGPT: " + RESET_COLOR);
+        String response = openAIPromptEngine.buildPromptAndStreamResponse(message, usingChatCache, TextEngine::printChunk);
+        TextEngine.endChunks(true);
+        Metrics.recordSince("ai chat", start);
+        System.out.println();
+        return response != null;
     }
 
     /**
-     * Exits the application, optionally saving chat history.
+     * Exits the application, optionally saving chat history. The user is only
+     * asked when someone is at the terminal; otherwise, or if input has
+     * ended, the answer is no.
      */
     private static void exit() {
         if (!incognitoChatMode) {
             if (!openAIPromptEngine.getChatCache().isEmpty()) {
-                TextEngine.printWithDelays(AI_CHAT_HEADER + "Would you like to save the chat history? 'y' or 'n'", textBuffer, false);
-                if ("y".equals(console.readLine().trim().toLowerCase())) {
+                String answer = null;
+                if (TextEngine.isInteractive()) {
+                    TextEngine.printWithDelays(AI_CHAT_HEADER + "Would you like to save the chat history? 'y' or 'n'", textBuffer, false);
+                    answer = console.readLine();
+                }
+                if (answer != null && "y".equals(answer.trim().toLowerCase())) {
                     savedChatCache = openAIPromptEngine.getChatCache();
                     TextEngine.printWithDelays(AI_CHAT_HEADER + "Chat history saved.", false, true);
                 } else {
@@ -1071,7 +1384,14 @@ public class Engine {
             openAIPromptEngine.clearChatCache();
             savedChatCache = new ArrayList<>();
         }
+        int killed = JOBS.killAll();
+        if (killed > 0) {
+            TextEngine.printWithDelays("Killed " + killed + " running job(s).", false, true);
+        }
+        stopFlightRecording();
+        terminal.close();
         writeUserData();
+        flushUserHistory();
         TextEngine.printWithDelays("Exiting...", false, true);
         TextEngine.clearScreen();
         System.exit(0);
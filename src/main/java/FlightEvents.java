@@ -0,0 +1,226 @@
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+
+/**
+ * The FlightEvents class defines the Java Flight Recorder events the
+ * application emits and controls a recording from inside the application.
+ * Events are only written while a recording is running, whether it was
+ * started here or with the usual JDK options and tools, so they cost almost
+ * nothing otherwise. Recordings can be opened with JDK Mission Control or the
+ * jfr tool, next to the GC, I/O and thread events of the JDK.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public abstract class FlightEvents {
+
+    private static final String CATEGORY = "DevToolsTerminal";
+
+    /**
+     * Emitted when a command line is split into tokens.
+     */
+    @Name("devtools.CommandParse")
+    @Label("Command Parse")
+    @Category({CATEGORY, "Command"})
+    public static class CommandParse extends Event {
+
+        @Label("Command")
+        public String command;
+
+        @Label("Tokens")
+        public int tokens;
+
+        @Label("Valid")
+        public boolean valid;
+    }
+
+    /**
+     * Emitted when a command is resolved and its handlers run.
+     */
+    @Name("devtools.CommandDispatch")
+    @Label("Command Dispatch")
+    @Category({CATEGORY, "Command"})
+    public static class CommandDispatch extends Event {
+
+        @Label("Command")
+        public String command;
+
+        @Label("Path")
+        @Description("The command that was resolved")
+        public String path;
+
+        @Label("Status")
+        public String status;
+    }
+
+    /**
+     * Emitted when a terminal command process exits.
+     */
+    @Name("devtools.Process")
+    @Label("Process")
+    @Category({CATEGORY, "Terminal"})
+    public static class ProcessRun extends Event {
+
+        @Label("Command")
+        public String command;
+
+        @Label("Directory")
+        public String directory;
+
+        @Label("Process Id")
+        public long pid;
+
+        @Label("Exit Code")
+        public int exitCode;
+
+        @Label("Spawn Time")
+        @Description("The time it took to start the process")
+        @Timespan(Timespan.NANOSECONDS)
+        public long spawnTime;
+
+        @Label("Background")
+        public boolean background;
+    }
+
+    /**
+     * Emitted when a request to the OpenAI API completes or fails.
+     */
+    @Name("devtools.HttpRequest")
+    @Label("HTTP Request")
+    @Category({CATEGORY, "Network"})
+    public static class HttpRequest extends Event {
+
+        @Label("Method")
+        public String method;
+
+        @Label("URL")
+        public String url;
+
+        @Label("Status Code")
+        @Description("The response code, or -1 if no response arrived")
+        public int statusCode;
+
+        @Label("Request Size")
+        @DataAmount
+        public long requestBytes;
+
+        @Label("Response Size")
+        @DataAmount
+        public long responseBytes;
+    }
+
+    /**
+     * Emitted when a file of the application is written.
+     */
+    @Name("devtools.Persist")
+    @Label("Persist")
+    @Category({CATEGORY, "Storage"})
+    public static class Persist extends Event {
+
+        @Label("File")
+        public String file;
+
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+    }
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static Recording recording;
+
+    /**
+     * Starts a recording with the default JDK settings and every event of the
+     * application.
+     *
+     * @return false if a recording was already running, true otherwise
+     * @throws IOException if the settings could not be read
+     */
+    public static synchronized boolean start() throws IOException {
+        if (recording != null) {
+            return false;
+        }
+        Recording started;
+        try {
+            started = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+        started.setName("DevToolsTerminal");
+        List<Class<? extends Event>> types = List.of(CommandParse.class, CommandDispatch.class,
+                ProcessRun.class, HttpRequest.class, Persist.class);
+        for (Class<? extends Event> type : types) {
+            started.enable(type).withoutThreshold();
+        }
+        started.start();
+        recording = started;
+        return true;
+    }
+
+    /**
+     * Writes what was recorded so far to a file and keeps recording.
+     *
+     * @param file the file to write, or null for a new file in the working
+     * directory
+     * @return the file written, or null if no recording is running
+     * @throws IOException if the file could not be written
+     */
+    public static synchronized Path dump(Path file) throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        Path target = file != null ? file : defaultFile();
+        recording.dump(target);
+        return target;
+    }
+
+    /**
+     * Stops the recording and writes it to a file.
+     *
+     * @param file the file to write, or null for a new file in the working
+     * directory
+     * @return the file written, or null if no recording was running
+     * @throws IOException if the file could not be written
+     */
+    public static synchronized Path stop(Path file) throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        Path target = file != null ? file : defaultFile();
+        try {
+            recording.stop();
+            recording.dump(target);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        return target;
+    }
+
+    /**
+     * Checks whether a recording started here is running.
+     *
+     * @return true if a recording is running, false otherwise
+     */
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    private static Path defaultFile() {
+        return Path.of("DevToolsTerminal-" + LocalDateTime.now().format(FILE_TIME) + ".jfr").toAbsolutePath();
+    }
+}
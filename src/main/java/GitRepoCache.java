@@ -0,0 +1,203 @@
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The GitRepoCache class finds the git repository a directory belongs to and
+ * the branch it is on, for the prompt. The repository of each directory is
+ * remembered, including that a directory is in no repository, and the HEAD
+ * file of a repository is only read again when its modification time has
+ * changed. That time is itself checked at most once per interval, so drawing
+ * the prompt again and again in the same directory touches no files at all.
+ * A directory found to be in no repository is looked at again after a longer
+ * interval, in case a repository was created.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class GitRepoCache {
+
+    /**
+     * What is known about the repository of a directory.
+     *
+     * @param root the top directory of the repository
+     * @param branch the checked out branch, or an empty string if HEAD is
+     * not on a branch
+     */
+    public record RepoInfo(Path root, String branch) {
+    }
+
+    /**
+     * A repository found on disk, shared by every directory inside it.
+     */
+    private static final class Repo {
+
+        private final Path root;
+        private final Path head;
+        private String branch = "";
+        private FileTime modified;
+        private long checkedAt;
+
+        private Repo(Path root) {
+            this.root = root;
+            this.head = root.resolve(".git").resolve("HEAD");
+        }
+    }
+
+    /**
+     * A directory and the repository it belongs to, or null for none.
+     */
+    private static final class Lookup {
+
+        private final Repo repo;
+        private final long checkedAt;
+
+        private Lookup(Repo repo, long checkedAt) {
+            this.repo = repo;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private static final Pattern HEAD_PATTERN = Pattern.compile("ref: refs/heads/(.*)");
+    private static final int MAX_DIRECTORIES = 256;
+
+    private final long checkInterval;
+    private final long missInterval;
+    private final LongSupplier clock;
+    private final Map<Path, Repo> repos = new LinkedHashMap<>();
+    private final Map<Path, Lookup> directories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Lookup> eldest) {
+            return size() > MAX_DIRECTORIES;
+        }
+    };
+
+    /**
+     * Constructs a GitRepoCache that checks HEAD at most once a second and
+     * looks again for a missing repository every five seconds.
+     */
+    public GitRepoCache() {
+        this(1_000_000_000L, 5_000_000_000L, System::nanoTime);
+    }
+
+    /**
+     * Constructs a GitRepoCache.
+     *
+     * @param checkInterval the nanoseconds between checks of HEAD
+     * @param missInterval the nanoseconds before a directory in no repository
+     * is looked at again
+     * @param clock the clock in nanoseconds
+     */
+    public GitRepoCache(long checkInterval, long missInterval, LongSupplier clock) {
+        this.checkInterval = checkInterval;
+        this.missInterval = missInterval;
+        this.clock = clock;
+    }
+
+    /**
+     * Gets the repository of a directory.
+     *
+     * @param directory an absolute directory
+     * @return the repository, or null if the directory is in none
+     */
+    public synchronized RepoInfo lookup(Path directory) {
+        long now = clock.getAsLong();
+        Lookup lookup = directories.get(directory);
+        if (lookup == null || (lookup.repo == null && now - lookup.checkedAt >= missInterval)) {
+            lookup = new Lookup(find(directory), now);
+            directories.put(directory, lookup);
+        }
+        Repo repo = lookup.repo;
+        if (repo == null) {
+            return null;
+        }
+        if (repo.modified == null || now - repo.checkedAt >= checkInterval) {
+            repo.checkedAt = now;
+            if (!refresh(repo)) {
+                forget(repo);
+                directories.put(directory, new Lookup(null, now));
+                return null;
+            }
+        }
+        return new RepoInfo(repo.root, repo.branch);
+    }
+
+    /**
+     * Forgets everything, so the next lookups read the disk again.
+     */
+    public synchronized void clear() {
+        repos.clear();
+        directories.clear();
+    }
+
+    /**
+     * Walks up from a directory to the first one holding .git/HEAD, reusing
+     * what is known about the directories on the way.
+     *
+     * @param directory the directory
+     * @return the repository, or null if there is none
+     */
+    private Repo find(Path directory) {
+        for (Path current = directory; current != null; current = current.getParent()) {
+            Repo known = repos.get(current);
+            if (known != null) {
+                return known;
+            }
+            if (Files.exists(current.resolve(".git").resolve("HEAD"))) {
+                Repo repo = new Repo(current);
+                repos.put(current, repo);
+                return repo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads HEAD again if it changed since it was last read. A HEAD that
+     * exists but cannot be read leaves the repository without a branch.
+     *
+     * @param repo the repository
+     * @return false if HEAD is gone, true otherwise
+     */
+    private boolean refresh(Repo repo) {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(repo.head);
+        } catch (IOException e) {
+            return false;
+        }
+        if (modified.equals(repo.modified)) {
+            return true;
+        }
+        repo.modified = modified;
+        repo.branch = "";
+        try {
+            for (String line : Files.readAllLines(repo.head)) {
+                Matcher headMatcher = HEAD_PATTERN.matcher(line);
+                if (headMatcher.find()) {
+                    repo.branch = headMatcher.group(1);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading git HEAD file: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Forgets a repository that no longer exists and every directory in it.
+     *
+     * @param repo the repository
+     */
+    private void forget(Repo repo) {
+        repos.remove(repo.root);
+        directories.values().removeIf(lookup -> lookup.repo == repo);
+    }
+}
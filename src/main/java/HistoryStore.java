@@ -0,0 +1,649 @@
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The HistoryStore class answers queries on the command history file without
+ * reading all of it. A sidecar index holds, for every line, its offset, the
+ * time stamp written in front of it by {@link TimeEngine#timeStamp()} and the
+ * first bytes of the command. The index is memory-mapped and brought up to
+ * date with the lines appended since the last query, so the history file is
+ * only scanned once. Queries then read just the lines they return: the last
+ * lines, the lines in a time range, or the lines whose command starts with or
+ * contains some text, newest first.
+ *
+ * Time stamps are kept as numbers of the form yyyyMMddHHmmss, so they compare
+ * in time order without any time zone.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class HistoryStore implements Closeable {
+
+    private static final int MAGIC = 0x48495858;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ENTRY_SIZE = 24;
+    private static final int STAMP_LENGTH = 19;
+    private static final int HEAD_LENGTH = 4;
+    private static final long WINDOW = 64L * 1024 * 1024;
+
+    private final Path historyPath;
+    private final Path indexPath;
+    private FileChannel history;
+    private FileChannel index;
+    private MappedByteBuffer entries;
+    private long indexedLength = 0;
+    private int count = 0;
+
+    /**
+     * Constructs a HistoryStore for the specified history and index files.
+     * Neither file needs to exist yet.
+     *
+     * @param historyPath the history file
+     * @param indexPath the index file kept next to it
+     */
+    public HistoryStore(Path historyPath, Path indexPath) {
+        this.historyPath = historyPath;
+        this.indexPath = indexPath;
+    }
+
+    /**
+     * Gets the number of lines in the history.
+     *
+     * @return the number of lines
+     * @throws IOException if the history could not be read
+     */
+    public synchronized int size() throws IOException {
+        refresh();
+        return count;
+    }
+
+    /**
+     * Gets the last lines of the history.
+     *
+     * @param lines the number of lines
+     * @return the lines, oldest first
+     * @throws IOException if the history could not be read
+     */
+    public synchronized List<String> tail(int lines) throws IOException {
+        refresh();
+        return read(Math.max(0, count - lines), count);
+    }
+
+    /**
+     * Gets the lines written in a time range.
+     *
+     * @param from the first time stamp to include, as yyyyMMddHHmmss
+     * @param to the last time stamp to include, as yyyyMMddHHmmss
+     * @return the lines, oldest first
+     * @throws IOException if the history could not be read
+     */
+    public synchronized List<String> between(long from, long to) throws IOException {
+        refresh();
+        return read(firstStampAfter(from - 1), firstStampAfter(to));
+    }
+
+    /**
+     * Gets the most recent lines whose command starts with some text.
+     *
+     * @param prefix the start of the command
+     * @param limit the most lines to return
+     * @return the lines, oldest first
+     * @throws IOException if the history could not be read
+     */
+    public synchronized List<String> withPrefix(String prefix, int limit) throws IOException {
+        refresh();
+        byte[] wanted = prefix.getBytes(StandardCharsets.UTF_8);
+        int head = head(ByteBuffer.wrap(wanted), 0, wanted.length);
+        int mask = wanted.length == 0 ? 0 : -1 << (8 * (HEAD_LENGTH - Math.min(HEAD_LENGTH, wanted.length)));
+        List<String> found = new ArrayList<>();
+        ByteBuffer line = ByteBuffer.allocate(1024);
+        for (int i = count - 1; i >= 0 && found.size() < limit; i--) {
+            if ((entryHead(i) & mask) != (head & mask)) {
+                continue;
+            }
+            long start = entryOffset(i);
+            long commandStart = start + entryCommandOffset(i);
+            int length = (int) (lineEnd(i) - start);
+            if (commandStart + wanted.length > start + length) {
+                continue;
+            }
+            if (line.capacity() < length) {
+                line = ByteBuffer.allocate(length);
+            }
+            line.clear().limit(length);
+            readFully(line, start);
+            int offset = (int) (commandStart - start);
+            if (matches(line, offset, wanted)) {
+                found.add(new String(line.array(), 0, length, StandardCharsets.UTF_8));
+            }
+        }
+        Collections.reverse(found);
+        return found;
+    }
+
+    /**
+     * Gets the most recent lines that contain some text.
+     *
+     * @param text the text to look for
+     * @param limit the most lines to return
+     * @return the lines, oldest first
+     * @throws IOException if the history could not be read
+     */
+    public synchronized List<String> containing(String text, int limit) throws IOException {
+        refresh();
+        byte[] wanted = text.getBytes(StandardCharsets.UTF_8);
+        List<String> found = new ArrayList<>();
+        int end = count;
+        while (end > 0 && found.size() < limit) {
+            int start = end - 1;
+            while (start > 0 && lineEnd(end - 1) - entryOffset(start - 1) <= WINDOW) {
+                start--;
+            }
+            long base = entryOffset(start);
+            MappedByteBuffer window = history.map(FileChannel.MapMode.READ_ONLY, base, lineEnd(end - 1) - base);
+            for (int i = end - 1; i >= start && found.size() < limit; i--) {
+                int lineStart = (int) (entryOffset(i) - base);
+                int lineLength = (int) (lineEnd(i) - entryOffset(i));
+                if (indexOf(window, lineStart, lineStart + lineLength, wanted) >= 0) {
+                    found.add(decode(window, lineStart, lineLength));
+                }
+            }
+            end = start;
+        }
+        Collections.reverse(found);
+        return found;
+    }
+
+    /**
+     * Forgets the index and deletes the index file, for when the history file
+     * is deleted or replaced.
+     *
+     * @throws IOException if the index file could not be deleted
+     */
+    public synchronized void reset() throws IOException {
+        close();
+        Files.deleteIfExists(indexPath);
+    }
+
+    /**
+     * Closes the history and index files. They are opened again by the next
+     * query.
+     *
+     * @throws IOException if a file could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        entries = null;
+        indexedLength = 0;
+        count = 0;
+        try {
+            if (history != null) {
+                history.close();
+            }
+        } finally {
+            history = null;
+            if (index != null) {
+                index.close();
+            }
+            index = null;
+        }
+    }
+
+    /**
+     * Parses the start of a time stamp written by
+     * {@link TimeEngine#timeStamp()}, such as "2025-01-31" or
+     * "2025-01-31_14-05", into the first time it covers.
+     *
+     * @param text the time stamp or a leading part of it
+     * @return the time stamp as yyyyMMddHHmmss
+     * @throws IllegalArgumentException if the text is not a time stamp
+     */
+    public static long parseFrom(String text) {
+        return parseStamp(text, '0');
+    }
+
+    /**
+     * Parses the start of a time stamp, such as "2025-01-31", into the last
+     * time it covers.
+     *
+     * @param text the time stamp or a leading part of it
+     * @return the time stamp as yyyyMMddHHmmss
+     * @throws IllegalArgumentException if the text is not a time stamp
+     */
+    public static long parseTo(String text) {
+        return parseStamp(text, '9');
+    }
+
+    /**
+     * Reads the digits of a time stamp and pads the missing ones.
+     *
+     * @param text the time stamp or a leading part of it
+     * @param padding the digit to pad with
+     * @return the time stamp as yyyyMMddHHmmss
+     */
+    private static long parseStamp(String text, char padding) {
+        StringBuilder digits = new StringBuilder(14);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits.append(ch);
+            } else if (ch != '-' && ch != '_' && ch != ':' && ch != ' ') {
+                throw new IllegalArgumentException("Invalid time stamp: " + text);
+            }
+        }
+        if (digits.length() < 4 || digits.length() > 14) {
+            throw new IllegalArgumentException("Invalid time stamp: " + text);
+        }
+        while (digits.length() < 14) {
+            digits.append(padding);
+        }
+        return Long.parseLong(digits.toString());
+    }
+
+    /**
+     * Opens the files and indexes the lines appended since the last call.
+     * The index is rebuilt if it does not match the history file.
+     *
+     * @throws IOException if a file could not be read or written
+     */
+    private void refresh() throws IOException {
+        if (!Files.exists(historyPath)) {
+            close();
+            return;
+        }
+        if (history == null) {
+            history = FileChannel.open(historyPath, StandardOpenOption.READ);
+            index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!loadHeader()) {
+                index.truncate(0);
+                indexedLength = 0;
+                count = 0;
+                writeHeader();
+            }
+            mapEntries();
+        }
+        long size = history.size();
+        if (size < indexedLength) {
+            index.truncate(0);
+            indexedLength = 0;
+            count = 0;
+            writeHeader();
+            mapEntries();
+        }
+        if (size > indexedLength) {
+            indexFrom(size);
+            writeHeader();
+            mapEntries();
+        }
+    }
+
+    /**
+     * Reads the header of the index file and checks that it matches the
+     * history file.
+     *
+     * @return true if the index can be used, false if it must be rebuilt
+     * @throws IOException if the index could not be read
+     */
+    private boolean loadHeader() throws IOException {
+        if (index.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        index.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return false;
+        }
+        indexedLength = header.getLong();
+        long entryCount = header.getLong();
+        if (entryCount > Integer.MAX_VALUE || index.size() != HEADER_SIZE + entryCount * ENTRY_SIZE
+                || indexedLength > history.size()) {
+            return false;
+        }
+        count = (int) entryCount;
+        if (indexedLength > 0) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            history.read(last, indexedLength - 1);
+            return last.get(0) == '\n';
+        }
+        return true;
+    }
+
+    /**
+     * Writes the header of the index file.
+     *
+     * @throws IOException if the index could not be written
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(indexedLength).putLong(count).putLong(0);
+        header.flip();
+        while (header.hasRemaining()) {
+            index.write(header, HEADER_SIZE - header.remaining());
+        }
+    }
+
+    /**
+     * Maps the entries of the index file.
+     *
+     * @throws IOException if the index could not be mapped
+     */
+    private void mapEntries() throws IOException {
+        entries = index.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) count * ENTRY_SIZE);
+    }
+
+    /**
+     * Scans the history file from the end of the indexed lines and appends an
+     * entry for each complete line. A line that is still being written is
+     * left for the next scan.
+     *
+     * @param size the size of the history file
+     * @throws IOException if a file could not be read or written
+     */
+    private void indexFrom(long size) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(ENTRY_SIZE * 4096);
+        long lineStart = indexedLength;
+        long windowSize = WINDOW;
+        long previousStamp = count > 0 ? entryStamp(count - 1) : 0;
+        while (lineStart < size) {
+            long length = Math.min(windowSize, size - lineStart);
+            MappedByteBuffer window = history.map(FileChannel.MapMode.READ_ONLY, lineStart, length);
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) != '\n') {
+                    continue;
+                }
+                if (!out.hasRemaining()) {
+                    flushEntries(out);
+                }
+                boolean stamped = isStamped(window, start, i);
+                if (stamped) {
+                    previousStamp = stamp(window, start);
+                }
+                out.putLong(lineStart + start);
+                out.putLong(previousStamp);
+                int commandOffset = stamped ? STAMP_LENGTH + 1 : 0;
+                out.putInt(head(window, start + commandOffset, i));
+                out.putInt(commandOffset);
+                count++;
+                start = i + 1;
+            }
+            if (start == 0 && length == size - lineStart) {
+                break;
+            }
+            if (start == 0) {
+                windowSize *= 2;
+                continue;
+            }
+            lineStart += start;
+            windowSize = WINDOW;
+        }
+        flushEntries(out);
+        indexedLength = lineStart;
+    }
+
+    /**
+     * Appends the buffered entries to the index file.
+     *
+     * @param out the buffered entries
+     * @throws IOException if the index could not be written
+     */
+    private void flushEntries(ByteBuffer out) throws IOException {
+        out.flip();
+        long position = HEADER_SIZE + (long) (count - out.remaining() / ENTRY_SIZE) * ENTRY_SIZE;
+        while (out.hasRemaining()) {
+            position += index.write(out, position);
+        }
+        out.clear();
+    }
+
+    /**
+     * Checks whether a line starts with a time stamp and a space.
+     *
+     * @param bytes the bytes holding the line
+     * @param start the start of the line
+     * @param end the end of the line
+     * @return true if the line is stamped, false otherwise
+     */
+    private static boolean isStamped(ByteBuffer bytes, int start, int end) {
+        if (end - start <= STAMP_LENGTH || bytes.get(start + STAMP_LENGTH) != ' ') {
+            return false;
+        }
+        for (int i = 0; i < STAMP_LENGTH; i++) {
+            byte b = bytes.get(start + i);
+            boolean digit = b >= '0' && b <= '9';
+            boolean separator = i == 4 || i == 7 || i == 10 || i == 13 || i == 16;
+            if (separator ? digit : !digit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a time stamp as a number of the form yyyyMMddHHmmss.
+     *
+     * @param bytes the bytes holding the line
+     * @param start the start of the time stamp
+     * @return the time stamp
+     */
+    private static long stamp(ByteBuffer bytes, int start) {
+        long value = 0;
+        for (int i = 0; i < STAMP_LENGTH; i++) {
+            byte b = bytes.get(start + i);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Packs the first bytes of a command into an int, padding with zeros.
+     *
+     * @param bytes the bytes holding the command
+     * @param start the start of the command
+     * @param end the end of the command
+     * @return the packed bytes
+     */
+    private static int head(ByteBuffer bytes, int start, int end) {
+        int head = 0;
+        for (int i = 0; i < HEAD_LENGTH; i++) {
+            head = (head << 8) | (start + i < end ? bytes.get(start + i) & 0xFF : 0);
+        }
+        return head;
+    }
+
+    /**
+     * Finds the first line with a time stamp after the specified one, assuming
+     * the time stamps never go down.
+     *
+     * @param stamp the time stamp
+     * @return the index of the line, or the number of lines if there is none
+     */
+    private int firstStampAfter(long stamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entryStamp(middle) <= stamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads a run of lines, mapping the history file a window at a time.
+     *
+     * @param from the first line
+     * @param to the line after the last one
+     * @return the lines
+     * @throws IOException if the history could not be read
+     */
+    private List<String> read(int from, int to) throws IOException {
+        List<String> lines = new ArrayList<>(Math.max(0, to - from));
+        int start = from;
+        while (start < to) {
+            int end = start + 1;
+            while (end < to && lineEnd(end) - entryOffset(start) <= WINDOW) {
+                end++;
+            }
+            long base = entryOffset(start);
+            MappedByteBuffer window = history.map(FileChannel.MapMode.READ_ONLY, base, lineEnd(end - 1) - base);
+            for (int i = start; i < end; i++) {
+                lines.add(decode(window, (int) (entryOffset(i) - base), (int) (lineEnd(i) - entryOffset(i))));
+            }
+            start = end;
+        }
+        return lines;
+    }
+
+    /**
+     * Reads bytes of the history file at a position.
+     *
+     * @param buffer the buffer to fill
+     * @param position the position in the history file
+     * @throws IOException if the history could not be read
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = history.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Gets the position of a field of an entry in the mapped entries. The
+     * position is computed in long arithmetic, so an entry past what a
+     * mapping can hold fails instead of reading another entry.
+     *
+     * @param entry the line
+     * @param field the offset of the field within the entry
+     * @return the position of the field
+     * @throws ArithmeticException if the position does not fit in an int
+     */
+    private static int entryPosition(int entry, int field) {
+        return Math.toIntExact((long) entry * ENTRY_SIZE + field);
+    }
+
+    /**
+     * Gets the offset of a line in the history file.
+     *
+     * @param entry the line
+     * @return the offset of its first byte
+     */
+    private long entryOffset(int entry) {
+        return entries.getLong(entryPosition(entry, 0));
+    }
+
+    /**
+     * Gets the time stamp of a line. A line without one has the stamp of the
+     * last stamped line before it.
+     *
+     * @param entry the line
+     * @return the time stamp as yyyyMMddHHmmss
+     */
+    private long entryStamp(int entry) {
+        return entries.getLong(entryPosition(entry, 8));
+    }
+
+    /**
+     * Gets the first bytes of the command of a line.
+     *
+     * @param entry the line
+     * @return the first bytes, packed as by {@link #head}
+     */
+    private int entryHead(int entry) {
+        return entries.getInt(entryPosition(entry, 16));
+    }
+
+    /**
+     * Gets where the command of a line starts, past its time stamp.
+     *
+     * @param entry the line
+     * @return the offset of the command from the start of the line
+     */
+    private int entryCommandOffset(int entry) {
+        return entries.getInt(entryPosition(entry, 20));
+    }
+
+    /**
+     * Gets the offset of the line break that ends a line.
+     *
+     * @param entry the line
+     * @return the offset of the line break
+     */
+    private long lineEnd(int entry) {
+        return (entry + 1 < count ? entryOffset(entry + 1) : indexedLength) - 1;
+    }
+
+    /**
+     * Checks whether bytes are found at an offset.
+     *
+     * @param bytes the bytes to look in
+     * @param offset where to look
+     * @param wanted the bytes to look for
+     * @return true if they are found there, false otherwise
+     */
+    private static boolean matches(ByteBuffer bytes, int offset, byte[] wanted) {
+        for (int i = 0; i < wanted.length; i++) {
+            if (bytes.get(offset + i) != wanted[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first place bytes are found between two offsets.
+     *
+     * @param bytes the bytes to look in
+     * @param start the first offset to look at
+     * @param end the offset past the last byte to look at
+     * @param wanted the bytes to look for
+     * @return the offset where they are found, or -1 if they are not
+     */
+    private static int indexOf(ByteBuffer bytes, int start, int end, byte[] wanted) {
+        if (wanted.length == 0) {
+            return start;
+        }
+        for (int i = start; i <= end - wanted.length; i++) {
+            if (bytes.get(i) == wanted[0] && matches(bytes, i, wanted)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes UTF-8 bytes into a string.
+     *
+     * @param bytes the bytes holding the text
+     * @param start the offset of the text
+     * @param length the number of bytes of the text
+     * @return the text
+     */
+    private static String decode(ByteBuffer bytes, int start, int length) {
+        byte[] line = new byte[length];
+        bytes.get(start, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,197 @@
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HistoryWriter class appends lines to a history file from a background
+ * thread. Callers only add the line to a lock-free queue. A single open file
+ * channel is kept, and the queued lines are committed together, either on a
+ * short interval or as soon as a buffer's worth is waiting. {@link #flush()}
+ * commits everything that is queued before it returns.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class HistoryWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingChars = new AtomicInteger();
+    private final AtomicBoolean commitRequested = new AtomicBoolean();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ScheduledExecutorService committer;
+    private FileChannel channel;
+    private IOException failure;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs a HistoryWriter for the specified file. The file is opened
+     * when the first line is committed.
+     *
+     * @param path the file to append to
+     * @param intervalMillis the time between commits in milliseconds
+     */
+    public HistoryWriter(Path path, long intervalMillis) {
+        this.path = path;
+        this.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "history-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commitInBackground, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a line to be appended. A line break is added after it.
+     *
+     * @param line the line to append
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void append(String line) {
+        if (closed) {
+            throw new IllegalStateException("History writer is closed");
+        }
+        pending.add(line);
+        if (pendingChars.addAndGet(line.length() + 1) >= BUFFER_SIZE && commitRequested.compareAndSet(false, true)) {
+            committer.execute(this::commitInBackground);
+        }
+    }
+
+    /**
+     * Commits every queued line to the file.
+     *
+     * @throws IOException if this or an earlier background commit failed
+     */
+    public void flush() throws IOException {
+        IOException error;
+        synchronized (this) {
+            error = failure;
+            failure = null;
+        }
+        commit();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Commits every queued line and closes the file. The file is opened again
+     * by the next commit, so it can be deleted or replaced in between.
+     *
+     * @throws IOException if the lines could not be written or the file could
+     * not be closed
+     */
+    public synchronized void closeFile() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Commits every queued line, closes the file and stops the background
+     * thread. Lines cannot be added afterwards.
+     *
+     * @throws IOException if the lines could not be written or the file could
+     * not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        committer.shutdown();
+        closeFile();
+    }
+
+    /**
+     * Commits the queued lines from the background thread, keeping any error
+     * for the next call to {@link #flush()}.
+     */
+    private void commitInBackground() {
+        commitRequested.set(false);
+        try {
+            commit();
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Encodes the queued lines into the buffer, writing it to the file each
+     * time it fills, and then writes what is left.
+     *
+     * @throws IOException if the file could not be written
+     */
+    private synchronized void commit() throws IOException {
+        String line;
+        while ((line = pending.poll()) != null) {
+            pendingChars.addAndGet(-(line.length() + 1));
+            encoder.reset();
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (encoder.encode(chars, buffer, true).isOverflow()) {
+                drain();
+            }
+            encoder.flush(buffer);
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) '\n');
+        }
+        drain();
+    }
+
+    /**
+     * Writes the contents of the buffer to the file, opening it if needed.
+     *
+     * @throws IOException if the file could not be opened or written
+     */
+    private void drain() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        buffer.flip();
+        FlightEvents.Persist event = new FlightEvents.Persist();
+        event.begin();
+        int bytes = buffer.remaining();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.compact();
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = path.toString();
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The JobTable class keeps the terminal commands that run in the background.
+ * Each job gets a number, and the output of its process is read by a thread of
+ * its own and kept, up to a limit, so it can be shown later. A job can be
+ * brought to the foreground, waited for or killed. When a job finishes a
+ * notice is queued, which the prompt prints the next time it is drawn.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class JobTable {
+
+    /**
+     * The state of a job.
+     */
+    public enum State {
+        RUNNING, DONE, FAILED, KILLED
+    }
+
+    /**
+     * A command running in the background.
+     */
+    public static final class Job {
+
+        private final int id;
+        private final String command;
+        private final Process process;
+        private final int maxOutput;
+        private final StringBuilder output = new StringBuilder();
+        private final CompletableFuture<Integer> done = new CompletableFuture<>();
+        private final FlightEvents.ProcessRun event = new FlightEvents.ProcessRun();
+        private volatile State state = State.RUNNING;
+        private volatile int exitCode = -1;
+        private PrintStream echo;
+
+        private Job(int id, String command, Process process, int maxOutput) {
+            this.id = id;
+            this.command = command;
+            this.process = process;
+            this.maxOutput = maxOutput;
+        }
+
+        /**
+         * Gets the number of the job.
+         *
+         * @return the job number
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Gets the command the job runs.
+         *
+         * @return the command
+         */
+        public String getCommand() {
+            return command;
+        }
+
+        /**
+         * Gets the state of the job.
+         *
+         * @return the state
+         */
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Gets the exit code of the process.
+         *
+         * @return the exit code, or -1 while the job is running
+         */
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * Gets the output kept so far. If the job printed more than the limit,
+         * only the end is kept.
+         *
+         * @return the output
+         */
+        public synchronized String getOutput() {
+            return output.toString();
+        }
+
+        /**
+         * Gets the future that completes with the exit code once the job is
+         * done and all of its output was read.
+         *
+         * @return the future
+         */
+        public CompletableFuture<Integer> getCompletion() {
+            return done;
+        }
+
+        /**
+         * Describes the job as the jobs command lists it.
+         *
+         * @return the description
+         */
+        @Override
+        public String toString() {
+            String status = switch (state) {
+                case RUNNING ->
+                    "Running";
+                case DONE ->
+                    "Done";
+                case FAILED ->
+                    "Exit " + exitCode;
+                case KILLED ->
+                    "Killed";
+            };
+            return "[" + id + "] " + status + "  " + command;
+        }
+
+        /**
+         * Keeps a chunk of output and prints it too if the job is in the
+         * foreground.
+         *
+         * @param chunk the output
+         * @param length the number of characters read
+         */
+        private synchronized void append(char[] chunk, int length) {
+            output.append(chunk, 0, length);
+            if (output.length() > maxOutput) {
+                output.delete(0, output.length() - maxOutput);
+            }
+            if (echo != null) {
+                echo.print(new String(chunk, 0, length));
+                echo.flush();
+            }
+        }
+
+        /**
+         * Prints the output kept so far and then every new chunk as it is
+         * read, or stops printing.
+         *
+         * @param out where to print, or null to stop
+         */
+        private synchronized void setEcho(PrintStream out) {
+            if (out != null && echo == null) {
+                out.print(output);
+                out.flush();
+            }
+            echo = out;
+        }
+    }
+
+    private final Map<Integer, Job> jobs = new LinkedHashMap<>();
+    private final List<Job> finished = new ArrayList<>();
+    private final int maxOutput;
+    private final int maxFinished;
+    private int nextId = 1;
+
+    /**
+     * Constructs a JobTable.
+     *
+     * @param maxOutput the most characters of output kept for each job
+     * @param maxFinished the most finished jobs kept in the table
+     */
+    public JobTable(int maxOutput, int maxFinished) {
+        this.maxOutput = maxOutput;
+        this.maxFinished = maxFinished;
+    }
+
+    /**
+     * Adds a started process as a job and starts reading its output.
+     *
+     * @param command the command the process runs
+     * @param process the process
+     * @return the job
+     */
+    public Job start(String command, Process process) {
+        Job job;
+        synchronized (this) {
+            job = new Job(nextId++, command, process, maxOutput);
+            jobs.put(job.id, job);
+        }
+        job.event.begin();
+        Thread reader = new Thread(() -> read(job), "job-" + job.id);
+        reader.setDaemon(true);
+        reader.start();
+        return job;
+    }
+
+    /**
+     * Gets a job by its number.
+     *
+     * @param id the job number
+     * @return the job, or null if there is none
+     */
+    public synchronized Job get(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Gets the most recently started job that is still running.
+     *
+     * @return the job, or null if none is running
+     */
+    public synchronized Job getLastRunning() {
+        Job last = null;
+        for (Job job : jobs.values()) {
+            if (job.state == State.RUNNING) {
+                last = job;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Gets every job in the table, in the order they were started.
+     *
+     * @return the jobs
+     */
+    public synchronized List<Job> list() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * Gets the jobs that finished since the last call and forgets them, so
+     * each is reported once.
+     *
+     * @return the finished jobs
+     */
+    public synchronized List<Job> drainFinished() {
+        List<Job> drained = new ArrayList<>(finished);
+        finished.clear();
+        return drained;
+    }
+
+    /**
+     * Prints the output of a job as it runs and waits for it.
+     *
+     * @param job the job
+     * @param out where to print the output
+     * @return the exit code of the job
+     */
+    public int foreground(Job job, PrintStream out) {
+        job.setEcho(out);
+        try {
+            return job.done.join();
+        } finally {
+            job.setEcho(null);
+            acknowledge(job);
+        }
+    }
+
+    /**
+     * Waits for a job without printing its output.
+     *
+     * @param job the job
+     * @return the exit code of the job
+     */
+    public int waitFor(Job job) {
+        try {
+            return job.done.join();
+        } finally {
+            acknowledge(job);
+        }
+    }
+
+    /**
+     * Waits for every running job.
+     *
+     * @return the jobs that were waited for
+     */
+    public List<Job> waitForAll() {
+        List<Job> waited = new ArrayList<>();
+        for (Job job : list()) {
+            if (job.state == State.RUNNING) {
+                waited.add(job);
+            }
+        }
+        for (Job job : waited) {
+            waitFor(job);
+        }
+        return waited;
+    }
+
+    /**
+     * Kills a job and the processes it started.
+     *
+     * @param job the job
+     * @return false if the job was not running, true otherwise
+     */
+    public boolean kill(Job job) {
+        if (job.state != State.RUNNING) {
+            return false;
+        }
+        job.state = State.KILLED;
+        job.process.descendants().forEach(ProcessHandle::destroy);
+        job.process.destroy();
+        return true;
+    }
+
+    /**
+     * Kills every running job.
+     *
+     * @return the number of jobs killed
+     */
+    public int killAll() {
+        int killed = 0;
+        for (Job job : list()) {
+            if (kill(job)) {
+                killed++;
+            }
+        }
+        return killed;
+    }
+
+    /**
+     * Drops the notice of a job whose end the caller already reported.
+     *
+     * @param job the job
+     */
+    private synchronized void acknowledge(Job job) {
+        finished.remove(job);
+    }
+
+    /**
+     * Reads the output of a job until the process closes it, then records how
+     * the job ended.
+     *
+     * @param job the job
+     */
+    private void read(Job job) {
+        InputStream in = job.process.getInputStream();
+        try (Reader reader = new InputStreamReader(in, Charset.defaultCharset())) {
+            char[] chunk = new char[4096];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                job.append(chunk, read);
+            }
+        } catch (IOException e) {
+            //the stream closes when the job is killed
+        }
+        int exitCode;
+        try {
+            exitCode = job.process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exitCode = -1;
+        }
+        job.exitCode = exitCode;
+        if (job.state == State.RUNNING) {
+            job.state = exitCode == 0 ? State.DONE : State.FAILED;
+        }
+        job.event.end();
+        if (job.event.shouldCommit()) {
+            job.event.command = job.command;
+            job.event.pid = job.process.pid();
+            job.event.exitCode = exitCode;
+            job.event.background = true;
+            job.event.commit();
+        }
+        synchronized (this) {
+            finished.add(job);
+            prune();
+        }
+        job.done.complete(exitCode);
+    }
+
+    /**
+     * Removes the oldest finished jobs from the table once there are more than
+     * the limit.
+     */
+    private void prune() {
+        int count = 0;
+        for (Job job : jobs.values()) {
+            if (job.state != State.RUNNING) {
+                count++;
+            }
+        }
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (count > maxFinished && iterator.hasNext()) {
+            if (iterator.next().state != State.RUNNING) {
+                iterator.remove();
+                count--;
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+
+/**
+ * The Metrics class keeps counters and latency histograms for the stages of
+ * the application and for each command. Recording is lock-free: counters are
+ * {@link LongAdder}s and histograms have a fixed set of buckets that are only
+ * ever incremented, so recording never allocates once a name has been seen.
+ *
+ * Histogram buckets grow exponentially, with 32 linear buckets between each
+ * power of two, so any recorded value is reported within about 3% of its true
+ * value, from nanoseconds up to about 36 minutes.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public abstract class Metrics {
+
+    /**
+     * A histogram of durations in nanoseconds.
+     */
+    public static final class Histogram {
+
+        private static final int SUB_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT = 40;
+        private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Records a duration. Negative values are recorded as zero and values
+         * past the range in the last bucket.
+         *
+         * @param nanos the duration in nanoseconds
+         */
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(index(Math.min(value, MAX_VALUE)));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * Gets the number of recorded values.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Gets the largest recorded value.
+         *
+         * @return the largest value in nanoseconds
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Gets the average of the recorded values.
+         *
+         * @return the mean in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() / n;
+        }
+
+        /**
+         * Gets the value below which a percentage of the recorded values fall.
+         *
+         * @param percentile the percentage, from 0 to 100
+         * @return the value in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min(highestEquivalent(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * Gets the bucket of a value.
+         *
+         * @param value the value, from 0 to the largest value
+         * @return the bucket
+         */
+        static int index(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int top = (int) (value >>> (exponent - SUB_BITS));
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+        }
+
+        /**
+         * Gets the largest value that falls in a bucket.
+         *
+         * @param index the bucket
+         * @return the value
+         */
+        static long highestEquivalent(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+            long top = SUB_BUCKETS + index % SUB_BUCKETS;
+            int shift = exponent - SUB_BITS;
+            return ((top + 1) << shift) - 1;
+        }
+    }
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Gets a histogram, creating it the first time.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = HISTOGRAMS.get(name);
+        return histogram != null ? histogram : HISTOGRAMS.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Records the time since a start time in a histogram.
+     *
+     * @param name the name of the histogram
+     * @param startNanos the start time from {@link System#nanoTime()}
+     */
+    public static void recordSince(String name, long startNanos) {
+        histogram(name).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Adds one to a counter.
+     *
+     * @param name the name of the counter
+     */
+    public static void count(String name) {
+        LongAdder counter = COUNTERS.get(name);
+        if (counter == null) {
+            counter = COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Gets the value of a counter.
+     *
+     * @param name the name of the counter
+     * @return the value, or 0 if it was never counted
+     */
+    public static long getCount(String name) {
+        LongAdder counter = COUNTERS.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Forgets every counter and histogram.
+     */
+    public static void reset() {
+        HISTOGRAMS.clear();
+        COUNTERS.clear();
+    }
+
+    /**
+     * Describes every counter and histogram, one per line and sorted by name,
+     * with latencies in milliseconds.
+     *
+     * @return the lines
+     */
+    public static List<String> report() {
+        List<String> lines = new ArrayList<>();
+        Map<String, LongAdder> counters = new TreeMap<>(COUNTERS);
+        if (!counters.isEmpty()) {
+            lines.add("Counters:");
+            counters.forEach((name, counter) -> lines.add(String.format(Locale.ROOT, "  %-32s %10d", name, counter.sum())));
+        }
+        Map<String, Histogram> histograms = new TreeMap<>(HISTOGRAMS);
+        if (!histograms.isEmpty()) {
+            lines.add(String.format(Locale.ROOT, "%-34s %8s %9s %9s %9s %9s", "Latency (ms):", "count", "p50", "p95", "p99", "max"));
+            histograms.forEach((name, histogram) -> lines.add(String.format(Locale.ROOT, "  %-32s %8d %9.3f %9.3f %9.3f %9.3f",
+                    name, histogram.getCount(), millis(histogram.getPercentile(50)), millis(histogram.getPercentile(95)),
+                    millis(histogram.getPercentile(99)), millis(histogram.getMax()))));
+        }
+        return lines;
+    }
+
+    /**
+     * Exports every counter and histogram, with latencies in nanoseconds.
+     *
+     * @return the JSON object
+     */
+    public static JSONObject toJSON() {
+        JSONObject counters = new JSONObject();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.sum()));
+        JSONObject histograms = new JSONObject();
+        HISTOGRAMS.forEach((name, histogram) -> {
+            JSONObject values = new JSONObject();
+            values.put("count", histogram.getCount());
+            values.put("mean", histogram.getMean());
+            values.put("p50", histogram.getPercentile(50));
+            values.put("p95", histogram.getPercentile(95));
+            values.put("p99", histogram.getPercentile(99));
+            values.put("max", histogram.getMax());
+            histograms.put(name, values);
+        });
+        JSONObject json = new JSONObject();
+        json.put("unit", "ns");
+        json.put("counters", counters);
+        json.put("histograms", histograms);
+        return json;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -15,7 +15,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -33,6 +35,7 @@ public class OpenAIPromptEngine {
     private String lastResponseReceived = "";
     private final List<String> chatCache;
     private Map<String, Object> responseDataMap;
+    private static final int REQUEST_TIMEOUT = 10_000;
 
     /**
      * Constructs an OpenAIPromptEngine with the specified API key.
@@ -59,13 +62,28 @@ public class OpenAIPromptEngine {
      * @return the response from the OpenAI API
      */
     public String buildPromptAndReturnResponce(String message, boolean usingChatCache) {
+        return buildPromptAndStreamResponse(message, usingChatCache, null);
+    }
+
+    /**
+     * Builds a prompt and passes each piece of the response from the OpenAI
+     * API on as it arrives, so it can be shown before the whole response is
+     * in. The request fails if no piece arrives for ten seconds.
+     *
+     * @param message the user's message
+     * @param usingChatCache whether to use the chat cache
+     * @param chunks what each piece of the response is passed to, or null to
+     * wait for the whole response
+     * @return the whole response from the OpenAI API
+     */
+    public String buildPromptAndStreamResponse(String message, boolean usingChatCache, Consumer<String> chunks) {
         if (USER_API_KEY == null) {
             return "API key not set.";
         }
         if (message == null || message.isEmpty()) {
             return "User's message is empty.";
         }
-        String response = chatGPT(message, usingChatCache);
+        String response = chatGPT(message, usingChatCache, chunks);
         if (usingChatCache) {
             chatCache.add("User: " + message);
             if (response != null && !response.isEmpty()) {
@@ -86,7 +104,7 @@ public class OpenAIPromptEngine {
             System.out.println("OpenAI: " + System.currentTimeMillis() + "API key not set.");
             return;
         }
-        String response = chatGPT(message, usingChatCache);
+        String response = chatGPT(message, usingChatCache, null);
         if (usingChatCache) {
             chatCache.add("User: " + message);
             if (response != null && !response.isEmpty()) {
@@ -96,13 +114,17 @@ public class OpenAIPromptEngine {
     }
 
     /**
-     * Sends a message to the OpenAI API and returns the response.
+     * Sends a message to the OpenAI API and returns the response. When the
+     * response is streamed, it is read as server-sent events, one piece of
+     * the response per event.
      *
      * @param message the user's message
      * @param usingChatCache whether to use the chat cache
+     * @param chunks what each piece of the response is passed to, or null to
+     * wait for the whole response
      * @return the response from the OpenAI API
      */
-    private String chatGPT(String passedMessage, boolean usingChatCache) {
+    private String chatGPT(String passedMessage, boolean usingChatCache, Consumer<String> chunks) {
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<String> future = executor.submit(() -> {
             String url = "https://api.openai.com/v1/chat/completions";
@@ -117,18 +139,40 @@ public class OpenAIPromptEngine {
             sentMessage = filterMessage(sentMessage);
             lastPromptUsed = sentMessage;
             StringBuilder response = new StringBuilder();
+            FlightEvents.HttpRequest event = new FlightEvents.HttpRequest();
+            event.method = "POST";
+            event.url = url;
+            event.statusCode = -1;
+            event.begin();
+            long start = System.nanoTime();
             try {
                 URL obj = new URL(url);
                 HttpURLConnection con = (HttpURLConnection) obj.openConnection();
                 con.setRequestMethod("POST");
                 con.setRequestProperty("Authorization", "Bearer " + apiKey);
                 con.setRequestProperty("Content-Type", "application/json");
-                String body = "{\"model\": \"" + model + "\", \"messages\": [{\"role\": \"user\", \"content\": \"" + sentMessage + "\"}]}";
+                String body = "{\"model\": \"" + model + "\", \"messages\": [{\"role\": \"user\", \"content\": \"" + sentMessage + "\"}]"
+                        + (chunks != null ? ", \"stream\": true}" : "}");
                 con.setDoOutput(true);
+                con.setConnectTimeout(REQUEST_TIMEOUT);
+                con.setReadTimeout(REQUEST_TIMEOUT);
+                event.requestBytes = body.length();
                 try (OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream())) {
                     writer.write(body);
                     writer.flush();
                 }
+                if (chunks != null) {
+                    StringBuilder content = new StringBuilder();
+                    String last = readEvents(con, chunks, content, response);
+                    Metrics.recordSince("openai request", start);
+                    event.statusCode = con.getResponseCode();
+                    event.responseBytes = response.length();
+                    if (last != null) {
+                        responseDataMap = parseJSONResponse(last);
+                    }
+                    lastResponseReceived = content.toString();
+                    return lastResponseReceived;
+                }
                 try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
                     String inputLine;
                     response = new StringBuilder();
@@ -137,17 +181,26 @@ public class OpenAIPromptEngine {
                     }
                 }
                 // returns the extracted contents of the response.
+                Metrics.recordSince("openai request", start);
+                event.statusCode = con.getResponseCode();
+                event.responseBytes = response.length();
                 responseDataMap = parseJSONResponse(response.toString());
                 lastResponseReceived = extractContentFromJSON(response.toString());
                 return lastResponseReceived;
             } catch (IOException e) {
+                Metrics.count("openai errors");
                 System.out.println(System.currentTimeMillis() + " " + e.getMessage());
                 lastResponseReceived = response.toString();
                 return null;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.commit();
+                }
             }
         });
         try {
-            return future.get(10, TimeUnit.SECONDS);
+            return chunks != null ? future.get() : future.get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
         } catch (TimeoutException e) {
             future.cancel(true);
             System.out.println("OpenAI API connection timed out." + System.currentTimeMillis());
@@ -160,6 +213,62 @@ public class OpenAIPromptEngine {
         }
     }
 
+    /**
+     * Reads a streamed response. Each event is a "data: " line holding a JSON
+     * object with the next piece of the content, and the stream ends with
+     * "data: [DONE]".
+     *
+     * @param con the connection
+     * @param chunks what each piece of the content is passed to
+     * @param content where the whole content is collected
+     * @param raw where the raw events are collected
+     * @return the JSON of the last event, or null if there was none
+     * @throws IOException if the response could not be read
+     */
+    private static String readEvents(HttpURLConnection con, Consumer<String> chunks, StringBuilder content,
+            StringBuilder raw) throws IOException {
+        String last = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()))) {
+            String inputLine;
+            while ((inputLine = in.readLine()) != null) {
+                raw.append(inputLine);
+                if (!inputLine.startsWith("data:")) {
+                    continue;
+                }
+                String data = inputLine.substring(5).trim();
+                if (data.equals("[DONE]")) {
+                    break;
+                }
+                String piece = extractDeltaFromJSON(data);
+                last = data;
+                if (piece != null && !piece.isEmpty()) {
+                    content.append(piece);
+                    chunks.accept(piece);
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Extracts the piece of content from an event of a streamed response.
+     *
+     * @param jsonEvent the JSON of the event
+     * @return the piece of content, or null if the event has none
+     */
+    private static String extractDeltaFromJSON(String jsonEvent) {
+        try {
+            JSONArray choices = new JSONObject(jsonEvent).getJSONArray("choices");
+            if (choices.isEmpty()) {
+                return null;
+            }
+            return choices.getJSONObject(0).getJSONObject("delta").optString("content", null);
+        } catch (JSONException e) {
+            System.out.println("Failed to extract content from JSON response: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Filters the message to remove unwanted characters.
      *
@@ -218,19 +327,33 @@ public class OpenAIPromptEngine {
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<Boolean> future = executor.submit(() -> {
             String url = "https://api.openai.com/v1/engines";
+            FlightEvents.HttpRequest event = new FlightEvents.HttpRequest();
+            event.method = "GET";
+            event.url = url;
+            event.statusCode = -1;
+            event.begin();
+            long start = System.nanoTime();
             try {
                 URL obj = new URL(url);
                 HttpURLConnection con = (HttpURLConnection) obj.openConnection();
                 con.setRequestMethod("GET");
                 con.setRequestProperty("Authorization", "Bearer " + apiKey);
                 int responseCode = con.getResponseCode();
+                Metrics.recordSince("openai key check", start);
+                event.statusCode = responseCode;
                 if (responseCode != 200) {
                     System.out.println("Response Code: " + responseCode);
                     return false;
                 }
                 return true;
             } catch (IOException e) {
+                Metrics.count("openai errors");
                 return false;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.commit();
+                }
             }
         });
         try {
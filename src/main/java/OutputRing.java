@@ -0,0 +1,132 @@
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The OutputRing class keeps the last bytes written to it, up to a fixed
+ * capacity, and forgets older ones. It is used to capture the output of a
+ * command while the output is also passed to the terminal, so the memory used
+ * stays the same however much a command prints. The buffer starts small and
+ * grows to its capacity only if that much is written.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class OutputRing extends OutputStream {
+
+    private static final int INITIAL_SIZE = 256;
+
+    private final int capacity;
+    private byte[] buffer;
+    private int end;
+    private long total;
+
+    /**
+     * Constructs an OutputRing.
+     *
+     * @param capacity the number of bytes to keep
+     */
+    public OutputRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        buffer = new byte[Math.min(capacity, INITIAL_SIZE)];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+        total += length;
+        if (length >= capacity) {
+            grow(capacity);
+            System.arraycopy(bytes, offset + length - capacity, buffer, 0, capacity);
+            end = 0;
+            return;
+        }
+        if (total <= buffer.length) {
+            System.arraycopy(bytes, offset, buffer, end, length);
+            end += length;
+            return;
+        }
+        if (buffer.length < capacity) {
+            grow((int) Math.min(capacity, Math.max(total, buffer.length * 2L)));
+            if (total <= buffer.length) {
+                System.arraycopy(bytes, offset, buffer, end, length);
+                end += length;
+                return;
+            }
+        }
+        int first = Math.min(length, capacity - end);
+        System.arraycopy(bytes, offset, buffer, end, first);
+        System.arraycopy(bytes, offset + first, buffer, 0, length - first);
+        end = (end + length) % capacity;
+    }
+
+    /**
+     * Gets the number of bytes written, including the ones forgotten.
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Checks whether bytes were forgotten because more than the capacity was
+     * written.
+     *
+     * @return true if bytes were forgotten, false otherwise
+     */
+    public synchronized boolean isTruncated() {
+        return total > capacity;
+    }
+
+    /**
+     * Gets the bytes kept, oldest first.
+     *
+     * @return the bytes
+     */
+    public synchronized byte[] toByteArray() {
+        if (total < capacity || (total == capacity && end == capacity)) {
+            byte[] bytes = new byte[(int) total];
+            System.arraycopy(buffer, 0, bytes, 0, (int) total);
+            return bytes;
+        }
+        byte[] bytes = new byte[capacity];
+        System.arraycopy(buffer, end, bytes, 0, capacity - end);
+        System.arraycopy(buffer, 0, bytes, capacity - end, end);
+        return bytes;
+    }
+
+    /**
+     * Decodes the bytes kept as UTF-8. If bytes were forgotten, a character cut
+     * in half at the start is left out.
+     *
+     * @return the text
+     */
+    @Override
+    public synchronized String toString() {
+        byte[] bytes = toByteArray();
+        int start = 0;
+        if (isTruncated()) {
+            while (start < bytes.length && start < 3 && (bytes[start] & 0xC0) == 0x80) {
+                start++;
+            }
+        }
+        return new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8);
+    }
+
+    private void grow(int size) {
+        if (size <= buffer.length) {
+            return;
+        }
+        byte[] grown = new byte[size];
+        System.arraycopy(buffer, 0, grown, 0, end);
+        buffer = grown;
+    }
+}
@@ -0,0 +1,258 @@
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The ShellSession class keeps one shell running and sends it commands over
+ * its input, so commands do not pay for starting a shell and the variables,
+ * functions and options they set are kept for the next command.
+ *
+ * After each command the shell prints a marker with the exit code and the
+ * current directory to its output, and another marker to its error output.
+ * The marker starts with a control character and a random token, so the
+ * output of a command is passed through until the marker is seen. Commands
+ * read their input from /dev/null, because the input of the shell carries the
+ * commands that follow.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class ShellSession implements Closeable {
+
+    /**
+     * The result of a command run in the session.
+     *
+     * @param exitCode the exit code of the command
+     * @param directory the current directory of the shell after the command
+     */
+    public record Result(int exitCode, String directory) {
+    }
+
+    private static final byte MARKER_START = 2;
+
+    private final Process process;
+    private final OutputStream input;
+    private final InputStream output;
+    private final InputStream error;
+    private final String token;
+    private final byte[] marker;
+    private final ExecutorService errorReader;
+    private String directory;
+    private volatile boolean busy;
+
+    /**
+     * Starts a shell.
+     *
+     * @param shell the shell to run
+     * @param directory the directory to start in
+     * @throws IOException if the shell could not be started
+     */
+    public ShellSession(String shell, String directory) throws IOException {
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        token = "DTT" + HexFormat.of().formatHex(random);
+        marker = new byte[token.length() + 1];
+        marker[0] = MARKER_START;
+        System.arraycopy(token.getBytes(StandardCharsets.US_ASCII), 0, marker, 1, token.length());
+        ProcessBuilder processBuilder = new ProcessBuilder(shell);
+        processBuilder.directory(new File(directory));
+        process = processBuilder.start();
+        input = process.getOutputStream();
+        output = new BufferedInputStream(process.getInputStream());
+        error = new BufferedInputStream(process.getErrorStream());
+        errorReader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shell-" + process.pid() + "-stderr");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.directory = directory;
+    }
+
+    /**
+     * Runs a command and waits for it. Its output and error output are passed
+     * on as they arrive and also copied to a capture stream. If the command
+     * ends the shell, the exit code of the shell is returned and the session
+     * can no longer be used.
+     *
+     * @param command the command to run
+     * @param directory the directory to run it in
+     * @param out where the output of the command goes
+     * @param err where the error output of the command goes
+     * @param capture where both are copied
+     * @return the result of the command
+     * @throws IOException if the shell could not be written to or read from
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public synchronized Result run(String command, String directory, PrintStream out, PrintStream err,
+            OutputStream capture) throws IOException, InterruptedException {
+        if (!process.isAlive()) {
+            throw new IOException("The shell has exited");
+        }
+        StringBuilder script = new StringBuilder();
+        if (!directory.equals(this.directory)) {
+            script.append("cd -- ").append(quote(directory)).append('\n');
+        }
+        script.append("command eval ").append(quote(command)).append(" </dev/null\n");
+        script.append("printf '\\002").append(token).append(" %d %s\\n' \"$?\" \"$PWD\"; ");
+        script.append("printf '\\002").append(token).append("\\n' >&2\n");
+        busy = true;
+        try {
+            CompletableFuture<String> errorDone = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pump(error, err, capture);
+                } catch (IOException e) {
+                    return null;
+                }
+            }, errorReader);
+            input.write(script.toString().getBytes(StandardCharsets.UTF_8));
+            input.flush();
+            String trailer = pump(output, out, capture);
+            errorDone.get();
+            if (trailer == null) {
+                return new Result(process.waitFor(), directory);
+            }
+            String[] fields = trailer.trim().split(" ", 2);
+            this.directory = fields.length > 1 ? fields[1] : directory;
+            return new Result(Integer.parseInt(fields[0]), this.directory);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            busy = false;
+        }
+    }
+
+    /**
+     * Stops the command that is running. Its processes are destroyed; if it
+     * runs inside the shell itself, the shell is closed instead.
+     */
+    public void interrupt() {
+        if (!busy) {
+            return;
+        }
+        if (process.descendants().count() == 0) {
+            close();
+            return;
+        }
+        process.descendants().forEach(ProcessHandle::destroy);
+    }
+
+    /**
+     * Checks whether the shell is still running.
+     *
+     * @return true if the shell is running, false otherwise
+     */
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Gets the process id of the shell.
+     *
+     * @return the process id
+     */
+    public long pid() {
+        return process.pid();
+    }
+
+    /**
+     * Ends the shell and any command it is running.
+     */
+    @Override
+    public void close() {
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+        errorReader.shutdown();
+    }
+
+    /**
+     * Copies a stream until the marker, and returns the rest of the line the
+     * marker is on. Bytes are passed on in chunks, whenever the chunk is full
+     * or nothing more has arrived yet.
+     *
+     * @param in the stream to read
+     * @param out where to copy what comes before the marker
+     * @param copy where else to copy it
+     * @return the rest of the marker line, or null if the stream ended first
+     * @throws IOException if the stream could not be read
+     */
+    private String pump(InputStream in, PrintStream out, OutputStream copy) throws IOException {
+        byte[] chunk = new byte[8192];
+        int length = 0;
+        int matched = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == marker[matched]) {
+                if (++matched == marker.length) {
+                    write(out, copy, chunk, length);
+                    return readLine(in);
+                }
+                continue;
+            }
+            if (matched > 0) {
+                if (length + matched > chunk.length) {
+                    write(out, copy, chunk, length);
+                    length = 0;
+                }
+                System.arraycopy(marker, 0, chunk, length, matched);
+                length += matched;
+                matched = b == MARKER_START ? 1 : 0;
+                if (matched == 1) {
+                    continue;
+                }
+            }
+            if (length == chunk.length) {
+                write(out, copy, chunk, length);
+                length = 0;
+            }
+            chunk[length++] = (byte) b;
+            if (in.available() == 0) {
+                write(out, copy, chunk, length);
+                length = 0;
+            }
+        }
+        write(out, copy, chunk, length);
+        write(out, copy, marker, matched);
+        return null;
+    }
+
+    private static void write(PrintStream out, OutputStream copy, byte[] bytes, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        out.write(bytes, 0, length);
+        out.flush();
+        copy.write(bytes, 0, length);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Quotes a string for the shell.
+     *
+     * @param text the string
+     * @return the string in single quotes
+     */
+    static String quote(String text) {
+        return "'" + text.replace("'", "'\\''") + "'";
+    }
+}
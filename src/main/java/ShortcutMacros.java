@@ -0,0 +1,545 @@
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ShortcutMacros class compiles shortcuts into macros when they are
+ * defined, so running one does not parse its text again. A shortcut is one or
+ * more commands separated by a ';' standing on its own. A "terminal" command
+ * takes the rest of the shortcut, ';' included, so it is passed to the shell
+ * whole as it was before shortcuts could hold several commands. Commands may
+ * use the arguments the shortcut is run with: $1 to $9 for one argument and $@
+ * for all of them, except inside single quotes where the shell would not read
+ * them either. A command of the form "ss NAME ARGS" runs another shortcut;
+ * such references are bound to the other macro when the shortcuts are
+ * compiled, and a shortcut that ends up running itself is rejected.
+ *
+ * Each command is split into tokens once. Running a macro only puts the
+ * arguments into their slots and returns the commands ready to dispatch.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class ShortcutMacros {
+
+    /**
+     * Thrown when a shortcut cannot be compiled or run.
+     */
+    public static class MacroException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a MacroException.
+         *
+         * @param message the description of the problem
+         */
+        public MacroException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A command of a macro with its arguments filled in.
+     *
+     * @param line the command line
+     * @param tokens the tokens of the command line
+     */
+    public record Command(String line, List<CommandLexer.Token> tokens) {
+    }
+
+    /**
+     * Marks the place of an argument in the text of a shortcut. It is followed
+     * by the digit of the argument, or '@' for all of them, so the text keeps
+     * its length and the offsets of the tokens stay the same.
+     */
+    private static final char SLOT = '\uE000';
+    private static final char ALL = '@';
+    private static final String REFERENCE = "ss";
+    private static final String TERMINAL = "terminal";
+
+    /**
+     * A token of a command, with the slots of the arguments it uses.
+     *
+     * @param text the text of the token, with slots
+     * @param start the offset of the token in the command
+     * @param end the offset after the token in the command
+     * @param hasSlots whether the token uses any argument
+     * @param quoted whether the token was written with quotes or escapes
+     */
+    private record Word(String text, int start, int end, boolean hasSlots, boolean quoted) {
+
+        /**
+         * Checks whether the token is $@ on its own, which becomes one token
+         * per argument.
+         *
+         * @return true if the token spreads the arguments
+         */
+        boolean spreads() {
+            return text.length() == 2 && text.charAt(0) == SLOT && text.charAt(1) == ALL && !quoted;
+        }
+    }
+
+    /**
+     * A compiled command: either a command to dispatch or a call of another
+     * macro.
+     *
+     * @param line the text of the command, with slots
+     * @param words the tokens of the command
+     * @param callee the name of the macro called, or null
+     */
+    private record Step(String line, List<Word> words, String callee) {
+    }
+
+    /**
+     * A compiled shortcut.
+     */
+    public static final class Macro {
+
+        private final String name;
+        private final String definition;
+        private final List<Step> steps;
+        private final int arity;
+        private final Map<String, Macro> callees = new HashMap<>();
+
+        private Macro(String name, String definition, List<Step> steps, int arity) {
+            this.name = name;
+            this.definition = definition;
+            this.steps = steps;
+            this.arity = arity;
+        }
+
+        /**
+         * Gets the name of the shortcut.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the text the shortcut was defined with.
+         *
+         * @return the definition
+         */
+        public String getDefinition() {
+            return definition;
+        }
+
+        /**
+         * Gets the number of arguments the shortcut needs: the highest $N its
+         * commands use.
+         *
+         * @return the number of arguments
+         */
+        public int getArity() {
+            return arity;
+        }
+
+        /**
+         * Fills in the arguments and returns the commands to run, with the
+         * commands of called macros in their place.
+         *
+         * @param arguments the arguments
+         * @return the commands
+         * @throws MacroException if fewer arguments are given than needed
+         */
+        public List<Command> expand(List<String> arguments) {
+            List<Command> commands = new ArrayList<>(steps.size());
+            expand(arguments, commands);
+            return commands;
+        }
+
+        private void expand(List<String> arguments, List<Command> out) {
+            if (arguments.size() < arity) {
+                throw new MacroException("Shortcut '" + name + "' needs " + arity + " argument(s)");
+            }
+            for (Step step : steps) {
+                if (step.callee() != null) {
+                    List<String> values = new ArrayList<>();
+                    for (int i = 2; i < step.words().size(); i++) {
+                        Word word = step.words().get(i);
+                        if (word.spreads()) {
+                            values.addAll(arguments);
+                        } else {
+                            values.add(word.hasSlots() ? fill(word.text(), arguments, false) : word.text());
+                        }
+                    }
+                    callees.get(step.callee()).expand(values, out);
+                } else {
+                    out.add(build(step, arguments));
+                }
+            }
+        }
+    }
+
+    private final Map<String, String> definitions = new LinkedHashMap<>();
+    private final Map<String, Macro> macros = new HashMap<>();
+    private final Map<String, String> errors = new LinkedHashMap<>();
+
+    /**
+     * Replaces every shortcut with the given ones. Shortcuts that cannot be
+     * compiled are kept, so they are not lost, but cannot be run.
+     *
+     * @param shortcuts the definitions by name
+     * @return the problem of each shortcut that could not be compiled
+     */
+    public synchronized Map<String, String> load(Map<String, String> shortcuts) {
+        definitions.clear();
+        definitions.putAll(shortcuts);
+        compileAll();
+        return new LinkedHashMap<>(errors);
+    }
+
+    /**
+     * Defines or replaces a shortcut. Nothing changes if it cannot be
+     * compiled.
+     *
+     * @param name the name of the shortcut
+     * @param definition the commands of the shortcut
+     * @throws MacroException if the definition is not valid, calls a shortcut
+     * that does not exist or makes a shortcut call itself
+     */
+    public synchronized void define(String name, String definition) {
+        if (name.isBlank() || name.chars().anyMatch(Character::isWhitespace)) {
+            throw new MacroException("Shortcut names must be one word");
+        }
+        String previous = definitions.put(name, definition);
+        compileAll();
+        String error = errors.get(name);
+        if (error != null) {
+            if (previous == null) {
+                definitions.remove(name);
+            } else {
+                definitions.put(name, previous);
+            }
+            compileAll();
+            throw new MacroException(error);
+        }
+    }
+
+    /**
+     * Removes a shortcut.
+     *
+     * @param name the name of the shortcut
+     * @return the shortcuts that called it and can no longer be run
+     */
+    public synchronized List<String> remove(String name) {
+        if (definitions.remove(name) == null) {
+            return List.of();
+        }
+        List<String> broken = new ArrayList<>(macros.keySet());
+        compileAll();
+        broken.removeIf(other -> other.equals(name) || macros.containsKey(other));
+        return broken;
+    }
+
+    /**
+     * Gets a compiled shortcut.
+     *
+     * @param name the name of the shortcut
+     * @return the macro, or null if there is no such shortcut or it could not
+     * be compiled
+     */
+    public synchronized Macro get(String name) {
+        return macros.get(name);
+    }
+
+    /**
+     * Gets the problem of a shortcut that could not be compiled.
+     *
+     * @param name the name of the shortcut
+     * @return the problem, or null if the shortcut compiled or does not exist
+     */
+    public synchronized String getError(String name) {
+        return errors.get(name);
+    }
+
+    /**
+     * Compiles every definition. Calls are bound after every shortcut is
+     * parsed, walking the calls depth first to find cycles.
+     */
+    private void compileAll() {
+        macros.clear();
+        errors.clear();
+        Map<String, Macro> parsed = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : definitions.entrySet()) {
+            try {
+                parsed.put(entry.getKey(), parse(entry.getKey(), entry.getValue()));
+            } catch (MacroException e) {
+                errors.put(entry.getKey(), e.getMessage());
+            }
+        }
+        Map<String, Boolean> visiting = new HashMap<>();
+        for (String name : parsed.keySet()) {
+            bind(name, parsed, visiting, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Binds the calls of a macro, after binding the macros it calls.
+     *
+     * @param name the name of the macro
+     * @param parsed every macro that parsed
+     * @param state true while a macro is being bound, false once it is done
+     * @param path the names being bound, to describe a cycle
+     * @return false if the macro cannot be run, true otherwise
+     */
+    private boolean bind(String name, Map<String, Macro> parsed, Map<String, Boolean> state, Deque<String> path) {
+        Boolean current = state.get(name);
+        if (current != null) {
+            if (current) {
+                List<String> cycle = new ArrayList<>();
+                boolean inCycle = false;
+                for (Iterator<String> iterator = path.descendingIterator(); iterator.hasNext();) {
+                    String step = iterator.next();
+                    inCycle |= step.equals(name);
+                    if (inCycle) {
+                        cycle.add(step);
+                    }
+                }
+                cycle.add(name);
+                String message = "Shortcut cycle: " + String.join(" -> ", cycle);
+                for (String member : cycle) {
+                    errors.putIfAbsent(member, message);
+                }
+                return false;
+            }
+            return macros.containsKey(name);
+        }
+        Macro macro = parsed.get(name);
+        if (macro == null) {
+            return false;
+        }
+        state.put(name, true);
+        path.push(name);
+        boolean valid = true;
+        for (Step step : macro.steps) {
+            if (step.callee() == null || macro.callees.containsKey(step.callee())) {
+                continue;
+            }
+            if (!definitions.containsKey(step.callee())) {
+                errors.putIfAbsent(name, "Unknown shortcut: " + step.callee());
+                valid = false;
+            } else if (!bind(step.callee(), parsed, state, path)) {
+                errors.putIfAbsent(name, errors.getOrDefault(step.callee(), "Shortcut '" + step.callee() + "' cannot be run"));
+                valid = false;
+            } else {
+                macro.callees.put(step.callee(), macros.get(step.callee()));
+            }
+        }
+        path.pop();
+        state.put(name, false);
+        if (valid && !errors.containsKey(name)) {
+            macros.put(name, macro);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Splits a definition into its commands and tokens.
+     *
+     * @param name the name of the shortcut
+     * @param definition the commands of the shortcut
+     * @return the macro, with its calls not yet bound
+     * @throws MacroException if the definition is not valid
+     */
+    private Macro parse(String name, String definition) {
+        String text = markSlots(definition);
+        List<CommandLexer.Token> tokens;
+        try {
+            tokens = CommandLexer.tokenize(text);
+        } catch (CommandLexer.SyntaxException e) {
+            throw new MacroException("Invalid shortcut '" + name + "': " + e.getMessage());
+        }
+        List<Step> steps = new ArrayList<>();
+        int arity = 0;
+        int first = 0;
+        for (int i = 0; i <= tokens.size(); i++) {
+            if (i == first && i < tokens.size() && tokens.get(i).text().equals(TERMINAL)) {
+                i = tokens.size();
+            }
+            boolean separator = i < tokens.size() && isSeparator(text, tokens.get(i));
+            if (i < tokens.size() && !separator) {
+                continue;
+            }
+            if (i > first) {
+                steps.add(step(name, text, tokens.subList(first, i)));
+            }
+            first = i + 1;
+        }
+        if (steps.isEmpty()) {
+            throw new MacroException("Shortcut '" + name + "' has no commands");
+        }
+        for (int i = 0; i < text.length() - 1; i++) {
+            if (text.charAt(i) == SLOT && text.charAt(i + 1) != ALL) {
+                arity = Math.max(arity, text.charAt(i + 1) - '0');
+            }
+        }
+        return new Macro(name, definition, steps, arity);
+    }
+
+    /**
+     * Builds a step from the tokens of one command.
+     *
+     * @param name the name of the shortcut
+     * @param text the definition, with slots
+     * @param tokens the tokens of the command
+     * @return the step
+     * @throws MacroException if the command calls a shortcut whose name is an
+     * argument or is missing
+     */
+    private static Step step(String name, String text, List<CommandLexer.Token> tokens) {
+        int offset = tokens.get(0).start();
+        String line = text.substring(offset, tokens.get(tokens.size() - 1).end());
+        List<Word> words = new ArrayList<>(tokens.size());
+        for (CommandLexer.Token token : tokens) {
+            String raw = text.substring(token.start(), token.end());
+            words.add(new Word(token.text(), token.start() - offset, token.end() - offset,
+                    token.text().indexOf(SLOT) >= 0, !raw.equals(token.text())));
+        }
+        String callee = null;
+        if (words.get(0).text().equals(REFERENCE)) {
+            if (words.size() < 2) {
+                throw new MacroException("Shortcut '" + name + "' calls a shortcut without a name");
+            }
+            if (words.get(1).hasSlots()) {
+                throw new MacroException("Shortcut '" + name + "' cannot call a shortcut named by an argument");
+            }
+            callee = words.get(1).text();
+        }
+        return new Step(line, words, callee);
+    }
+
+    /**
+     * Checks whether a token is a ';' on its own, written without quotes.
+     */
+    private static boolean isSeparator(String text, CommandLexer.Token token) {
+        return token.end() - token.start() == 1 && text.charAt(token.start()) == ';';
+    }
+
+    /**
+     * Replaces $1 to $9 and $@ with slots. A '$' after a backslash or inside
+     * single quotes is kept.
+     *
+     * @param definition the definition
+     * @return the definition with slots, of the same length
+     */
+    private static String markSlots(String definition) {
+        StringBuilder text = new StringBuilder(definition);
+        boolean singleQuoted = false;
+        boolean doubleQuoted = false;
+        for (int i = 0; i < text.length() - 1; i++) {
+            char ch = text.charAt(i);
+            if (singleQuoted) {
+                singleQuoted = ch != '\'';
+            } else if (ch == '\'' && !doubleQuoted) {
+                singleQuoted = true;
+            } else if (ch == '"') {
+                doubleQuoted = !doubleQuoted;
+            } else if (ch == '\\') {
+                i++;
+            } else if (ch == '$') {
+                char next = text.charAt(i + 1);
+                if ((next >= '1' && next <= '9') || next == ALL) {
+                    text.setCharAt(i, SLOT);
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Builds the command line and tokens of a step from the arguments. Tokens
+     * without slots are copied as they are.
+     *
+     * @param step the step
+     * @param arguments the arguments
+     * @return the command
+     */
+    private static Command build(Step step, List<String> arguments) {
+        String line = step.line();
+        StringBuilder out = new StringBuilder(line.length() + 16);
+        List<CommandLexer.Token> tokens = new ArrayList<>(step.words().size() + arguments.size());
+        int copied = 0;
+        for (Word word : step.words()) {
+            out.append(line, copied, word.start());
+            copied = word.end();
+            if (!word.hasSlots()) {
+                int start = out.length();
+                out.append(line, word.start(), word.end());
+                tokens.add(new CommandLexer.Token(word.text(), start, out.length()));
+            } else if (word.spreads()) {
+                for (int i = 0; i < arguments.size(); i++) {
+                    if (i > 0) {
+                        out.append(' ');
+                    }
+                    int start = out.length();
+                    out.append(quote(arguments.get(i)));
+                    tokens.add(new CommandLexer.Token(arguments.get(i), start, out.length()));
+                }
+            } else {
+                int start = out.length();
+                out.append(fill(line.substring(word.start(), word.end()), arguments, !word.quoted()));
+                tokens.add(new CommandLexer.Token(fill(word.text(), arguments, false), start, out.length()));
+            }
+        }
+        out.append(line, copied, line.length());
+        return new Command(out.toString(), tokens);
+    }
+
+    /**
+     * Replaces the slots in a text with the arguments.
+     *
+     * @param text the text with slots
+     * @param arguments the arguments
+     * @param quote whether to quote arguments that would not stay one word
+     * @return the text
+     */
+    private static String fill(String text, List<String> arguments, boolean quote) {
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch != SLOT || i + 1 >= text.length()) {
+                out.append(ch);
+                continue;
+            }
+            char slot = text.charAt(++i);
+            if (slot == ALL) {
+                for (int j = 0; j < arguments.size(); j++) {
+                    if (j > 0) {
+                        out.append(' ');
+                    }
+                    out.append(quote ? quote(arguments.get(j)) : arguments.get(j));
+                }
+            } else {
+                String argument = arguments.get(slot - '1');
+                out.append(quote ? quote(argument) : argument);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Quotes an argument with single quotes if it would not be read back as
+     * the same single word, in a way both the shell and the command lexer
+     * read the same.
+     *
+     * @param argument the argument
+     * @return the argument as it is written in a command line
+     */
+    static String quote(String argument) {
+        if (!argument.isEmpty() && argument.chars().allMatch(ch -> Character.isLetterOrDigit(ch) || "_-./:=@%+,".indexOf(ch) >= 0)) {
+            return argument;
+        }
+        return "'" + argument.replace("'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,209 @@
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * The StartupCommandRunner class runs the user's startup commands, running
+ * the ones that do not depend on each other at the same time.
+ *
+ * A startup command may start with a bracketed list of options:
+ * <pre>
+ * [name=fetch after=env] terminal git fetch
+ * </pre>
+ * <ul>
+ * <li>name=NAME names the entry so others can wait for it</li>
+ * <li>after=NAME,NAME waits for earlier named entries</li>
+ * <li>serial makes the entry a barrier</li>
+ * <li>parallel lets the entry run alongside others</li>
+ * </ul>
+ * Without options, terminal commands run alongside each other, while "cd",
+ * a bare "terminal" and commands of the application itself change state and
+ * are barriers: they wait for every entry before them, and every entry after
+ * them waits for them. Commands that change state are barriers even when
+ * marked parallel, since the application is not safe to change from several
+ * threads at once.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class StartupCommandRunner {
+
+    /**
+     * A parsed startup command.
+     *
+     * @param name the name of the entry, or null
+     * @param command the command without its options
+     * @param after the names of the entries to wait for
+     * @param barrier whether the entry is ordered with every other entry
+     */
+    public record Entry(String name, String command, List<String> after, boolean barrier) {
+    }
+
+    private final int threads;
+
+    /**
+     * Constructs a StartupCommandRunner that runs at most the specified
+     * number of commands at the same time.
+     *
+     * @param threads the most commands that run at the same time
+     */
+    public StartupCommandRunner(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Parses a startup command and its options.
+     *
+     * @param line the startup command as it is saved
+     * @return the entry
+     * @throws IllegalArgumentException if an option is not known or the
+     * brackets are not closed
+     */
+    public static Entry parse(String line) {
+        String command = line.trim();
+        String name = null;
+        List<String> after = new ArrayList<>();
+        Boolean barrier = null;
+        if (command.startsWith("[")) {
+            CommandLexer.Token options = CommandLexer.tokenize(command).get(0);
+            for (String option : options.text().trim().split("\\s+")) {
+                if (option.isEmpty()) {
+                    continue;
+                }
+                if (option.startsWith("name=")) {
+                    name = option.substring(5);
+                } else if (option.startsWith("after=")) {
+                    for (String dependency : option.substring(6).split(",")) {
+                        if (!dependency.isEmpty()) {
+                            after.add(dependency);
+                        }
+                    }
+                } else if (option.equals("serial")) {
+                    barrier = true;
+                } else if (option.equals("parallel")) {
+                    barrier = false;
+                } else {
+                    throw new IllegalArgumentException("Unknown startup option: " + option);
+                }
+            }
+            command = command.substring(options.end()).trim();
+        }
+        return new Entry(name, command, after, changesState(command) || Boolean.TRUE.equals(barrier));
+    }
+
+    /**
+     * Checks whether a command changes the state later commands run in.
+     *
+     * @param command the command
+     * @return true unless the command is a terminal command other than cd
+     */
+    static boolean changesState(String command) {
+        List<String> words;
+        try {
+            words = CommandLexer.split(command);
+        } catch (CommandLexer.SyntaxException e) {
+            return true;
+        }
+        return words.size() < 2 || !words.get(0).equals("terminal") || words.get(1).equals("cd");
+    }
+
+    /**
+     * Runs startup commands and returns once all of them are done. A command
+     * that fails does not stop the others.
+     *
+     * @param lines the startup commands as they are saved
+     * @param action runs one command, given without its options, and returns
+     * false if it failed
+     * @return the commands that failed, in the order they were given
+     * @throws IllegalArgumentException if a command has invalid options or
+     * waits for a name that no earlier command has; nothing is run then
+     * @throws RuntimeException the first exception thrown by a command, once
+     * all are done
+     */
+    public List<String> run(List<String> lines, Predicate<String> action) {
+        List<Entry> entries = new ArrayList<>(lines.size());
+        Map<String, Integer> names = new HashMap<>();
+        for (String line : lines) {
+            Entry entry = parse(line);
+            for (String dependency : entry.after()) {
+                if (!names.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Startup command '" + entry.command() + "' waits for unknown name: " + dependency);
+                }
+            }
+            if (entry.name() != null) {
+                names.put(entry.name(), entries.size());
+            }
+            entries.add(entry);
+        }
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "startup-command-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<RuntimeException> failures = new ArrayList<>();
+        boolean[] failed = new boolean[entries.size()];
+        try {
+            CompletableFuture<Void> barrier = CompletableFuture.completedFuture(null);
+            List<CompletableFuture<Void>> sinceBarrier = new ArrayList<>();
+            Map<String, CompletableFuture<Void>> named = new HashMap<>();
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                int index = i;
+                List<CompletableFuture<Void>> waitFor = new ArrayList<>();
+                waitFor.add(barrier);
+                if (entry.barrier()) {
+                    waitFor.addAll(sinceBarrier);
+                }
+                for (String dependency : entry.after()) {
+                    waitFor.add(named.get(dependency));
+                }
+                CompletableFuture<Void> done = CompletableFuture.allOf(waitFor.toArray(new CompletableFuture<?>[0]))
+                        .thenRunAsync(() -> {
+                            try {
+                                failed[index] = !action.test(entry.command());
+                            } catch (RuntimeException e) {
+                                synchronized (failures) {
+                                    failures.add(e);
+                                }
+                            }
+                        }, executor);
+                if (entry.barrier()) {
+                    barrier = done;
+                    sinceBarrier.clear();
+                } else {
+                    sinceBarrier.add(done);
+                }
+                if (entry.name() != null) {
+                    named.put(entry.name(), done);
+                }
+            }
+            sinceBarrier.add(barrier);
+            CompletableFuture.allOf(sinceBarrier.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        } finally {
+            executor.shutdown();
+        }
+        synchronized (failures) {
+            if (!failures.isEmpty()) {
+                throw failures.get(0);
+            }
+        }
+        List<String> failedCommands = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (failed[i]) {
+                failedCommands.add(entries.get(i).command());
+            }
+        }
+        return failedCommands;
+    }
+}
@@ -0,0 +1,201 @@
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The StartupPipeline class runs the phases of application startup. Each
+ * phase names the phases it depends on and starts as soon as they are done,
+ * so independent phases run at the same time. {@link #run()} returns once
+ * every foreground phase is done; background phases, such as checks that need
+ * the network, keep running and can be waited for when their result is first
+ * needed. The time each phase took is recorded.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class StartupPipeline {
+
+    /**
+     * The time a phase took.
+     *
+     * @param phase the name of the phase
+     * @param startNanos when the phase started, from the start of the pipeline
+     * @param durationNanos how long the phase ran
+     * @param background whether the phase ran in the background
+     */
+    public record Timing(String phase, long startNanos, long durationNanos, boolean background) {
+    }
+
+    /**
+     * A phase and when it is done.
+     */
+    private record Phase(String name, Runnable action, String[] dependencies, boolean background,
+            CompletableFuture<Void> done) {
+    }
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final List<Timing> timings = new ArrayList<>();
+    private final ExecutorService executor;
+    private long origin;
+    private long foregroundNanos = -1;
+
+    /**
+     * Constructs a StartupPipeline that runs phases on the specified number of
+     * threads.
+     *
+     * @param threads the most phases that run at the same time
+     */
+    public StartupPipeline(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "startup-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a phase that must be done before {@link #run()} returns.
+     *
+     * @param name the name of the phase
+     * @param action the work of the phase
+     * @param dependencies the phases that must be done first
+     * @return this pipeline
+     * @throws IllegalArgumentException if the name is taken or a dependency
+     * was not added before
+     */
+    public StartupPipeline phase(String name, Runnable action, String... dependencies) {
+        return add(name, action, dependencies, false);
+    }
+
+    /**
+     * Adds a phase that keeps running after {@link #run()} returns.
+     *
+     * @param name the name of the phase
+     * @param action the work of the phase
+     * @param dependencies the phases that must be done first
+     * @return this pipeline
+     * @throws IllegalArgumentException if the name is taken or a dependency
+     * was not added before
+     */
+    public StartupPipeline background(String name, Runnable action, String... dependencies) {
+        return add(name, action, dependencies, true);
+    }
+
+    private StartupPipeline add(String name, Runnable action, String[] dependencies, boolean background) {
+        if (phases.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup phase: " + name);
+        }
+        for (String dependency : dependencies) {
+            if (!phases.containsKey(dependency)) {
+                throw new IllegalArgumentException("Unknown startup phase: " + dependency);
+            }
+        }
+        phases.put(name, new Phase(name, action, dependencies, background, new CompletableFuture<>()));
+        return this;
+    }
+
+    /**
+     * Starts every phase and waits for the foreground phases. If a phase
+     * fails, the phases that depend on it do not run.
+     *
+     * @throws RuntimeException the first failure of a foreground phase
+     */
+    public void run() {
+        origin = System.nanoTime();
+        List<CompletableFuture<Void>> foreground = new ArrayList<>();
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        for (Phase phase : phases.values()) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[phase.dependencies().length];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = phases.get(phase.dependencies()[i]).done();
+            }
+            CompletableFuture.allOf(dependencies)
+                    .thenRunAsync(() -> time(phase), executor)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            phase.done().completeExceptionally(error);
+                        } else {
+                            phase.done().complete(null);
+                        }
+                    });
+            if (!phase.background()) {
+                foreground.add(phase.done());
+            }
+            all.add(phase.done());
+        }
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).whenComplete((result, error) -> executor.shutdown());
+        try {
+            CompletableFuture.allOf(foreground.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            foregroundNanos = System.nanoTime() - origin;
+        }
+    }
+
+    /**
+     * Gets the future that completes when a phase is done.
+     *
+     * @param name the name of the phase
+     * @return the future
+     * @throws IllegalArgumentException if there is no such phase
+     */
+    public CompletableFuture<Void> completion(String name) {
+        Phase phase = phases.get(name);
+        if (phase == null) {
+            throw new IllegalArgumentException("Unknown startup phase: " + name);
+        }
+        return phase.done();
+    }
+
+    /**
+     * Gets the time each finished phase took, in the order they started.
+     *
+     * @return the timings
+     */
+    public List<Timing> getTimings() {
+        synchronized (timings) {
+            List<Timing> sorted = new ArrayList<>(timings);
+            sorted.sort((a, b) -> Long.compare(a.startNanos(), b.startNanos()));
+            return sorted;
+        }
+    }
+
+    /**
+     * Gets the time from the start of the pipeline until every foreground
+     * phase was done.
+     *
+     * @return the time in nanoseconds, or -1 if the pipeline has not finished
+     */
+    public long getForegroundNanos() {
+        return foregroundNanos;
+    }
+
+    /**
+     * Runs a phase and records how long it took.
+     *
+     * @param phase the phase
+     */
+    private void time(Phase phase) {
+        long start = System.nanoTime();
+        try {
+            phase.action().run();
+        } finally {
+            long end = System.nanoTime();
+            synchronized (timings) {
+                timings.add(new Timing(phase.name(), start - origin, end - start, phase.background()));
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The TerminalCache class keeps a list of strings, such as the commands sent to
+ * the terminal or their output, within a memory budget. The most recent
+ * entries stay in memory. When they take more than the budget, the oldest ones
+ * are written to segment files in a temporary directory, each entry as its
+ * length and its UTF-8 bytes. When the segments take more than the disk
+ * budget, the oldest segment is deleted. The directory is deleted when the
+ * cache is closed or, failing that, when the JVM shuts down.
+ *
+ * Memory is estimated at two bytes per character plus the overhead of a
+ * string, so the estimate is never below what the entries really use.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class TerminalCache implements Closeable {
+
+    private static final int ENTRY_OVERHEAD = 56;
+
+    /**
+     * A file holding entries that no longer fit in memory.
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private int count;
+        private long bytes;
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+    }
+
+    private final String name;
+    private final long segmentBytes;
+    private final long diskBudget;
+    private final ArrayDeque<String> recent = new ArrayDeque<>();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long memoryBudget;
+    private long memoryBytes;
+    private long diskBytes;
+    private int segmentNumber;
+    private Path directory;
+    private DataOutputStream writer;
+    private Thread cleanup;
+
+    /**
+     * Constructs a TerminalCache.
+     *
+     * @param name the name used for the directory of the segments
+     * @param memoryBudget the bytes the entries in memory may take
+     * @param segmentBytes the size at which a new segment is started
+     * @param diskBudget the bytes the segments may take
+     */
+    public TerminalCache(String name, long memoryBudget, long segmentBytes, long diskBudget) {
+        this.name = name;
+        this.memoryBudget = memoryBudget;
+        this.segmentBytes = segmentBytes;
+        this.diskBudget = diskBudget;
+    }
+
+    /**
+     * Adds an entry. Older entries are moved to disk if the memory budget is
+     * exceeded. The newest entry always stays in memory, whatever its size.
+     *
+     * @param entry the entry
+     */
+    public synchronized void add(String entry) {
+        recent.addLast(entry);
+        memoryBytes += cost(entry);
+        spill();
+    }
+
+    /**
+     * Gets the newest entry.
+     *
+     * @return the entry, or an empty string if there is none
+     */
+    public synchronized String last() {
+        String entry = recent.peekLast();
+        return entry == null ? "" : entry;
+    }
+
+    /**
+     * Gets the number of entries kept, in memory and on disk.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        int count = recent.size();
+        for (Segment segment : segments) {
+            count += segment.count;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the newest entries, reading them from disk if they are no longer
+     * in memory.
+     *
+     * @param count the most entries to return
+     * @return the entries, oldest first
+     * @throws UncheckedIOException if a segment could not be read
+     */
+    public synchronized List<String> tail(int count) {
+        List<String> found = new ArrayList<>();
+        Iterator<String> inMemory = recent.descendingIterator();
+        while (inMemory.hasNext() && found.size() < count) {
+            found.add(inMemory.next());
+        }
+        Iterator<Segment> onDisk = segments.descendingIterator();
+        while (onDisk.hasNext() && found.size() < count) {
+            List<String> entries = read(onDisk.next());
+            for (int i = entries.size() - 1; i >= 0 && found.size() < count; i--) {
+                found.add(entries.get(i));
+            }
+        }
+        Collections.reverse(found);
+        return found;
+    }
+
+    /**
+     * Sets the bytes the entries in memory may take, moving entries to disk
+     * if they take more.
+     *
+     * @param memoryBudget the bytes
+     */
+    public synchronized void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        spill();
+    }
+
+    /**
+     * Gets the bytes the entries in memory may take.
+     *
+     * @return the bytes
+     */
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Gets the estimated bytes the entries in memory take.
+     *
+     * @return the bytes
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Gets the bytes the segments take on disk.
+     *
+     * @return the bytes
+     */
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Forgets every entry and deletes the segments.
+     */
+    public synchronized void clear() {
+        recent.clear();
+        memoryBytes = 0;
+        deleteSegments();
+    }
+
+    /**
+     * Forgets every entry and deletes the segments and their directory.
+     */
+    @Override
+    public synchronized void close() {
+        clear();
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                directory.toFile().deleteOnExit();
+            }
+            directory = null;
+        }
+        if (cleanup != null && Thread.currentThread() != cleanup) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(cleanup);
+            } catch (IllegalStateException e) {
+                // The JVM is already shutting down and runs the hook itself.
+            }
+        }
+        cleanup = null;
+    }
+
+    private void spill() {
+        while (memoryBytes > memoryBudget && recent.size() > 1) {
+            String entry = recent.removeFirst();
+            memoryBytes -= cost(entry);
+            try {
+                write(entry);
+            } catch (IOException e) {
+                closeWriter();
+            }
+        }
+    }
+
+    private void write(String entry) throws IOException {
+        Segment segment = segments.peekLast();
+        if (writer == null || segment.bytes >= segmentBytes) {
+            closeWriter();
+            segment = newSegment();
+        }
+        byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+        writer.writeInt(bytes.length);
+        writer.write(bytes);
+        segment.count++;
+        segment.bytes += 4 + bytes.length;
+        diskBytes += 4 + bytes.length;
+        while (diskBytes > diskBudget && segments.size() > 1) {
+            Segment oldest = segments.removeFirst();
+            diskBytes -= oldest.bytes;
+            Files.deleteIfExists(oldest.path);
+        }
+    }
+
+    private Segment newSegment() throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory(name);
+            if (cleanup == null) {
+                cleanup = new Thread(this::close, name + "-cleanup");
+                Runtime.getRuntime().addShutdownHook(cleanup);
+            }
+        }
+        Segment segment = new Segment(directory.resolve(String.format("segment-%06d.bin", ++segmentNumber)));
+        writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segment.path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private List<String> read(Segment segment) {
+        List<String> entries = new ArrayList<>(segment.count);
+        try {
+            if (writer != null && segment == segments.peekLast()) {
+                writer.flush();
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path)))) {
+                for (int i = 0; i < segment.count; i++) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    entries.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (EOFException e) {
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return entries;
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // The segment keeps the entries that were written.
+            }
+            writer = null;
+        }
+    }
+
+    private void deleteSegments() {
+        closeWriter();
+        for (Segment segment : segments) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                segment.path.toFile().deleteOnExit();
+            }
+        }
+        segments.clear();
+        diskBytes = 0;
+    }
+
+    private static long cost(String entry) {
+        return ENTRY_OVERHEAD + 2L * entry.length();
+    }
+}
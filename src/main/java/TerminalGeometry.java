@@ -0,0 +1,249 @@
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The TerminalGeometry class keeps track of the size of the terminal window.
+ * The size is taken from the COLUMNS and LINES environment variables when
+ * they are set, and otherwise probed once in the background when the service
+ * starts. It is probed again only when the window is resized (SIGWINCH), and
+ * every change is published to the registered listeners. Readers of the
+ * width and height never wait for a probe or start a process.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public abstract class TerminalGeometry {
+
+    /**
+     * Listener that is notified when the terminal size changes.
+     */
+    public interface ResizeListener {
+
+        /**
+         * Called with the new terminal size.
+         *
+         * @param width the number of columns
+         * @param height the number of rows
+         */
+        void resized(int width, int height);
+    }
+
+    public static final int DEFAULT_WIDTH = 80;
+    public static final int DEFAULT_HEIGHT = 24;
+
+    private static volatile int width = DEFAULT_WIDTH;
+    private static volatile int height = DEFAULT_HEIGHT;
+    private static volatile boolean known = false;
+    private static final List<ResizeListener> listeners = new CopyOnWriteArrayList<>();
+    private static final AtomicBoolean started = new AtomicBoolean(false);
+    private static final AtomicBoolean probePending = new AtomicBoolean(false);
+    private static final ExecutorService prober = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "terminal-geometry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts the service. The size is taken from the COLUMNS and LINES
+     * environment variables when both are set, and the terminal is probed in
+     * the background otherwise. A handler for window-resize signals is
+     * installed where the platform has them. Calling this more than once has
+     * no effect.
+     */
+    public static void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        int envWidth = parseSize(System.getenv("COLUMNS"));
+        int envHeight = parseSize(System.getenv("LINES"));
+        listenForResize();
+        if (envWidth > 0 && envHeight > 0) {
+            publish(envWidth, envHeight);
+        } else {
+            requestProbe();
+        }
+    }
+
+    /**
+     * Gets the number of columns of the terminal.
+     *
+     * @return the terminal width
+     */
+    public static int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows of the terminal.
+     *
+     * @return the terminal height
+     */
+    public static int getHeight() {
+        return height;
+    }
+
+    /**
+     * Checks whether the size has been determined or is still the default.
+     *
+     * @return true if the size is known, false otherwise
+     */
+    public static boolean isKnown() {
+        return known;
+    }
+
+    /**
+     * Registers a listener for size changes. If the size is already known the
+     * listener is called with it right away.
+     *
+     * @param listener the listener to register
+     */
+    public static void addResizeListener(ResizeListener listener) {
+        listeners.add(listener);
+        if (known) {
+            listener.resized(width, height);
+        }
+    }
+
+    /**
+     * Removes a listener for size changes.
+     *
+     * @param listener the listener to remove
+     */
+    public static void removeResizeListener(ResizeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues a probe of the terminal size. Requests that arrive while a probe
+     * is waiting are merged into it. This is called when the service starts
+     * and when the window is resized.
+     */
+    public static void requestProbe() {
+        if (probePending.compareAndSet(false, true)) {
+            prober.execute(() -> {
+                probePending.set(false);
+                probe();
+            });
+        }
+    }
+
+    /**
+     * Sets the terminal size and notifies the listeners if it changed.
+     *
+     * @param newWidth the number of columns
+     * @param newHeight the number of rows
+     */
+    static void publish(int newWidth, int newHeight) {
+        if (newWidth <= 0 || newHeight <= 0) {
+            return;
+        }
+        boolean changed = !known || newWidth != width || newHeight != height;
+        width = newWidth;
+        height = newHeight;
+        known = true;
+        if (changed) {
+            for (ResizeListener listener : listeners) {
+                listener.resized(newWidth, newHeight);
+            }
+        }
+    }
+
+    /**
+     * Installs a handler that probes the size again when the window is
+     * resized. The handler is reached through reflection, since
+     * sun.misc.Signal is not part of the public API and does not exist
+     * everywhere. On platforms without SIGWINCH, such as Windows, nothing is
+     * installed and the size stays as it was first found.
+     */
+    private static void listenForResize() {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object signal = signalClass.getConstructor(String.class).newInstance("WINCH");
+            Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[]{handlerClass},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "handle" -> {
+                            requestProbe();
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> "terminal resize handler";
+                    });
+            signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            //no resize signal on this platform
+        }
+    }
+
+    /**
+     * Reads the size from the terminal. This runs on the background thread
+     * only. On Windows only the columns are read, because the lines reported
+     * by "mode con" are the height of the scroll-back buffer, not of the
+     * window.
+     */
+    private static void probe() {
+        String os = System.getProperty("os.name").toLowerCase();
+        ProcessBuilder processBuilder;
+        if (os.contains("win")) {
+            processBuilder = new ProcessBuilder("cmd", "/c", "mode con");
+        } else {
+            processBuilder = new ProcessBuilder("sh", "-c", "stty size < /dev/tty");
+        }
+        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        try {
+            Process process = processBuilder.start();
+            int columns = 0;
+            int rows = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (os.contains("win")) {
+                        String[] parts = line.split(":");
+                        if (parts.length > 1 && parts[0].contains("Columns")) {
+                            columns = parseSize(parts[1]);
+                        }
+                    } else {
+                        String[] parts = line.trim().split("\\s+");
+                        if (parts.length == 2) {
+                            rows = parseSize(parts[0]);
+                            columns = parseSize(parts[1]);
+                        }
+                    }
+                }
+            }
+            process.waitFor();
+            publish(columns, rows > 0 ? rows : height);
+        } catch (IOException e) {
+            //keep the current size
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parses a size value.
+     *
+     * @param value the value to parse
+     * @return the size, or 0 if the value is not a positive number
+     */
+    private static int parseSize(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            int size = Integer.parseInt(value.trim());
+            return size > 0 ? size : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -1,14 +1,19 @@
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The TerminalPassthrough class provides methods to interact with the terminal.
@@ -21,10 +26,39 @@ public class TerminalPassthrough {
     private final String RED_COLOR_BOLD = "\033[1;31m";
     private final String YELLOW_COLOR_BOLD = "\033[1;33m";
     private final String RESET_COLOR = "\033[0m";
-    private String currentDirectory;
-    private final List<String> terminalCacheUserInput;
-    private final List<String> terminalCacheTerminalOutput;
+    private volatile String currentDirectory;
+    private final TerminalCache terminalCacheUserInput;
+    private final TerminalCache terminalCacheTerminalOutput;
     private boolean displayWholePath = false;
+    private boolean persistentShell = false;
+    private volatile boolean captureOutput = true;
+    private volatile boolean inheritInput = true;
+    private ShellSession shellSession;
+
+    /**
+     * The result of a terminal command.
+     *
+     * @param exitCode the exit code of the process, or -1 if it could not be
+     * run
+     * @param output the last few kilobytes of the output and error output of
+     * the process, or only of its error output when output is not captured, or
+     * the reason it could not be run
+     */
+    public record CommandResult(int exitCode, String output) {
+    }
+
+    private static final int COMMAND_THREADS = 8;
+    private static final ExecutorService COMMAND_POOL = createCommandPool();
+    private static final ExecutorService OUTPUT_READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "terminal-stderr");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int CAPTURE_BYTES = 8 * 1024;
+    private static final long CACHE_MEMORY_BUDGET = 1024 * 1024;
+    private static final long CACHE_SEGMENT_BYTES = 256 * 1024;
+    private static final long CACHE_DISK_BUDGET = 64 * 1024 * 1024;
+    private static final GitRepoCache GIT_REPOS = new GitRepoCache();
 
     /**
      * Constructs a TerminalPassthrough with the current directory set to the
@@ -32,8 +66,27 @@ public class TerminalPassthrough {
      */
     public TerminalPassthrough() {
         currentDirectory = System.getProperty("user.dir");
-        terminalCacheUserInput = new ArrayList<>();
-        terminalCacheTerminalOutput = new ArrayList<>();
+        terminalCacheUserInput = new TerminalCache("devtools-input", CACHE_MEMORY_BUDGET, CACHE_SEGMENT_BYTES, CACHE_DISK_BUDGET);
+        terminalCacheTerminalOutput = new TerminalCache("devtools-output", CACHE_MEMORY_BUDGET, CACHE_SEGMENT_BYTES, CACHE_DISK_BUDGET);
+    }
+
+    /**
+     * Creates the pool that runs terminal commands. Its threads are daemons,
+     * at most {@link #COMMAND_THREADS} of them run at once, and idle ones end
+     * after a minute.
+     *
+     * @return the pool
+     */
+    private static ExecutorService createCommandPool() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(COMMAND_THREADS, COMMAND_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "terminal-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 
     /**
@@ -68,6 +121,49 @@ public class TerminalPassthrough {
         setDisplayWholePath(!displayWholePath);
     }
 
+    /**
+     * Sets whether the output of commands is captured as well as shown. When
+     * it is not, a command writes its output straight to the terminal, so
+     * full screen programs, pagers and colours work, and only its error
+     * output is captured. The persistent shell always captures both.
+     *
+     * @param captureOutput true to capture the output, false otherwise
+     */
+    public void setCaptureOutput(boolean captureOutput) {
+        this.captureOutput = captureOutput;
+    }
+
+    /**
+     * Checks whether the output of commands is captured as well as shown.
+     *
+     * @return true if the output is captured, false otherwise
+     */
+    public boolean isCaptureOutput() {
+        return captureOutput;
+    }
+
+    /**
+     * Sets whether commands read from the standard input of the application.
+     * When they do not, their input is the null device, so a command run from
+     * a batch cannot read the rest of the batch or wait for input that never
+     * comes.
+     *
+     * @param inheritInput true to share the standard input, false otherwise
+     */
+    public void setInheritInput(boolean inheritInput) {
+        this.inheritInput = inheritInput;
+    }
+
+    /**
+     * Checks whether commands read from the standard input of the
+     * application.
+     *
+     * @return true if the standard input is shared, false otherwise
+     */
+    public boolean isInheritInput() {
+        return inheritInput;
+    }
+
     /**
      * Checks whether the whole path is displayed in the terminal prompt.
      *
@@ -108,7 +204,7 @@ public class TerminalPassthrough {
      *
      * @return the terminal cache
      */
-    public List<String> getTerminalCacheUserInput() {
+    public TerminalCache getTerminalCacheUserInput() {
         return terminalCacheUserInput;
     }
 
@@ -117,10 +213,21 @@ public class TerminalPassthrough {
      *
      * @return the terminal cache
      */
-    public List<String> getTerminalCacheTerminalOutput() {
+    public TerminalCache getTerminalCacheTerminalOutput() {
         return terminalCacheTerminalOutput;
     }
 
+    /**
+     * Sets the memory each terminal cache may use before older entries are
+     * moved to disk.
+     *
+     * @param bytes the memory budget in bytes
+     */
+    public void setCacheMemoryBudget(long bytes) {
+        terminalCacheUserInput.setMemoryBudget(bytes);
+        terminalCacheTerminalOutput.setMemoryBudget(bytes);
+    }
+
     /**
      * Clears the terminal cache.
      */
@@ -136,10 +243,7 @@ public class TerminalPassthrough {
      * empty
      */
     public String returnMostRecentUserInput() {
-        if (terminalCacheUserInput.size() >= 1) {
-            return terminalCacheUserInput.get(terminalCacheUserInput.size() - 1);
-        }
-        return "";
+        return terminalCacheUserInput.last();
     }
 
     /**
@@ -149,10 +253,7 @@ public class TerminalPassthrough {
      * is empty
      */
     public String returnMostRecentTerminalOutput() {
-        if (terminalCacheTerminalOutput.size() >= 1) {
-            return terminalCacheTerminalOutput.get(terminalCacheTerminalOutput.size() - 1);
-        }
-        return "";
+        return terminalCacheTerminalOutput.last();
     }
 
     /**
@@ -161,43 +262,18 @@ public class TerminalPassthrough {
      * @return the current terminal position
      */
     public String returnCurrentTerminalPosition() {
-        String gitInfo = "";
-        Path currentPath = Paths.get(getCurrentFilePath());
-        Path gitHeadPath = null;
-        while (currentPath != null) {
-            gitHeadPath = currentPath.resolve(".git").resolve("HEAD");
-            if (Files.exists(gitHeadPath)) {
-                break;
-            }
-            currentPath = currentPath.getParent();
-        }
-        boolean gitRepo = gitHeadPath != null && Files.exists(gitHeadPath);
-        if (gitRepo) {
-            try {
-                List<String> headLines = Files.readAllLines(gitHeadPath);
-                String branchName = "";
-                Pattern headPattern = Pattern.compile("ref: refs/heads/(.*)");
-                for (String line : headLines) {
-                    Matcher headMatcher = headPattern.matcher(line);
-                    if (headMatcher.find()) {
-                        branchName = BLUE_COLOR_BOLD + "git:(" + RESET_COLOR + YELLOW_COLOR_BOLD + headMatcher.group(1) + RESET_COLOR + BLUE_COLOR_BOLD + ")" + RESET_COLOR;
-                    }
-                }
+        GitRepoCache.RepoInfo repo = GIT_REPOS.lookup(Paths.get(getCurrentFilePath()));
+        if (repo != null) {
+            String gitInfo = "";
+            if (!repo.branch().isEmpty()) {
+                String branchName = BLUE_COLOR_BOLD + "git:(" + RESET_COLOR + YELLOW_COLOR_BOLD + repo.branch() + RESET_COLOR + BLUE_COLOR_BOLD + ")" + RESET_COLOR;
                 String repoName;
-                if (currentPath != null) {
-                    if (displayWholePath) {
-                        repoName = RED_COLOR_BOLD + getCurrentFilePath() + RESET_COLOR;
-                    } else {
-                        repoName = RED_COLOR_BOLD + getCurrentFileName() + RESET_COLOR;
-                    }
+                if (displayWholePath) {
+                    repoName = RED_COLOR_BOLD + getCurrentFilePath() + RESET_COLOR;
                 } else {
-                    repoName = RED_COLOR_BOLD + "unknown" + RESET_COLOR;
+                    repoName = RED_COLOR_BOLD + getCurrentFileName() + RESET_COLOR;
                 }
-                if (!repoName.isEmpty() && !branchName.isEmpty()) {
-                    gitInfo = String.format("%s %s", repoName, branchName);
-                }
-            } catch (IOException e) {
-                System.out.println("Error reading git HEAD file: " + e.getMessage());
+                gitInfo = String.format("%s %s", repoName, branchName);
             }
             return (RED_COLOR_BOLD + getTerminalName() + ": " + RESET_COLOR + gitInfo + ": ");
         }
@@ -208,59 +284,311 @@ public class TerminalPassthrough {
     }
 
     /**
-     * Executes a command in the terminal.
+     * Executes a command in the terminal. A "cd" only changes the current
+     * directory and completes at once; any other command runs on the shared
+     * command pool. The output and error output of the command go to the
+     * terminal as they arrive, and the last {@link #CAPTURE_BYTES} bytes of
+     * them are also captured; see {@link #setCaptureOutput}. Cancelling the
+     * returned future destroys the process. When the persistent shell is on,
+     * every command, "cd" included, is sent to the kept shell.
      *
      * @param command the command to execute
      * @param feedback whether to provide feedback on the command execution
-     * @return the thread executing the command
+     * @return the future that completes with the exit code and the captured
+     * output
      */
-    public Thread executeCommand(String command, boolean feedback) {
+    public CompletableFuture<CommandResult> executeCommand(String command, boolean feedback) {
         terminalCacheUserInput.add(command);
-        Thread commandThread = new Thread(() -> {
+        boolean persistent = isPersistentShell();
+        if (!persistent && command.startsWith("cd ")) {
             try {
-                if (command.startsWith("cd ")) {
-                    String newDir = command.substring(3).trim();
-                    if (newDir.equals("/")) {
-                        currentDirectory = new java.io.File("/").getCanonicalPath();
-                    } else {
-                        java.io.File dir = new java.io.File(currentDirectory, newDir);
-                        if (dir.exists() && dir.isDirectory()) {
-                            currentDirectory = dir.getCanonicalPath();
-                        } else {
-                            throw new IOException("No such file or directory");
-                        }
-                    }
-                } else {
-                    String os = System.getProperty("os.name").toLowerCase();
-                    ProcessBuilder processBuilder;
-                    if (os.contains("win")) {
-                        processBuilder = new ProcessBuilder("cmd.exe", "/c", command);
-                    } else {
-                        processBuilder = new ProcessBuilder(getTerminalName(), "-c", command);
-                    }
-                    processBuilder.directory(new java.io.File(currentDirectory));
-                    processBuilder.redirectInput(ProcessBuilder.Redirect.INHERIT);
-                    processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-                    processBuilder.redirectError(ProcessBuilder.Redirect.PIPE); // Redirect error to pipe
-                    Process process = processBuilder.start();
-                    String line;
-                    StringBuilder output = new StringBuilder();
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                        while ((line = reader.readLine()) != null) {
-                            System.err.println(line);
-                            output.append(line).append("\n");
-                        }
-                        terminalCacheTerminalOutput.add(output.toString());
-                    }
-                    process.waitFor();
-                }
+                changeDirectory(command.substring(3).trim());
+                return CompletableFuture.completedFuture(new CommandResult(0, ""));
+            } catch (IOException e) {
+                return CompletableFuture.completedFuture(failed(command, e, feedback));
+            }
+        }
+        CompletableFuture<CommandResult> result = new CompletableFuture<>();
+        AtomicReference<Runnable> stop = new AtomicReference<>();
+        Future<?> task = COMMAND_POOL.submit(() -> {
+            try {
+                result.complete(persistent ? runInShell(command, stop) : runProcess(command, stop));
             } catch (IOException | InterruptedException e) {
-                if (feedback) {
-                    System.out.println("Error executing command: '" + command + "' " + e.getMessage());
+                result.complete(failed(command, e, feedback));
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+                Runnable stopper = stop.get();
+                if (stopper != null) {
+                    stopper.run();
                 }
             }
         });
-        commandThread.start();
-        return commandThread;
+        return result;
+    }
+
+    /**
+     * Changes the current directory.
+     *
+     * @param newDir the directory, absolute or relative to the current one
+     * @throws IOException if there is no such directory
+     */
+    private void changeDirectory(String newDir) throws IOException {
+        if (newDir.equals("/")) {
+            currentDirectory = new java.io.File("/").getCanonicalPath();
+        } else {
+            java.io.File dir = new java.io.File(currentDirectory, newDir);
+            if (dir.exists() && dir.isDirectory()) {
+                currentDirectory = dir.getCanonicalPath();
+            } else {
+                throw new IOException("No such file or directory");
+            }
+        }
+    }
+
+    /**
+     * Runs a command through the shell and waits for it.
+     *
+     * @param command the command to run
+     * @param stop where to keep what destroys the process
+     * @return the exit code and the captured output
+     * @throws IOException if the process could not be started
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    private CommandResult runProcess(String command, AtomicReference<Runnable> stop) throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = buildProcess(command);
+        if (inheritInput) {
+            processBuilder.redirectInput(ProcessBuilder.Redirect.INHERIT);
+        } else {
+            processBuilder.redirectInput(nullDevice());
+        }
+        boolean capture = captureOutput;
+        if (!capture) {
+            processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        }
+        FlightEvents.ProcessRun event = new FlightEvents.ProcessRun();
+        event.begin();
+        long start = System.nanoTime();
+        Process process = processBuilder.start();
+        stop.set(() -> {
+            process.descendants().forEach(ProcessHandle::destroy);
+            process.destroy();
+        });
+        long spawnTime = System.nanoTime() - start;
+        Metrics.histogram("process spawn").record(spawnTime);
+        Metrics.count("processes");
+        OutputRing output = new OutputRing(CAPTURE_BYTES);
+        if (capture) {
+            Future<?> errors = OUTPUT_READERS.submit(() -> {
+                tee(process.getErrorStream(), System.err, output);
+                return null;
+            });
+            tee(process.getInputStream(), System.out, output);
+            try {
+                errors.get();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        } else {
+            tee(process.getErrorStream(), System.err, output);
+        }
+        String captured = output.toString();
+        terminalCacheTerminalOutput.add(captured);
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            Metrics.count("process failures");
+        }
+        Metrics.recordSince("process run", start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.directory = processBuilder.directory().getPath();
+            event.pid = process.pid();
+            event.exitCode = exitCode;
+            event.spawnTime = spawnTime;
+            event.commit();
+        }
+        return new CommandResult(exitCode, captured);
+    }
+
+    /**
+     * Copies a stream to the terminal as it arrives and to a capture buffer,
+     * until the stream ends.
+     *
+     * @param in the stream to copy
+     * @param terminal where to show it
+     * @param capture where to keep it
+     * @throws IOException if the stream could not be read
+     */
+    private static void tee(InputStream in, PrintStream terminal, OutputRing capture) throws IOException {
+        byte[] chunk = new byte[8192];
+        int length;
+        try (in) {
+            while ((length = in.read(chunk)) != -1) {
+                terminal.write(chunk, 0, length);
+                terminal.flush();
+                capture.write(chunk, 0, length);
+            }
+        }
+    }
+
+    /**
+     * Runs a command in the kept shell and waits for it. The current
+     * directory follows the directory of the shell afterwards.
+     *
+     * @param command the command to run
+     * @param stop where to keep what stops the command
+     * @return the exit code and the captured output
+     * @throws IOException if the shell could not be started or used
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    private CommandResult runInShell(String command, AtomicReference<Runnable> stop) throws IOException, InterruptedException {
+        ShellSession shell = shellSession();
+        stop.set(shell::interrupt);
+        FlightEvents.ProcessRun event = new FlightEvents.ProcessRun();
+        event.begin();
+        long start = System.nanoTime();
+        OutputRing output = new OutputRing(CAPTURE_BYTES);
+        ShellSession.Result result = shell.run(command, currentDirectory, System.out, System.err, output);
+        currentDirectory = result.directory();
+        String captured = output.toString();
+        terminalCacheTerminalOutput.add(captured);
+        if (result.exitCode() != 0) {
+            Metrics.count("process failures");
+        }
+        Metrics.recordSince("shell command", start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.directory = result.directory();
+            event.pid = shell.pid();
+            event.exitCode = result.exitCode();
+            event.commit();
+        }
+        return new CommandResult(result.exitCode(), captured);
+    }
+
+    /**
+     * Reports a command that could not be run.
+     *
+     * @param command the command
+     * @param e the reason
+     * @param feedback whether to print the reason
+     * @return the result of the command
+     */
+    private static CommandResult failed(String command, Exception e, boolean feedback) {
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (feedback) {
+            System.out.println("Error executing command: '" + command + "' " + e.getMessage());
+        }
+        return new CommandResult(-1, String.valueOf(e.getMessage()));
+    }
+
+    /**
+     * Sets whether commands run in one shell that is kept for the session
+     * instead of a new shell each. Turning it off ends the kept shell. It is
+     * not supported on Windows.
+     *
+     * @param persistentShell true to keep one shell, false otherwise
+     * @return false if the mode is not supported, true otherwise
+     */
+    public synchronized boolean setPersistentShell(boolean persistentShell) {
+        if (persistentShell && getTerminalName().equals("cmd")) {
+            return false;
+        }
+        this.persistentShell = persistentShell;
+        if (!persistentShell && shellSession != null) {
+            shellSession.close();
+            shellSession = null;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether commands run in one shell that is kept for the session.
+     *
+     * @return true if one shell is kept, false otherwise
+     */
+    public synchronized boolean isPersistentShell() {
+        return persistentShell;
+    }
+
+    /**
+     * Gets the kept shell, starting a new one if there is none or the last one
+     * has exited.
+     *
+     * @return the shell
+     * @throws IOException if the shell could not be started
+     */
+    private synchronized ShellSession shellSession() throws IOException {
+        if (shellSession == null || !shellSession.isAlive()) {
+            long start = System.nanoTime();
+            shellSession = new ShellSession(getTerminalName(), currentDirectory);
+            Metrics.recordSince("process spawn", start);
+            Metrics.count("processes");
+        }
+        return shellSession;
+    }
+
+    /**
+     * Ends the kept shell and deletes the files of the terminal caches.
+     */
+    public void close() {
+        setPersistentShell(false);
+        terminalCacheUserInput.close();
+        terminalCacheTerminalOutput.close();
+    }
+
+    /**
+     * Starts a command in the current directory without waiting for it. Its
+     * input is closed and its error output is merged into its output, which
+     * the caller reads from the process.
+     *
+     * @param command the command to start
+     * @return the started process
+     * @throws IOException if the process could not be started
+     */
+    public Process startProcess(String command) throws IOException {
+        terminalCacheUserInput.add(command);
+        ProcessBuilder processBuilder = buildProcess(command);
+        processBuilder.redirectErrorStream(true);
+        long start = System.nanoTime();
+        Process process = processBuilder.start();
+        Metrics.recordSince("process spawn", start);
+        Metrics.count("processes");
+        process.getOutputStream().close();
+        return process;
+    }
+
+    /**
+     * Builds the process that runs a command through the shell of the
+     * operating system in the current directory.
+     *
+     * @param command the command to run
+     * @return the process builder
+     */
+    private ProcessBuilder buildProcess(String command) {
+        String os = System.getProperty("os.name").toLowerCase();
+        ProcessBuilder processBuilder;
+        if (os.contains("win")) {
+            processBuilder = new ProcessBuilder("cmd.exe", "/c", command);
+        } else {
+            processBuilder = new ProcessBuilder(getTerminalName(), "-c", command);
+        }
+        processBuilder.directory(new java.io.File(currentDirectory));
+        return processBuilder;
+    }
+
+    /**
+     * Gets the null device of the operating system, which reads as empty.
+     *
+     * @return the null device
+     */
+    private static java.io.File nullDevice() {
+        return new java.io.File(System.getProperty("os.name").toLowerCase().contains("win") ? "NUL" : "/dev/null");
     }
 }
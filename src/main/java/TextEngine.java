@@ -1,9 +1,12 @@
 
-import java.io.BufferedReader;
 import java.io.Console;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.concurrent.TimeUnit;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 
 /**
  *
@@ -23,57 +26,63 @@ public abstract class TextEngine {
     public static String resetColor = "\033[0m";
     public static String greenColor = "\033[0;32m";
 
-    public static int MAX_LINE_WIDTH = 50; // Define the maximum line width
+    public static volatile int MAX_LINE_WIDTH = 50; // Define the maximum line width
+    private static volatile boolean geometryListening = false;
+    private static volatile boolean interactive = true;
 
     private static final String[] BREAK_COMMANDS = {};
 
+    private static final int INITIAL_BUFFER = 1024;
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+    private static final int MAX_CACHED_WIDTH_LENGTH = 256;
+    private static final StringBuilder RENDER_BUFFER = new StringBuilder(INITIAL_BUFFER);
+    private static final WordWrapWriter RENDER_WRAPPER = new WordWrapWriter(RENDER_BUFFER, MAX_LINE_WIDTH);
+    private static final WordWrapWriter STREAM_WRAPPER = new WordWrapWriter(RENDER_BUFFER, MAX_LINE_WIDTH);
+    private static ByteBuffer encodeBuffer = ByteBuffer.allocate(INITIAL_BUFFER);
+    private static CharsetEncoder encoder;
+    private static final TypewriterScheduler TYPEWRITER = new TypewriterScheduler(16);
+
     /**
-     * Sets the terminal width based on the current terminal settings.
+     * Sets the terminal width based on the current terminal settings. The
+     * width is kept up to date by the terminal geometry service, which probes
+     * the terminal in the background and again after every resize, so this
+     * call does not wait for the terminal.
      *
      * @return a string indicating the terminal width
      */
     public static String setWidth() {
-        try {
-            String os = System.getProperty("os.name").toLowerCase();
-            ProcessBuilder processBuilder;
-            if (os.contains("win")) {
-                processBuilder = new ProcessBuilder("cmd", "/c", "mode con");
-            } else {
-                processBuilder = new ProcessBuilder("sh", "-c", "tput cols");
-            }
-            Process process = processBuilder.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            if (os.contains("win")) {
-                while ((line = reader.readLine()) != null) {
-                    if (line.contains("Columns")) {
-                        String[] parts = line.split(":");
-                        if (parts.length > 1) {
-                            line = parts[1].trim();
-                            break;
-                        }
-                    }
-                }
-            } else {
-                line = reader.readLine();
-            }
-            if (line != null && !line.isEmpty()) {
-                MAX_LINE_WIDTH = Integer.parseInt(line) + 20;
-                return ("Terminal width: " + line);
-            } else {
-                System.out.println("Could not get the terminal width, using default value");
-                MAX_LINE_WIDTH = 30; // Default width if tput/mode con fails
-                return ("Terminal width: " + "50");
-            }
-        } catch (IOException e) {
-            System.out.println("Could not get the terminal width, using default value");
-            MAX_LINE_WIDTH = 30; // Default width if an exception occurs
-            return ("Terminal width: " + "50");
+        if (!geometryListening) {
+            geometryListening = true;
+            TerminalGeometry.addResizeListener((width, height) -> MAX_LINE_WIDTH = width);
         }
+        TerminalGeometry.start();
+        return ("Terminal width: " + TerminalGeometry.getWidth());
     }
 
     /**
-     * Prints text with delays between characters.
+     * Sets whether a person is at the terminal. When there is not, text is
+     * printed without delays or wrapping, nothing waits for enter and the
+     * screen is not cleared, so the output can be piped or logged.
+     *
+     * @param interactive true if input comes from a person, false otherwise
+     */
+    public static void setInteractive(boolean interactive) {
+        TextEngine.interactive = interactive;
+    }
+
+    /**
+     * Checks whether a person is at the terminal.
+     *
+     * @return true if input comes from a person, false otherwise
+     */
+    public static boolean isInteractive() {
+        return interactive;
+    }
+
+    /**
+     * Prints text with delays between characters. The text is wrapped first
+     * and then released in timed frames by the typewriter scheduler; pressing
+     * enter skips the rest of the animation.
      *
      * @param data the text to print
      * @param inputBuffer whether to display an input buffer message
@@ -83,84 +92,61 @@ public abstract class TextEngine {
         if (data == null) {
             return;
         }
-        boolean needToBreak = false;
         // Use inputBuffer if you are accepting input after the text is printed
-        if (speedSetting.equals("nodelay")) {
+        if (speedSetting.equals("nodelay") || !interactive) {
             printNoDelay(data, inputBuffer, newLine);
             return;
         }
         if (inputBuffer) {
             data = data + yellowColor + " (press enter to type)" + resetColor;
         }
-        int currentLineWidth = 0; // Initialize the current line width
-        String[] words = data.split(" "); // Split the data into words
-        StringBuilder remainingChars = new StringBuilder(data); // Initialize remaining characters
-        for (String word : words) {
-            if (word.contains("\\")) {
-                needToBreak = true;
-            }
-            if (inputBuffer) {
-                if ((currentLineWidth + word.length() >= MAX_LINE_WIDTH + 30) && currentLineWidth != 0) {
-                    System.out.print('\n');
-                    currentLineWidth = 0;
-                }
-            } else {
-                if ((currentLineWidth + word.length() >= MAX_LINE_WIDTH) && currentLineWidth != 0) {
-                    System.out.print('\n');
-                    currentLineWidth = 0;
-                }
-            }
-            for (char ch : word.toCharArray()) {
-                if (ch == '\n') {
-                    System.out.print('\n');
-                    currentLineWidth = 0;
-                    needToBreak = false;
-                    continue;
-                }
-                if (String.valueOf(ch).matches("^[a-zA-Z0-9]+$") && !String.valueOf(ch).matches(" ")) {
-                    try {
-                        switch (speedSetting) {
-                            case "slow" ->
-                                TimeUnit.MILLISECONDS.sleep(30);
-                            case "fast" ->
-                                TimeUnit.MILLISECONDS.sleep(10);
-                            case "normal" -> {
-                                TimeUnit.MILLISECONDS.sleep(20);
-                            }
-                            default -> {
-                                //do nothing
-                            }
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-                System.out.print(ch);
-                currentLineWidth++;
-                remainingChars.deleteCharAt(0); // Remove the printed character from remainingChars
-            }
-            if (needToBreak) {
-                System.out.print('\n');
-                currentLineWidth = 0;
-                needToBreak = false;
-            }
-            if (currentLineWidth > 0) {
-                System.out.print(' ');
-                currentLineWidth++;
-                //remainingChars.deleteCharAt(0); // Remove the printed space from remainingChars
-            }
-        }
+        StringBuilder wrapped = new StringBuilder(data.length() + 16);
+        WordWrapWriter wrapper = new WordWrapWriter(wrapped, inputBuffer ? MAX_LINE_WIDTH + 30 : MAX_LINE_WIDTH);
+        wrapper.append(data);
+        wrapper.finish();
         if (newLine) {
-            System.out.print('\n');
+            wrapped.append('\n');
         }
+        TYPEWRITER.play(wrapped, getCharDelay(), System.out);
         if (inputBuffer) {
             console.readLine();
+            resumeTyping();
             System.out.print(greenColor + "> " + resetColor);
         }
     }
 
     /**
-     * Prints text without delays between characters.
+     * Types text at the speed setting again after the user pressed enter to
+     * skip. Call this whenever input is read, so a skip only covers the output
+     * of one command.
+     */
+    public static void resumeTyping() {
+        TYPEWRITER.resume();
+    }
+
+    /**
+     * Gets the typing delay of a letter or digit for the current speed
+     * setting.
+     *
+     * @return the delay in milliseconds
+     */
+    private static long getCharDelay() {
+        return switch (speedSetting) {
+            case "slow" ->
+                30;
+            case "fast" ->
+                10;
+            case "normal" ->
+                20;
+            default ->
+                0;
+        };
+    }
+
+    /**
+     * Prints text without delays between characters. The text is laid out
+     * into a reusable render buffer and written to the terminal in a single
+     * write. It is only wrapped when a person is at the terminal.
      *
      * @param data the text to print
      * @param inputBuffer whether to display an input buffer message
@@ -170,78 +156,193 @@ public abstract class TextEngine {
         if (data == null) {
             return;
         }
-        boolean needToBreak = false;
+        inputBuffer = inputBuffer && interactive;
         if (inputBuffer) {
             data = data + yellowColor + " (press enter to type)" + resetColor;
         }
-        int currentLineWidth = 0; // Initialize the current line width
-        String[] words = data.split(" "); // Split the data into words
-        StringBuilder remainingChars = new StringBuilder(data); // Initialize remaining characters
-        for (String word : words) {
-            if (word.contains("\\")) {
-                needToBreak = true;
-            }
-            if (inputBuffer) {
-                if ((currentLineWidth + word.length() >= MAX_LINE_WIDTH + 30) && currentLineWidth != 0) {
-                    System.out.print('\n');
-                    currentLineWidth = 0;
-                }
+        int lineWidth = inputBuffer ? MAX_LINE_WIDTH + 30 : MAX_LINE_WIDTH;
+        synchronized (RENDER_BUFFER) {
+            RENDER_BUFFER.setLength(0);
+            if (!interactive || fitsOnOneLine(data, lineWidth)) {
+                RENDER_BUFFER.append(data);
             } else {
-                if ((currentLineWidth + word.length() >= MAX_LINE_WIDTH) && currentLineWidth != 0) {
-                    System.out.print('\n');
-                    currentLineWidth = 0;
-                }
-            }
-            for (char ch : word.toCharArray()) {
-                if (ch == '\n') {
-                    System.out.print('\n');
-                    currentLineWidth = 0;
-                    needToBreak = false;
-                    continue;
-                }
-                System.out.print(ch);
-                currentLineWidth++;
-                remainingChars.deleteCharAt(0); // Remove the printed character from remainingChars
-            }
-            if (needToBreak) {
-                System.out.print('\n');
-                currentLineWidth = 0;
-                needToBreak = false;
+                RENDER_WRAPPER.setLineWidth(lineWidth);
+                RENDER_WRAPPER.append(data);
+                RENDER_WRAPPER.finish();
             }
-            if (currentLineWidth > 0) {
-                System.out.print(' ');
-                currentLineWidth++;
-                //remainingChars.deleteCharAt(0); // Remove the printed space from remainingChars
+            if (newLine) {
+                RENDER_BUFFER.append('\n');
             }
-        }
-        if (newLine) {
-            System.out.print('\n');
+            writeRenderBuffer();
         }
         if (inputBuffer) {
             console.readLine();
+            resumeTyping();
             System.out.print(greenColor + "> " + resetColor);
         }
     }
 
     /**
-     * Clears the console screen. This method determines the operating system
-     * and clears the screen accordingly. For Windows, it uses a combination of
-     * ANSI escape codes and the "clear" command. For other operating systems,
-     * it uses only ANSI escape codes.
+     * Checks whether a short text can be printed as it is. Prompts and headers
+     * are printed over and over, so their measured widths are cached.
+     *
+     * @param data the text to print
+     * @param lineWidth the width at which to wrap
+     * @return true if the text needs no wrapping, false otherwise
      */
-    public static void clearScreen() { //clears the screen
-        String OS_Name = System.getProperty("os.name");
-        try {
-            if (OS_Name.contains("Windows")) {
-                System.out.print("\033[H\033[2J");
-                System.out.flush();
-                Runtime.getRuntime().exec(new String[]{"clear"});
+    private static boolean fitsOnOneLine(String data, int lineWidth) {
+        return data.length() <= MAX_CACHED_WIDTH_LENGTH
+                && data.indexOf('\n') < 0
+                && data.indexOf('\\') < 0
+                && DisplayWidth.cached(data) < lineWidth;
+    }
+
+    /**
+     * Prints text from a reader as it arrives. Each chunk is wrapped and
+     * written as soon as it is read, so the whole payload never has to be held
+     * in memory.
+     *
+     * @param in the reader to print from
+     * @param newLine whether to print a new line at the end
+     * @throws IOException if the reader fails
+     */
+    public static void printStream(Reader in, boolean newLine) throws IOException {
+        char[] chunk = new char[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            printChunk(CharBuffer.wrap(chunk, 0, read));
+        }
+        endChunks(newLine);
+    }
+
+    /**
+     * Prints a chunk of a streamed text. The current column and any partial
+     * word are kept until the next chunk, so a text can be printed in as many
+     * pieces as it arrives in. Call {@link #endChunks(boolean)} once the text
+     * is complete. The text is only wrapped when a person is at the terminal.
+     *
+     * @param chunk the next piece of text
+     */
+    public static void printChunk(CharSequence chunk) {
+        if (chunk == null) {
+            return;
+        }
+        synchronized (RENDER_BUFFER) {
+            RENDER_BUFFER.setLength(0);
+            if (interactive) {
+                STREAM_WRAPPER.setLineWidth(MAX_LINE_WIDTH);
+                STREAM_WRAPPER.append(chunk);
             } else {
-                System.out.print("\033[H\033[2J");
-                System.out.flush();
+                RENDER_BUFFER.append(chunk);
+            }
+            writeRenderBuffer();
+        }
+    }
+
+    /**
+     * Ends a streamed text, printing any pending word.
+     *
+     * @param newLine whether to print a new line at the end
+     */
+    public static void endChunks(boolean newLine) {
+        synchronized (RENDER_BUFFER) {
+            RENDER_BUFFER.setLength(0);
+            STREAM_WRAPPER.finish();
+            if (newLine) {
+                RENDER_BUFFER.append('\n');
             }
-        } catch (final IOException e) {
-            //do nothing
+            writeRenderBuffer();
+        }
+    }
+
+    /**
+     * Writes the render buffer to the terminal and releases its memory if a
+     * large text grew it.
+     */
+    private static void writeRenderBuffer() {
+        long start = System.nanoTime();
+        writeBuffer(RENDER_BUFFER);
+        Metrics.recordSince("render", start);
+        if (RENDER_BUFFER.capacity() > MAX_RETAINED_BUFFER) {
+            RENDER_BUFFER.setLength(0);
+            RENDER_BUFFER.trimToSize();
+        }
+    }
+
+    /**
+     * Encodes the buffer with the charset of {@code System.out} and writes it
+     * in one call. The byte buffer is reused between calls.
+     *
+     * @param text the text to write
+     */
+    private static void writeBuffer(CharSequence text) {
+        Charset charset = System.out.charset();
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        encoder.reset();
+        int maxBytes = (int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar());
+        ByteBuffer bytes = encodeBuffer.capacity() >= maxBytes ? encodeBuffer : ByteBuffer.allocate(maxBytes);
+        bytes.clear();
+        encoder.encode(CharBuffer.wrap(text), bytes, true);
+        encoder.flush(bytes);
+        System.out.write(bytes.array(), 0, bytes.position());
+        System.out.flush();
+        encodeBuffer = bytes.capacity() > MAX_RETAINED_BUFFER ? ByteBuffer.allocate(INITIAL_BUFFER) : bytes;
+    }
+
+    /**
+     * Clears the console screen using ANSI escape codes, which every supported
+     * terminal understands, so no process is started.
+     */
+    public static void clearScreen() { //clears the screen
+        if (!interactive) {
+            return;
+        }
+        synchronized (RENDER_BUFFER) {
+            RENDER_BUFFER.setLength(0);
+            RENDER_BUFFER.append("\033[H\033[2J");
+            writeRenderBuffer();
+        }
+    }
+
+    /**
+     * Draws the changes of a virtual screen to the terminal in a single write.
+     * Nothing is drawn when no one is at the terminal.
+     *
+     * @param screen the screen to draw
+     */
+    public static void renderScreen(VirtualScreen screen) {
+        if (!interactive) {
+            return;
+        }
+        synchronized (RENDER_BUFFER) {
+            RENDER_BUFFER.setLength(0);
+            screen.render(RENDER_BUFFER);
+            if (RENDER_BUFFER.length() > 0) {
+                writeRenderBuffer();
+            }
+        }
+    }
+
+    /**
+     * Moves the cursor, for instance below a screen drawn with
+     * {@link #renderScreen(VirtualScreen)}. Nothing is written when no one is
+     * at the terminal.
+     *
+     * @param row the row, counted from 0
+     * @param column the column, counted from 0
+     */
+    public static void moveCursor(int row, int column) {
+        if (!interactive) {
+            return;
+        }
+        synchronized (RENDER_BUFFER) {
+            RENDER_BUFFER.setLength(0);
+            RENDER_BUFFER.append("\033[").append(row + 1).append(';').append(column + 1).append('H');
+            writeRenderBuffer();
         }
     }
 
@@ -249,8 +350,12 @@ public abstract class TextEngine {
      * Adds a pause and waits for the user to press Enter to continue.
      */
     public static void enterToNext() { //adds a pause and waits for enter
+        if (!interactive) {
+            return;
+        }
         printNoDelay(yellowColor + "Press Enter to continue" + resetColor, false, false);
         console.readLine();
+        resumeTyping();
     }
 
     /**
@@ -265,7 +370,9 @@ public abstract class TextEngine {
 
     /**
      * Parses the input command and matches it against a list of possible
-     * commands.
+     * commands by comparing it with each of them. Callers that match against
+     * the same commands often should compile them into a {@link CommandTrie}
+     * once and use {@link #parseCommand(String, CommandTrie)}.
      *
      * @param command the input command
      * @param possibleCommands the list of possible commands
@@ -289,7 +396,29 @@ public abstract class TextEngine {
                 matchedCommand = possibleCommand;
             }
         }
-        return (maxMatchLength > 0 && has(possibleCommands, matchedCommand)) ? matchedCommand.toLowerCase() : command.toLowerCase();
+        return maxMatchLength > 0 ? matchedCommand.toLowerCase() : command.toLowerCase();
+    }
+
+    /**
+     * Parses the input command and matches it against a compiled command
+     * vocabulary. The input matches the command that shares the longest prefix
+     * with it.
+     *
+     * @param command the input command
+     * @param possibleCommands the compiled vocabulary
+     * @return the matched command
+     */
+    public static String parseCommand(String command, CommandTrie possibleCommands) {
+        for (String illegalCommand : BREAK_COMMANDS) {
+            if (command.equals(illegalCommand)) {
+                return command;
+            }
+        }
+        if (possibleCommands.contains(command)) {
+            return command;
+        }
+        String matchedCommand = possibleCommands.longestPrefixMatch(command);
+        return matchedCommand != null ? matchedCommand.toLowerCase() : command.toLowerCase();
     }
 
     /**
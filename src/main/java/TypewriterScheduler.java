@@ -0,0 +1,180 @@
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TypewriterScheduler class releases text to the terminal at a typing pace.
+ * Instead of sleeping once per character, the characters that are due are
+ * collected into frames that are written from a shared timer thread, so a
+ * typed line costs a handful of wakeups and flushes per second. Letters and
+ * digits are paced; other characters and escape sequences are released with
+ * the next frame. The animation can be skipped by pressing enter or by calling
+ * {@link #skip()}; a skip lasts until {@link #resume()} is called, so the
+ * rest of the output of a command is not typed either.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class TypewriterScheduler {
+
+    private static final InputStream TERMINAL_INPUT = new FileInputStream(FileDescriptor.in);
+    private final long frameNanos;
+    private final ScheduledExecutorService timer;
+    private volatile boolean skipRequested = false;
+
+    /**
+     * Constructs a TypewriterScheduler with the specified frame period.
+     *
+     * @param frameMillis the time between frames in milliseconds
+     */
+    public TypewriterScheduler(long frameMillis) {
+        this.frameNanos = TimeUnit.MILLISECONDS.toNanos(frameMillis);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typewriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes text at a typing pace and returns once all of it is written.
+     *
+     * @param text the text to write
+     * @param charDelayMillis the time each letter or digit takes to type
+     * @param out the stream to write to
+     */
+    public synchronized void play(CharSequence text, long charDelayMillis, PrintStream out) {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+        Frames frames = new Frames(text, TimeUnit.MILLISECONDS.toNanos(charDelayMillis), out);
+        ScheduledFuture<?> schedule = timer.scheduleAtFixedRate(frames, 0, frameNanos, TimeUnit.NANOSECONDS);
+        try {
+            frames.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            skipRequested = true;
+            frames.run();
+        } finally {
+            schedule.cancel(false);
+        }
+    }
+
+    /**
+     * Skips the rest of the text that is being typed and writes the texts
+     * after it at once, until {@link #resume()} is called.
+     */
+    public void skip() {
+        skipRequested = true;
+    }
+
+    /**
+     * Types texts at the typing pace again after a skip.
+     */
+    public void resume() {
+        skipRequested = false;
+    }
+
+    /**
+     * Checks whether a character is typed with a delay.
+     *
+     * @param ch the character
+     * @return true if the character is a letter or digit, false otherwise
+     */
+    static boolean isPaced(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9');
+    }
+
+    /**
+     * Checks whether the user pressed enter and discards the line that was
+     * entered. The terminal hands input over a line at a time, so the line is
+     * read a byte at a time up to its line break, without a buffer, and any
+     * line typed after it is left for the next prompt.
+     *
+     * @return true if a key was pressed, false otherwise
+     */
+    private static boolean keyPressed() {
+        if (System.console() == null) {
+            return false;
+        }
+        try {
+            if (TERMINAL_INPUT.available() <= 0) {
+                return false;
+            }
+            int ch;
+            do {
+                ch = TERMINAL_INPUT.read();
+            } while (ch != '\n' && ch != -1 && TERMINAL_INPUT.available() > 0);
+            return true;
+        } catch (IOException e) {
+            //do nothing
+        }
+        return false;
+    }
+
+    /**
+     * The frames of one text being typed.
+     */
+    private class Frames implements Runnable {
+
+        private final CharSequence text;
+        private final long charDelayNanos;
+        private final PrintStream out;
+        private final StringBuilder frame = new StringBuilder();
+        private final DisplayWidth.Meter meter = new DisplayWidth.Meter();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int position = 0;
+        private long budget = 0;
+        private long lastFrame = System.nanoTime();
+
+        Frames(CharSequence text, long charDelayNanos, PrintStream out) {
+            this.text = text;
+            this.charDelayNanos = charDelayNanos;
+            this.out = out;
+        }
+
+        /**
+         * Writes every character that is due in this frame.
+         */
+        @Override
+        public synchronized void run() {
+            if (done.getCount() == 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            budget += now - lastFrame;
+            lastFrame = now;
+            if (!skipRequested && keyPressed()) {
+                skipRequested = true;
+            }
+            boolean skipping = skipRequested;
+            frame.setLength(0);
+            while (position < text.length()) {
+                char ch = text.charAt(position);
+                if (!skipping && meter.next(ch) > 0 && isPaced(ch)) {
+                    if (budget < charDelayNanos) {
+                        break;
+                    }
+                    budget -= charDelayNanos;
+                }
+                frame.append(ch);
+                position++;
+            }
+            if (frame.length() > 0) {
+                out.append(frame);
+                out.flush();
+            }
+            if (position >= text.length()) {
+                done.countDown();
+            }
+        }
+    }
+}
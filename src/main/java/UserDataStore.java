@@ -0,0 +1,312 @@
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.json.JSONObject;
+
+/**
+ * The UserDataStore class saves the user data JSON file one section at a
+ * time. Each top-level key is a section whose value is read from a supplier.
+ * When a section is updated its value is serialized on the calling thread and
+ * kept as a fragment; if the fragment changed, a save is scheduled. Saves are
+ * debounced, so a burst of updates is written once, and they only join the
+ * cached fragments together instead of serializing every section again.
+ *
+ * The file is never truncated in place. It is written to a temporary file,
+ * forced to disk and then renamed over the old file, so a crash during a save
+ * leaves either the old or the new contents.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class UserDataStore implements Closeable {
+
+    private final Path path;
+    private final Path temporaryPath;
+    private final long debounceMillis;
+    private final Map<String, Supplier<?>> sections = new LinkedHashMap<>();
+    private final Map<String, String> fragments = new HashMap<>();
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService saver;
+    private ScheduledFuture<?> pendingSave;
+    private long version = 0;
+    private long savedVersion = 0;
+    private IOException failure;
+
+    /**
+     * Constructs a UserDataStore for the specified file.
+     *
+     * @param path the user data file
+     * @param debounceMillis how long to wait after an update before saving
+     */
+    public UserDataStore(Path path, long debounceMillis) {
+        this.path = path;
+        this.temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.debounceMillis = debounceMillis;
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-data-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a section. Sections are written in the order they are
+     * registered.
+     *
+     * @param key the top-level key of the section
+     * @param value the supplier of the current value of the section
+     */
+    public synchronized void section(String key, Supplier<?> value) {
+        sections.put(key, value);
+    }
+
+    /**
+     * Reads the file and caches the fragment of every section in it, so the
+     * sections that are never updated are not serialized again. A temporary
+     * file left by an interrupted save is removed.
+     *
+     * @return the contents of the file
+     * @throws IOException if the file could not be read
+     * @throws org.json.JSONException if the file is not a JSON object
+     */
+    public synchronized JSONObject load() throws IOException {
+        Files.deleteIfExists(temporaryPath);
+        JSONObject data = new JSONObject(Files.readString(path));
+        fragments.clear();
+        for (String key : data.keySet()) {
+            fragments.put(key, JSONObject.valueToString(data.opt(key)));
+        }
+        savedVersion = version;
+        return data;
+    }
+
+    /**
+     * Forgets the cached fragments, for when the file was deleted, so the
+     * next update of each section is saved even if its value is the same.
+     */
+    public synchronized void clear() {
+        fragments.clear();
+        version++;
+    }
+
+    /**
+     * Takes the current value of some sections and schedules a save if any
+     * of them changed.
+     *
+     * @param keys the keys of the sections
+     * @throws IllegalArgumentException if a key is not registered
+     */
+    public synchronized void update(String... keys) {
+        boolean changed = false;
+        for (String key : keys) {
+            Supplier<?> value = sections.get(key);
+            if (value == null) {
+                throw new IllegalArgumentException("Unknown user data section: " + key);
+            }
+            String fragment = JSONObject.valueToString(value.get());
+            if (!fragment.equals(fragments.put(key, fragment))) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            version++;
+            if (pendingSave == null || pendingSave.isDone()) {
+                pendingSave = saver.schedule(this::saveInBackground, debounceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Takes the current value of every section and schedules a save if any of
+     * them changed.
+     */
+    public synchronized void updateAll() {
+        update(sections.keySet().toArray(new String[0]));
+    }
+
+    /**
+     * Checks whether some updates have not been saved yet.
+     *
+     * @return true if a save is needed, false otherwise
+     */
+    public synchronized boolean isDirty() {
+        return version != savedVersion;
+    }
+
+    /**
+     * Saves the file now if any section changed since the last save.
+     *
+     * @throws IOException if this or an earlier background save failed
+     */
+    public void save() throws IOException {
+        IOException error;
+        synchronized (this) {
+            if (pendingSave != null) {
+                pendingSave.cancel(false);
+            }
+            error = failure;
+            failure = null;
+        }
+        write();
+        if (error != null && isDirty()) {
+            throw error;
+        }
+    }
+
+    /**
+     * Saves any changes and stops the background thread.
+     *
+     * @throws IOException if the file could not be saved
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            save();
+        } finally {
+            saver.shutdown();
+        }
+    }
+
+    /**
+     * Saves from the background thread, keeping any error for the next call
+     * to {@link #save()}.
+     */
+    private void saveInBackground() {
+        try {
+            write();
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Joins the cached fragments and replaces the file with them.
+     *
+     * @throws IOException if the file could not be written
+     */
+    private void write() throws IOException {
+        synchronized (writeLock) {
+            String contents;
+            long writing;
+            synchronized (this) {
+                if (version == savedVersion) {
+                    return;
+                }
+                writing = version;
+                contents = join();
+            }
+            FlightEvents.Persist event = new FlightEvents.Persist();
+            event.begin();
+            long start = System.nanoTime();
+            replace(contents);
+            Metrics.recordSince("user data save", start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = path.toString();
+                event.bytes = contents.getBytes(StandardCharsets.UTF_8).length;
+                event.commit();
+            }
+            synchronized (this) {
+                savedVersion = writing;
+            }
+        }
+    }
+
+    /**
+     * Builds the JSON object from the cached fragments: the registered
+     * sections first, in order, then any others that were loaded.
+     *
+     * @return the JSON text
+     */
+    private String join() {
+        StringBuilder json = new StringBuilder("{");
+        for (String key : sections.keySet()) {
+            appendFragment(json, key);
+        }
+        for (String key : fragments.keySet()) {
+            if (!sections.containsKey(key)) {
+                appendFragment(json, key);
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Appends the cached fragment of a section as a member of the JSON
+     * object, after a comma if it is not the first. A section with no
+     * fragment is left out.
+     *
+     * @param json the JSON text being built
+     * @param key the name of the section
+     */
+    private void appendFragment(StringBuilder json, String key) {
+        String fragment = fragments.get(key);
+        if (fragment == null) {
+            return;
+        }
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        json.append(JSONObject.quote(key)).append(':').append(fragment);
+    }
+
+    /**
+     * Writes text to the temporary file, forces it to disk and renames it
+     * over the file.
+     *
+     * @param contents the new contents of the file
+     * @throws IOException if the file could not be written
+     */
+    private void replace(String contents) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory();
+    }
+
+    /**
+     * Forces the directory holding the file to disk so the rename survives a
+     * crash. Not every platform can open a directory, so failures are
+     * ignored.
+     */
+    private void forceDirectory() {
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //do nothing
+        }
+    }
+}
@@ -0,0 +1,297 @@
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * The VirtualScreen class is a double-buffered model of the terminal screen.
+ * Text is drawn into a back buffer of code points and attributes held in
+ * primitive arrays, and rendering compares it with the front buffer, which
+ * holds what the terminal currently shows, and emits only the cursor moves and
+ * cells that changed.
+ * Status lines, counters and timers can be redrawn often without flicker and
+ * without rewriting the whole terminal.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public final class VirtualScreen {
+
+    public static final int DEFAULT = 0;
+    public static final int BLACK = 30;
+    public static final int RED = 31;
+    public static final int GREEN = 32;
+    public static final int YELLOW = 33;
+    public static final int BLUE = 34;
+    public static final int PURPLE = 35;
+    public static final int CYAN = 36;
+    public static final int WHITE = 37;
+
+    private static final int BOLD = 1 << 8;
+    private static final int CONTINUATION = 0;
+
+    private int width;
+    private int height;
+    private int[] frontChars;
+    private int[] frontAttrs;
+    private int[] backChars;
+    private int[] backAttrs;
+    private boolean fullRedraw = true;
+
+    /**
+     * Constructs a VirtualScreen of the specified size.
+     *
+     * @param width the number of columns
+     * @param height the number of rows
+     */
+    public VirtualScreen(int width, int height) {
+        resize(width, height);
+    }
+
+    /**
+     * Builds an attribute from a color and a weight.
+     *
+     * @param color the foreground color, one of the color constants
+     * @param bold whether the text is bold
+     * @return the attribute
+     */
+    public static int attribute(int color, boolean bold) {
+        return color | (bold ? BOLD : 0);
+    }
+
+    /**
+     * Changes the size of the screen. The contents are cleared and the next
+     * render redraws the whole screen.
+     *
+     * @param newWidth the number of columns
+     * @param newHeight the number of rows
+     */
+    public void resize(int newWidth, int newHeight) {
+        width = Math.max(1, newWidth);
+        height = Math.max(1, newHeight);
+        frontChars = new int[width * height];
+        frontAttrs = new int[width * height];
+        backChars = new int[width * height];
+        backAttrs = new int[width * height];
+        Arrays.fill(frontChars, ' ');
+        clear();
+        invalidate();
+    }
+
+    /**
+     * Gets the number of columns.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Blanks the back buffer.
+     */
+    public void clear() {
+        Arrays.fill(backChars, ' ');
+        Arrays.fill(backAttrs, DEFAULT);
+    }
+
+    /**
+     * Blanks one row of the back buffer.
+     *
+     * @param row the row to blank
+     */
+    public void clearRow(int row) {
+        if (row < 0 || row >= height) {
+            return;
+        }
+        Arrays.fill(backChars, row * width, (row + 1) * width, ' ');
+        Arrays.fill(backAttrs, row * width, (row + 1) * width, DEFAULT);
+    }
+
+    /**
+     * Makes the next render redraw every cell, for example after something
+     * else has written to the terminal.
+     */
+    public void invalidate() {
+        fullRedraw = true;
+    }
+
+    /**
+     * Draws text into the back buffer. Escape sequences are skipped, wide
+     * characters take two cells, tabs are filled with blanks up to the next
+     * tab stop, and text past the end of the row is cut off. A wide character
+     * that is partly drawn over is blanked.
+     *
+     * @param row the row to draw on
+     * @param column the column to start at
+     * @param text the text to draw
+     * @param attribute the attribute of the text
+     * @return the column after the last cell drawn
+     */
+    public int print(int row, int column, CharSequence text, int attribute) {
+        if (row < 0 || row >= height) {
+            return column;
+        }
+        DisplayWidth.Meter meter = new DisplayWidth.Meter();
+        for (int i = 0; i < text.length() && column < width; i++) {
+            char ch = text.charAt(i);
+            int cellWidth = meter.next(ch);
+            if (ch == '\t' && !meter.wasEscape()) {
+                int stop = (Math.floorDiv(column, DisplayWidth.TAB_WIDTH) + 1) * DisplayWidth.TAB_WIDTH;
+                for (; column < stop && column < width; column++) {
+                    if (column >= 0) {
+                        int cell = row * width + column;
+                        release(cell);
+                        backChars[cell] = ' ';
+                        backAttrs[cell] = attribute;
+                    }
+                }
+                column = stop;
+                continue;
+            }
+            int codePoint = Character.isLowSurrogate(ch) && i > 0 && Character.isHighSurrogate(text.charAt(i - 1))
+                    ? Character.toCodePoint(text.charAt(i - 1), ch) : ch;
+            if (cellWidth == 0 || column < 0) {
+                column += cellWidth;
+                continue;
+            }
+            if (column + cellWidth > width) {
+                break;
+            }
+            int cell = row * width + column;
+            release(cell);
+            if (cellWidth == 2) {
+                release(cell + 1);
+            }
+            backChars[cell] = codePoint;
+            backAttrs[cell] = attribute;
+            if (cellWidth == 2) {
+                backChars[cell + 1] = CONTINUATION;
+                backAttrs[cell + 1] = attribute;
+            }
+            column += cellWidth;
+        }
+        return column;
+    }
+
+    /**
+     * Blanks the other half of the wide character in a cell, if there is one,
+     * before the cell is drawn over.
+     *
+     * @param cell the cell
+     */
+    private void release(int cell) {
+        if (backChars[cell] == CONTINUATION && cell % width > 0) {
+            backChars[cell - 1] = ' ';
+        }
+        if (cell % width + 1 < width && backChars[cell + 1] == CONTINUATION) {
+            backChars[cell + 1] = ' ';
+        }
+    }
+
+    /**
+     * Gets the code point in a cell of the back buffer.
+     *
+     * @param row the row
+     * @param column the column
+     * @return the code point
+     */
+    public int codePointAt(int row, int column) {
+        return backChars[row * width + column];
+    }
+
+    /**
+     * Writes the changes between the back buffer and what the terminal shows,
+     * then makes the back buffer the new front buffer. The terminal is
+     * expected to be in its default attributes, and is left in them.
+     *
+     * @param out the destination for the escape sequences and text
+     */
+    public void render(Appendable out) {
+        try {
+            int cursorRow = -1;
+            int cursorColumn = -1;
+            int currentAttribute = DEFAULT;
+            if (fullRedraw) {
+                out.append("\033[0m\033[H\033[2J");
+                cursorRow = 0;
+                cursorColumn = 0;
+            }
+            for (int row = 0; row < height; row++) {
+                for (int column = 0; column < width; column++) {
+                    int cell = row * width + column;
+                    int ch = backChars[cell];
+                    int attribute = backAttrs[cell];
+                    boolean changed = fullRedraw
+                            ? ch != ' ' || attribute != DEFAULT
+                            : ch != frontChars[cell] || attribute != frontAttrs[cell];
+                    if (!changed || ch == CONTINUATION) {
+                        continue;
+                    }
+                    if (row != cursorRow || column != cursorColumn) {
+                        out.append("\033[").append(Integer.toString(row + 1)).append(';')
+                                .append(Integer.toString(column + 1)).append('H');
+                    }
+                    if (attribute != currentAttribute) {
+                        appendAttribute(out, attribute);
+                        currentAttribute = attribute;
+                    }
+                    if (Character.isBmpCodePoint(ch)) {
+                        out.append((char) ch);
+                    } else {
+                        out.append(Character.highSurrogate(ch)).append(Character.lowSurrogate(ch));
+                    }
+                    cursorRow = row;
+                    cursorColumn = column + (column + 1 < width && backChars[cell + 1] == CONTINUATION ? 2 : 1);
+                }
+            }
+            if (currentAttribute != DEFAULT) {
+                out.append("\033[0m");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.arraycopy(backChars, 0, frontChars, 0, backChars.length);
+        System.arraycopy(backAttrs, 0, frontAttrs, 0, backAttrs.length);
+        fullRedraw = false;
+    }
+
+    /**
+     * Renders the changes into a string.
+     *
+     * @return the escape sequences and text to write to the terminal
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder();
+        render(out);
+        return out.toString();
+    }
+
+    /**
+     * Writes the escape sequence that selects an attribute.
+     *
+     * @param out the destination
+     * @param attribute the attribute
+     * @throws IOException if the destination fails
+     */
+    private static void appendAttribute(Appendable out, int attribute) throws IOException {
+        out.append("\033[0");
+        if ((attribute & BOLD) != 0) {
+            out.append(";1");
+        }
+        int color = attribute & 0xFF;
+        if (color != DEFAULT) {
+            out.append(';').append(Integer.toString(color));
+        }
+        out.append('m');
+    }
+}
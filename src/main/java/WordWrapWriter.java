@@ -0,0 +1,329 @@
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * The WordWrapWriter class is a stateful word-wrapping writer. Text can be
+ * written to it in chunks of any size and it keeps the current column and any
+ * partially received word between calls, so output can be rendered as it
+ * arrives. At most one line width of a word is held back before it is passed
+ * through, which keeps memory bounded regardless of the input size. Widths are
+ * measured in terminal columns, so escape sequences take up no room and wide
+ * characters take up two columns.
+ *
+ * Words are separated by spaces and tabs, a word containing a backslash is
+ * followed by a line break, and embedded new lines reset the current column.
+ * A tab reaches to the next tab stop. Spaces are written as they are, except
+ * at the start of a line begun by wrapping, so text that fits on one line
+ * comes out unchanged.
+ *
+ * @author Caden Finley
+ * @version 1.0
+ */
+public class WordWrapWriter extends Writer {
+
+    private final Appendable out;
+    private final StringBuilder pendingWord = new StringBuilder();
+    private final DisplayWidth.Meter meter = new DisplayWidth.Meter();
+    private int pendingWidth = 0;
+    private int pendingTailWidth = 0;
+    private boolean pendingHasNewLine = false;
+    private int lineWidth;
+    private int currentLineWidth = 0;
+    private boolean wordCommitted = false;
+    private boolean needToBreak = false;
+    private boolean wrapped = false;
+
+    /**
+     * Constructs a WordWrapWriter that wraps text at the specified width.
+     *
+     * @param out the destination for the wrapped text
+     * @param lineWidth the width at which to wrap
+     */
+    public WordWrapWriter(Appendable out, int lineWidth) {
+        this.out = out;
+        this.lineWidth = lineWidth;
+    }
+
+    /**
+     * Sets the width at which to wrap. The new width applies from the next
+     * word on.
+     *
+     * @param lineWidth the width at which to wrap
+     */
+    public void setLineWidth(int lineWidth) {
+        this.lineWidth = lineWidth;
+    }
+
+    /**
+     * Gets the width at which text is wrapped.
+     *
+     * @return the line width
+     */
+    public int getLineWidth() {
+        return lineWidth;
+    }
+
+    /**
+     * Gets the display column of the last character written to the
+     * destination.
+     *
+     * @return the current column
+     */
+    public int getColumn() {
+        return currentLineWidth;
+    }
+
+    /**
+     * Writes a single character.
+     *
+     * @param c the character to write
+     */
+    @Override
+    public void write(int c) {
+        accept((char) c);
+    }
+
+    /**
+     * Writes a portion of an array of characters.
+     *
+     * @param cbuf the characters to write
+     * @param off the offset to start from
+     * @param len the number of characters to write
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            accept(cbuf[i]);
+        }
+    }
+
+    /**
+     * Writes a portion of a string.
+     *
+     * @param str the string to write
+     * @param off the offset to start from
+     * @param len the number of characters to write
+     */
+    @Override
+    public void write(String str, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            accept(str.charAt(i));
+        }
+    }
+
+    /**
+     * Appends a character sequence without copying it.
+     *
+     * @param csq the character sequence to append
+     * @return this writer
+     */
+    @Override
+    public WordWrapWriter append(CharSequence csq) {
+        if (csq == null) {
+            csq = "null";
+        }
+        for (int i = 0; i < csq.length(); i++) {
+            accept(csq.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Writes every chunk of a token stream.
+     *
+     * @param tokens the chunks to write
+     */
+    public void writeAll(Iterable<? extends CharSequence> tokens) {
+        for (CharSequence token : tokens) {
+            append(token);
+        }
+    }
+
+    /**
+     * Writes everything remaining in a reader.
+     *
+     * @param in the reader to copy from
+     * @return the number of characters read
+     * @throws IOException if the reader fails
+     */
+    public long transferFrom(Reader in) throws IOException {
+        char[] chunk = new char[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            write(chunk, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Ends the current stream by writing out any pending word and resetting
+     * the column, so the writer can be reused for the next text.
+     */
+    public void finish() {
+        endWord();
+        currentLineWidth = 0;
+        wrapped = false;
+        meter.reset();
+    }
+
+    /**
+     * Flushes the destination if it is flushable. A partially received word
+     * is kept back until it is complete.
+     *
+     * @throws IOException if the destination fails to flush
+     */
+    @Override
+    public void flush() throws IOException {
+        if (out instanceof Flushable flushable) {
+            flushable.flush();
+        }
+    }
+
+    /**
+     * Finishes the stream and flushes the destination.
+     *
+     * @throws IOException if the destination fails to flush
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+        flush();
+    }
+
+    /**
+     * Processes one character of input.
+     *
+     * @param ch the character
+     */
+    private void accept(char ch) {
+        int measured = meter.next(ch);
+        if ((ch == ' ' || ch == '\t') && !meter.wasEscape()) {
+            endWord();
+            space(ch);
+            return;
+        }
+        int width = ch == '\n' ? 1 : measured;
+        if (ch == '\\' && !meter.wasEscape()) {
+            needToBreak = true;
+        }
+        if (wordCommitted) {
+            emitWordChar(ch, width);
+            return;
+        }
+        pendingWord.append(ch);
+        pendingWidth += width;
+        if (ch == '\n') {
+            pendingHasNewLine = true;
+            pendingTailWidth = 0;
+            needToBreak = false;
+        } else {
+            pendingTailWidth += width;
+        }
+        if (pendingWidth >= lineWidth) {
+            commitWord();
+        }
+    }
+
+    /**
+     * Writes a space or a tab between words. Nothing is written at the start
+     * of a line begun by wrapping, and a tab that does not fit ends the line.
+     *
+     * @param ch the space or tab
+     */
+    private void space(char ch) {
+        if (currentLineWidth == 0 && wrapped) {
+            return;
+        }
+        int width = ch == ' ' ? 1 : DisplayWidth.TAB_WIDTH - currentLineWidth % DisplayWidth.TAB_WIDTH;
+        if (ch == '\t' && currentLineWidth + width >= lineWidth && currentLineWidth != 0) {
+            wrap();
+            return;
+        }
+        emit(ch);
+        currentLineWidth += width;
+    }
+
+    /**
+     * Ends the current line where the text itself has no line break.
+     */
+    private void wrap() {
+        emit('\n');
+        currentLineWidth = 0;
+        wrapped = true;
+    }
+
+    /**
+     * Decides whether the pending word starts on a new line and writes out
+     * what has been held back of it. Once a word is committed the rest of it is
+     * passed straight through.
+     */
+    private void commitWord() {
+        if ((currentLineWidth + pendingWidth >= lineWidth) && currentLineWidth != 0) {
+            wrap();
+        }
+        wordCommitted = true;
+        if (pendingWord.length() > 0) {
+            wrapped = false;
+            try {
+                out.append(pendingWord);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        currentLineWidth = pendingHasNewLine ? pendingTailWidth : currentLineWidth + pendingWidth;
+        pendingWord.setLength(0);
+        pendingWidth = 0;
+        pendingTailWidth = 0;
+        pendingHasNewLine = false;
+    }
+
+    /**
+     * Completes the current word, if any.
+     */
+    private void endWord() {
+        if (!wordCommitted) {
+            commitWord();
+        }
+        if (needToBreak) {
+            wrap();
+            needToBreak = false;
+        }
+        wordCommitted = false;
+    }
+
+    /**
+     * Writes one character that belongs to a word.
+     *
+     * @param ch the character
+     * @param width the number of columns the character takes up
+     */
+    private void emitWordChar(char ch, int width) {
+        if (ch == '\n') {
+            emit('\n');
+            currentLineWidth = 0;
+            needToBreak = false;
+            return;
+        }
+        emit(ch);
+        currentLineWidth += width;
+    }
+
+    /**
+     * Appends a character to the destination.
+     *
+     * @param ch the character
+     */
+    private void emit(char ch) {
+        try {
+            out.append(ch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
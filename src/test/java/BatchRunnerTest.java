@@ -0,0 +1,130 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.json.JSONObject;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class BatchRunnerTest {
+
+    private static BufferedReader lines(String... lines) {
+        return new BufferedReader(new StringReader(String.join("\n", lines)));
+    }
+
+    @Test
+    public void testSkipsBlankLinesAndComments() throws IOException {
+        List<String> ran = new ArrayList<>();
+        BatchRunner.Summary summary = new BatchRunner(command -> ran.add(command), null)
+                .run(lines("# setup", "", "  !user data get userdata  ", "terminal ls"));
+        assertEquals(List.of("!user data get userdata", "terminal ls"), ran);
+        assertEquals(2, summary.commands());
+        assertEquals(0, summary.failed());
+        assertEquals(0, summary.exitStatus());
+    }
+
+    @Test
+    public void testFailuresSetExitStatus() throws IOException {
+        BatchRunner.Summary summary = new BatchRunner(command -> {
+            if (command.equals("throw")) {
+                throw new IllegalStateException("boom");
+            }
+            return !command.equals("bad");
+        }, null).run(lines("good", "bad", "throw", "good"));
+        assertEquals(4, summary.commands());
+        assertEquals(2, summary.failed());
+        assertEquals(1, summary.exitStatus());
+    }
+
+    @Test
+    public void testStopEndsBatch() throws IOException {
+        List<String> ran = new ArrayList<>();
+        BatchRunner[] runner = new BatchRunner[1];
+        runner[0] = new BatchRunner(command -> {
+            ran.add(command);
+            if (command.equals("exit")) {
+                runner[0].stop();
+            }
+            return true;
+        }, null);
+        runner[0].run(lines("one", "exit", "two"));
+        assertEquals(List.of("one", "exit"), ran);
+    }
+
+    @Test
+    public void testReportsEachCommand() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BatchRunner(command -> !command.equals("bad"), new PrintStream(out, true, StandardCharsets.UTF_8))
+                .run(lines("good", "bad"));
+        String[] report = out.toString(StandardCharsets.UTF_8).split("\\R");
+        assertEquals(3, report.length);
+        assertTrue(report[0], report[0].matches("\\[1\\] ok \\d+\\.\\d{3} ms: good"));
+        assertTrue(report[1], report[1].matches("\\[2\\] failed \\d+\\.\\d{3} ms: bad"));
+        assertTrue(report[2], report[2].matches("2 commands, 1 failed, \\d+\\.\\d{3} ms"));
+    }
+
+    @Test
+    public void testManyCommandsAreFast() throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            script.append("command ").append(i).append('\n');
+        }
+        long start = System.nanoTime();
+        BatchRunner.Summary summary = new BatchRunner(command -> true, new PrintStream(new ByteArrayOutputStream()))
+                .run(new BufferedReader(new StringReader(script.toString())));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(20000, summary.commands());
+        assertTrue("took " + millis + " ms", millis < 5000);
+    }
+
+    private static String location(Class<?> type) throws URISyntaxException {
+        return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    @Test
+    public void testCommandsCannotReadTheBatch() throws IOException, InterruptedException, URISyntaxException {
+        Path directory = Files.createTempDirectory("batch-test");
+        try {
+            String classPath = location(Engine.class) + File.pathSeparator + location(JSONObject.class);
+            ProcessBuilder processBuilder = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", classPath, "Engine", "--batch", "-");
+            processBuilder.directory(directory.toFile());
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+            process.getOutputStream().write("cat\n".getBytes(StandardCharsets.UTF_8));
+            process.getOutputStream().flush();
+            Thread.sleep(2000);
+            process.getOutputStream().write("echo after\n".getBytes(StandardCharsets.UTF_8));
+            process.getOutputStream().close();
+            boolean finished = process.waitFor(60, TimeUnit.SECONDS);
+            if (!finished) {
+                process.destroyForcibly();
+            }
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(output, finished);
+            assertTrue(output, output.contains("2 commands, 0 failed"));
+            assertTrue(output, output.contains("after"));
+            assertTrue(output, output.contains("ok") && output.contains(": echo after"));
+            assertEquals(0, process.exitValue());
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class CommandLexerTest {
+
+    @Test
+    public void testSplitsOnWhitespace() {
+        assertEquals(List.of("user", "startup", "list"), CommandLexer.split("  user startup\tlist "));
+        assertEquals(List.of(), CommandLexer.split("   "));
+    }
+
+    @Test
+    public void testQuotesGroupWords() {
+        assertEquals(List.of("ai", "chat", "hello there"), CommandLexer.split("ai chat 'hello there'"));
+        assertEquals(List.of("say", "a \"b\" c"), CommandLexer.split("say \"a \\\"b\\\" c\""));
+        assertEquals(List.of("ab c"), CommandLexer.split("a'b c'"));
+    }
+
+    @Test
+    public void testGroupsKeepContentsAsWritten() {
+        assertEquals(List.of("user", "shortcut", "add", "gs", "terminal git commit -m 'fix (a)'"),
+                CommandLexer.split("user shortcut add gs (terminal git commit -m 'fix (a)')"));
+        assertEquals(List.of("x", "a [b] c"), CommandLexer.split("x [a [b] c]"));
+    }
+
+    @Test
+    public void testBackslashEscapesNextCharacter() {
+        assertEquals(List.of("my file", "end\\"), CommandLexer.split("my\\ file end\\"));
+    }
+
+    @Test
+    public void testTokenOffsets() {
+        List<CommandLexer.Token> tokens = CommandLexer.tokenize("ai  chat 'hi'");
+        assertEquals(new CommandLexer.Token("chat", 4, 8), tokens.get(1));
+        assertEquals(new CommandLexer.Token("hi", 9, 13), tokens.get(2));
+    }
+
+    @Test
+    public void testUnterminatedQuoteReportsPosition() {
+        try {
+            CommandLexer.split("ai chat 'hello");
+            fail();
+        } catch (CommandLexer.SyntaxException e) {
+            assertEquals(8, e.getPosition());
+        }
+    }
+
+    @Test
+    public void testUnclosedGroupReportsPosition() {
+        try {
+            CommandLexer.split("user startup add (terminal ls");
+            fail();
+        } catch (CommandLexer.SyntaxException e) {
+            assertEquals(17, e.getPosition());
+        }
+    }
+
+    @Test
+    public void testLenientKeepsUnmatchedQuotes() {
+        assertEquals(List.of("ai", "chat", "what's", "up"), texts(CommandLexer.tokenize("ai chat what's up", true)));
+        assertEquals(List.of("terminal", "echo", "it's"), texts(CommandLexer.tokenize("terminal echo it's", true)));
+        assertEquals(List.of("say", "\"hi", "there"), texts(CommandLexer.tokenize("say \"hi there", true)));
+        assertEquals(List.of("a", "(b", "c"), texts(CommandLexer.tokenize("a (b c", true)));
+        assertEquals(List.of("x", "a b", "it's"), texts(CommandLexer.tokenize("x 'a b' it's", true)));
+    }
+
+    @Test
+    public void testLenientKeepsRawArguments() {
+        CommandTree tree = new CommandTree();
+        StringBuilder raw = new StringBuilder();
+        tree.command("terminal").handler(0, Integer.MAX_VALUE, context -> raw.append(context.rawArguments()));
+        String line = "terminal echo it's";
+        assertTrue(tree.dispatch(line, CommandLexer.tokenize(line, true)).ok());
+        assertEquals("echo it's", raw.toString());
+    }
+
+    private static List<String> texts(List<CommandLexer.Token> tokens) {
+        return tokens.stream().map(CommandLexer.Token::text).toList();
+    }
+}
@@ -0,0 +1,108 @@
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandTreeTest {
+
+    private CommandTree tree;
+    private List<String> calls;
+
+    @Before
+    public void setUp() {
+        tree = new CommandTree();
+        calls = new ArrayList<>();
+        tree.command("user shortcut").chained();
+        tree.command("user shortcut enable").handler(context -> calls.add("enable"));
+        tree.command("user shortcut add").usage("[ARGS]").handler(2, 2, context -> calls.add("add " + context.arguments()));
+        tree.command("user shortcut list").handler(context -> calls.add("list"));
+        tree.command("terminal").usage("o[ARGS]").handler(0, Integer.MAX_VALUE, context -> calls.add("terminal " + context.rawArguments()));
+    }
+
+    private CommandTree.Result dispatch(String line) {
+        return tree.dispatch(line, CommandLexer.tokenize(line));
+    }
+
+    @Test
+    public void testDispatchesWithArguments() {
+        assertTrue(dispatch("user shortcut add b 'git branch'").ok());
+        assertEquals(List.of("add [b, git branch]"), calls);
+    }
+
+    @Test
+    public void testChainedSiblingsRunInOrder() {
+        assertTrue(dispatch("user shortcut enable add a b list").ok());
+        assertEquals(List.of("enable", "add [a, b]", "list"), calls);
+    }
+
+    @Test
+    public void testInvalidInputRunsNothing() {
+        assertEquals(CommandTree.Status.UNEXPECTED_ARGUMENT, dispatch("user shortcut enable bogus").status());
+        assertEquals(CommandTree.Status.MISSING_ARGUMENTS, dispatch("user shortcut add a").status());
+        assertEquals(CommandTree.Status.MISSING_ARGUMENTS, dispatch("user").status());
+        assertEquals(CommandTree.Status.UNKNOWN_COMMAND, dispatch("nothing").status());
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void testFailedHandlerStopsChain() {
+        tree.command("user shortcut fail").handler(context -> {
+            throw new CommandTree.CommandException("it failed");
+        });
+        CommandTree.Result result = dispatch("user shortcut enable fail list");
+        assertEquals(CommandTree.Status.FAILED, result.status());
+        assertEquals("it failed", result.token());
+        assertEquals("user shortcut fail", result.node().getPath());
+        assertEquals(List.of("enable"), calls);
+    }
+
+    @Test
+    public void testHandlerTimeIsMeasuredApartFromResolving() {
+        tree.command("user shortcut slow").handler(context -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CommandTree.Result result = dispatch("user shortcut slow");
+        assertTrue(result.runNanos() >= 50_000_000L);
+        assertTrue(result.resolveNanos() < 50_000_000L);
+        assertEquals(0, dispatch("user shortcut missing").runNanos());
+    }
+
+    @Test
+    public void testRawArgumentsKeepQuoting() {
+        assertTrue(dispatch("  terminal echo \"a  b\"").ok());
+        assertEquals(List.of("terminal echo \"a  b\""), calls);
+    }
+
+    @Test
+    public void testHandlersMayDispatchAgain() {
+        tree.command("twice").handler(context -> {
+            dispatch("user shortcut list");
+            dispatch("user shortcut enable");
+        });
+        assertTrue(dispatch("twice").ok());
+        assertEquals(List.of("list", "enable"), calls);
+    }
+
+    @Test
+    public void testCompletion() {
+        assertEquals(List.of("add"), tree.complete(List.of("user", "shortcut", "a")));
+        assertEquals(List.of("enable", "add", "list"), tree.complete(List.of("user", "shortcut", "")));
+        assertEquals(List.of(), tree.complete(List.of("nothing", "a")));
+    }
+
+    @Test
+    public void testHelpIsReadFromTree() {
+        tree.command("user shortcut help").hidden().handler(context -> {
+        });
+        assertEquals(List.of("shortcut: enable, add [ARGS], list"), tree.help(tree.find("user")));
+        assertEquals("user shortcut add", tree.find("user shortcut add").getPath());
+    }
+}
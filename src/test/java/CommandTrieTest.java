@@ -0,0 +1,48 @@
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CommandTrieTest {
+
+    private final CommandTrie trie = new CommandTrie(new String[]{"start", "stop", "status", "pause"});
+
+    @Test
+    public void testContains() {
+        assertTrue(trie.contains("stop"));
+        assertFalse(trie.contains("sto"));
+        assertFalse(trie.contains("unknown"));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    public void testLongestPrefixMatchPrefersFirstCommand() {
+        assertEquals("start", trie.longestPrefixMatch("sta"));
+        assertEquals("start", trie.longestPrefixMatch("stx"));
+        assertEquals("stop", trie.longestPrefixMatch("sto"));
+        assertNull(trie.longestPrefixMatch("xyz"));
+        assertEquals(3, trie.matchLength("stoke"));
+    }
+
+    @Test
+    public void testResolve() {
+        assertEquals(CommandTrie.Status.EXACT, trie.resolve("stop").status());
+        CommandTrie.Resolution unique = trie.resolve("sto");
+        assertEquals(CommandTrie.Status.UNIQUE, unique.status());
+        assertEquals("stop", unique.command());
+        CommandTrie.Resolution ambiguous = trie.resolve("sta");
+        assertEquals(CommandTrie.Status.AMBIGUOUS, ambiguous.status());
+        assertEquals(List.of("start", "status"), ambiguous.candidates());
+        assertEquals(CommandTrie.Status.NONE, trie.resolve("x").status());
+    }
+
+    @Test
+    public void testCandidates() {
+        assertEquals(List.of("start", "status", "stop"), trie.candidates("st"));
+        assertEquals(List.of(), trie.candidates("q"));
+    }
+}
@@ -0,0 +1,44 @@
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class DisplayWidthTest {
+
+    @Test
+    public void testAsciiWidth() {
+        assertEquals(1, DisplayWidth.of('a'));
+        assertEquals(0, DisplayWidth.of('\033'));
+        assertEquals(11, DisplayWidth.of("Hello World"));
+    }
+
+    @Test
+    public void testEscapeSequencesAreSkipped() {
+        assertEquals(8, DisplayWidth.of("\033[1;32mAI Menu:\033[0m"));
+        assertEquals(4, DisplayWidth.of("\033]0;title\007text"));
+        assertEquals("AI Menu:", DisplayWidth.stripEscapes("\033[1;32mAI Menu:\033[0m"));
+    }
+
+    @Test
+    public void testWideAndZeroWidthCharacters() {
+        assertEquals(2, DisplayWidth.of(0x4F60));
+        assertEquals(4, DisplayWidth.of("你好"));
+        assertEquals(2, DisplayWidth.of("😀"));
+        assertEquals(1, DisplayWidth.of("é"));
+        assertEquals(2, DisplayWidth.of("👨‍💻"));
+    }
+
+    @Test
+    public void testTabsReachTheNextTabStop() {
+        assertEquals(8, DisplayWidth.of("\t"));
+        assertEquals(8, DisplayWidth.of("abc\t"));
+        assertEquals(17, DisplayWidth.of("abcdefgh\tx"));
+        assertEquals(10, DisplayWidth.of("ab\ncd\t"));
+    }
+
+    @Test
+    public void testCachedMatchesMeasured() {
+        String prompt = "\033[1;31mbash: \033[0m\033[1;33mproject \033[0m";
+        assertEquals(DisplayWidth.of(prompt), DisplayWidth.cached(prompt));
+        assertEquals(DisplayWidth.of(prompt), DisplayWidth.cached(prompt));
+    }
+}
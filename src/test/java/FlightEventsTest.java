@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+public class FlightEventsTest {
+
+    @After
+    public void tearDown() throws IOException {
+        if (FlightEvents.isRecording()) {
+            Path file = Files.createTempFile("flight", ".jfr");
+            FlightEvents.stop(file);
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testNothingToStopWithoutRecording() throws IOException {
+        assertFalse(FlightEvents.isRecording());
+        assertNull(FlightEvents.dump(null));
+        assertNull(FlightEvents.stop(null));
+    }
+
+    @Test
+    public void testRecordsApplicationEvents() throws IOException {
+        assertTrue(FlightEvents.start());
+        assertFalse(FlightEvents.start());
+        FlightEvents.CommandDispatch dispatch = new FlightEvents.CommandDispatch();
+        dispatch.begin();
+        dispatch.end();
+        dispatch.command = "user stats";
+        dispatch.path = "user stats";
+        dispatch.status = "OK";
+        dispatch.commit();
+        FlightEvents.Persist persist = new FlightEvents.Persist();
+        persist.begin();
+        persist.end();
+        persist.file = ".USER_DATA.json";
+        persist.bytes = 42;
+        persist.commit();
+        Path file = Files.createTempFile("flight", ".jfr");
+        assertEquals(file, FlightEvents.stop(file));
+        assertFalse(FlightEvents.isRecording());
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent recorded = events.stream()
+                .filter(event -> event.getEventType().getName().equals("devtools.CommandDispatch"))
+                .findFirst().orElseThrow();
+        assertEquals("user stats", recorded.getString("path"));
+        assertEquals("OK", recorded.getString("status"));
+        assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("devtools.Persist")
+                && event.getLong("bytes") == 42));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testDumpKeepsRecording() throws IOException {
+        FlightEvents.start();
+        Path file = Files.createTempFile("flight", ".jfr");
+        assertEquals(file, FlightEvents.dump(file));
+        assertTrue(FlightEvents.isRecording());
+        assertTrue(Files.size(file) > 0);
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitRepoCacheTest {
+
+    private Path root;
+    private Path head;
+    private long now;
+    private GitRepoCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("repo").toRealPath();
+        Files.createDirectories(root.resolve("src/main"));
+        Files.createDirectories(root.resolve(".git"));
+        head = root.resolve(".git/HEAD");
+        Files.writeString(head, "ref: refs/heads/main\n");
+        cache = new GitRepoCache(1000, 5000, () -> now);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void checkout(String text) throws IOException {
+        Files.writeString(head, text);
+        Files.setLastModifiedTime(head, FileTime.fromMillis(Files.getLastModifiedTime(head).toMillis() + 1000));
+    }
+
+    @Test
+    public void testFindsRepositoryFromSubdirectory() {
+        GitRepoCache.RepoInfo repo = cache.lookup(root.resolve("src/main"));
+        assertEquals(root, repo.root());
+        assertEquals("main", repo.branch());
+        assertEquals(repo, cache.lookup(root));
+    }
+
+    @Test
+    public void testBranchIsReadAgainOnlyAfterInterval() throws IOException {
+        assertEquals("main", cache.lookup(root).branch());
+        checkout("ref: refs/heads/feature\n");
+        now += 999;
+        assertEquals("main", cache.lookup(root).branch());
+        now += 1;
+        assertEquals("feature", cache.lookup(root).branch());
+    }
+
+    @Test
+    public void testDetachedHeadHasNoBranch() throws IOException {
+        checkout("0123456789abcdef0123456789abcdef01234567\n");
+        assertEquals("", cache.lookup(root).branch());
+    }
+
+    @Test
+    public void testMissingRepositoryIsRemembered() throws IOException {
+        Path outside = Files.createTempDirectory("plain").toRealPath();
+        try {
+            assertNull(cache.lookup(outside));
+            Files.createDirectories(outside.resolve(".git"));
+            Files.writeString(outside.resolve(".git/HEAD"), "ref: refs/heads/new\n");
+            now += 4999;
+            assertNull(cache.lookup(outside));
+            now += 1;
+            assertEquals("new", cache.lookup(outside).branch());
+        } finally {
+            Files.delete(outside.resolve(".git/HEAD"));
+            Files.delete(outside.resolve(".git"));
+            Files.delete(outside);
+        }
+    }
+
+    @Test
+    public void testDeletedRepositoryIsForgotten() throws IOException {
+        Path sub = root.resolve("src/main");
+        assertEquals(root, cache.lookup(sub).root());
+        Files.delete(head);
+        now += 1000;
+        assertNull(cache.lookup(sub));
+    }
+
+    @Test
+    public void testUnreadableHeadHasNoBranch() throws IOException {
+        Files.delete(head);
+        Files.createDirectories(head);
+        Path sub = root.resolve("src/main");
+        assertEquals(new GitRepoCache.RepoInfo(root, ""), cache.lookup(sub));
+        now += 1000;
+        assertEquals(new GitRepoCache.RepoInfo(root, ""), cache.lookup(sub));
+    }
+}
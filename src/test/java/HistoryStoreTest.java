@@ -0,0 +1,101 @@
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistoryStoreTest {
+
+    private Path history;
+    private Path index;
+    private HistoryStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        history = Files.createTempFile("history", ".txt");
+        index = Path.of(history + ".idx");
+        store = new HistoryStore(history, index);
+        append("2025-01-01_09-00-00 cd /",
+                "2025-01-01_09-30-00 git status",
+                "2025-01-02_10-00-00 git commit -m 'x'",
+                "2025-01-03_11-15-00 ls -la",
+                "2025-01-03_11-16-00 gradle build");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        Files.deleteIfExists(history);
+        Files.deleteIfExists(index);
+    }
+
+    private void append(String... lines) throws IOException {
+        Files.writeString(history, String.join("\n", lines) + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void testTail() throws IOException {
+        assertEquals(List.of("2025-01-03_11-15-00 ls -la", "2025-01-03_11-16-00 gradle build"), store.tail(2));
+        assertEquals(5, store.tail(50).size());
+    }
+
+    @Test
+    public void testBetween() throws IOException {
+        List<String> lines = store.between(HistoryStore.parseFrom("2025-01-01_09-10"), HistoryStore.parseTo("2025-01-02"));
+        assertEquals(List.of("2025-01-01_09-30-00 git status", "2025-01-02_10-00-00 git commit -m 'x'"), lines);
+    }
+
+    @Test
+    public void testWithPrefix() throws IOException {
+        assertEquals(List.of("2025-01-01_09-30-00 git status", "2025-01-02_10-00-00 git commit -m 'x'"), store.withPrefix("git", 10));
+        assertEquals(List.of("2025-01-02_10-00-00 git commit -m 'x'"), store.withPrefix("git c", 10));
+        assertEquals(List.of("2025-01-03_11-16-00 gradle build"), store.withPrefix("g", 1));
+    }
+
+    @Test
+    public void testContaining() throws IOException {
+        assertEquals(List.of("2025-01-03_11-15-00 ls -la"), store.containing("-la", 10));
+        assertEquals(List.of(), store.containing("missing", 10));
+    }
+
+    @Test
+    public void testAppendedLinesAreIndexed() throws IOException {
+        assertEquals(5, store.size());
+        append("2025-01-04_08-00-00 echo 你好");
+        assertEquals(List.of("2025-01-04_08-00-00 echo 你好"), store.tail(1));
+        assertEquals(6, store.size());
+    }
+
+    @Test
+    public void testIndexIsReusedAfterReopen() throws IOException {
+        assertEquals(5, store.size());
+        store.close();
+        long indexSize = Files.size(index);
+        assertEquals(5, new HistoryStore(history, index).size());
+        assertEquals(indexSize, Files.size(index));
+    }
+
+    @Test
+    public void testPartialLineIsNotIndexed() throws IOException {
+        Files.writeString(history, "2025-01-05_00-00-00 unfinished", StandardOpenOption.APPEND);
+        assertEquals(5, store.size());
+        Files.writeString(history, "\n", StandardOpenOption.APPEND);
+        assertEquals(List.of("2025-01-05_00-00-00 unfinished"), store.tail(1));
+    }
+
+    @Test
+    public void testReplacedHistoryIsReindexed() throws IOException {
+        assertEquals(5, store.size());
+        store.reset();
+        Files.writeString(history, "plain line\n");
+        assertEquals(List.of("plain line"), store.withPrefix("plain", 10));
+    }
+}
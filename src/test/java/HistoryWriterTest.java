@@ -0,0 +1,78 @@
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistoryWriterTest {
+
+    private Path file;
+    private HistoryWriter writer;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("history", ".txt");
+        Files.delete(file);
+        writer = new HistoryWriter(file, 50);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testFlushWritesQueuedLinesInOrder() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            writer.append("command " + i);
+        }
+        writer.flush();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(5000, lines.size());
+        assertEquals("command 0", lines.get(0));
+        assertEquals("command 4999", lines.get(4999));
+    }
+
+    @Test
+    public void testLinesAreCommittedOnInterval() throws InterruptedException, IOException {
+        writer.append("echo hi");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Files.exists(file) || Files.size(file) == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("echo hi"), Files.readAllLines(file));
+    }
+
+    @Test
+    public void testNonAsciiLines() throws IOException {
+        writer.append("echo 你好 é");
+        writer.flush();
+        assertEquals(List.of("echo 你好 é"), Files.readAllLines(file));
+    }
+
+    @Test
+    public void testFileIsReopenedAfterCloseFile() throws IOException {
+        writer.append("old");
+        writer.closeFile();
+        Files.delete(file);
+        writer.append("new");
+        writer.flush();
+        assertEquals(List.of("new"), Files.readAllLines(file));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAppendAfterCloseFails() throws IOException {
+        writer.close();
+        assertFalse(Files.exists(file));
+        writer.append("late");
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class JobTableTest {
+
+    private static Process sh(String command) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder("sh", "-c", command);
+        builder.redirectErrorStream(true);
+        return builder.start();
+    }
+
+    @Test
+    public void testCapturesOutputAndExitCode() throws IOException {
+        JobTable table = new JobTable(1024, 10);
+        JobTable.Job job = table.start("echo hi; exit 3", sh("echo hi; exit 3"));
+        assertEquals(1, job.getId());
+        assertEquals(3, table.waitFor(job));
+        assertEquals("hi\n", job.getOutput());
+        assertEquals(JobTable.State.FAILED, job.getState());
+        assertEquals("[1] Exit 3  echo hi; exit 3", job.toString());
+    }
+
+    @Test
+    public void testFinishedJobsAreReportedOnce() throws IOException {
+        JobTable table = new JobTable(1024, 10);
+        JobTable.Job job = table.start("true", sh("true"));
+        job.getCompletion().join();
+        assertEquals(List.of(job), table.drainFinished());
+        assertTrue(table.drainFinished().isEmpty());
+        assertEquals(JobTable.State.DONE, job.getState());
+    }
+
+    @Test
+    public void testWaitDropsNotice() throws IOException {
+        JobTable table = new JobTable(1024, 10);
+        JobTable.Job first = table.start("sleep 0.2", sh("sleep 0.2"));
+        JobTable.Job second = table.start("sleep 0.2; false", sh("sleep 0.2; false"));
+        assertEquals(List.of(first, second), table.waitForAll());
+        assertEquals(JobTable.State.DONE, first.getState());
+        assertEquals(JobTable.State.FAILED, second.getState());
+        assertTrue(table.drainFinished().isEmpty());
+    }
+
+    @Test
+    public void testKillStopsRunningJob() throws IOException {
+        JobTable table = new JobTable(1024, 10);
+        JobTable.Job job = table.start("sleep 30", sh("sleep 30"));
+        assertSame(job, table.getLastRunning());
+        long start = System.nanoTime();
+        assertTrue(table.kill(job));
+        table.waitFor(job);
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 5000);
+        assertEquals(JobTable.State.KILLED, job.getState());
+        assertFalse(table.kill(job));
+        assertNull(table.getLastRunning());
+    }
+
+    @Test
+    public void testForegroundPrintsOutput() throws IOException {
+        JobTable table = new JobTable(1024, 10);
+        JobTable.Job job = table.start("echo one; sleep 0.2; echo two", sh("echo one; sleep 0.2; echo two"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, table.foreground(job, new PrintStream(out, true, StandardCharsets.UTF_8)));
+        assertEquals("one\ntwo\n", out.toString(StandardCharsets.UTF_8));
+        assertTrue(table.drainFinished().isEmpty());
+    }
+
+    @Test
+    public void testOutputKeepsEnd() throws IOException {
+        JobTable table = new JobTable(4, 10);
+        JobTable.Job job = table.start("printf abcdefgh", sh("printf abcdefgh"));
+        table.waitFor(job);
+        assertEquals("efgh", job.getOutput());
+    }
+
+    @Test
+    public void testOldFinishedJobsArePruned() throws IOException {
+        JobTable table = new JobTable(1024, 2);
+        for (int i = 0; i < 4; i++) {
+            table.waitFor(table.start("true", sh("true")));
+        }
+        assertEquals(2, table.list().size());
+        assertEquals(3, table.list().get(0).getId());
+    }
+}
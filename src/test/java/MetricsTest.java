@@ -0,0 +1,78 @@
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Before
+    public void setUp() {
+        Metrics.reset();
+    }
+
+    @Test
+    public void testBucketsKeepRelativeError() {
+        for (long value = 1; value < (1L << 40); value = value * 3 + 7) {
+            int index = Metrics.Histogram.index(value);
+            long high = Metrics.Histogram.highestEquivalent(index);
+            assertTrue(value + " > " + high, value <= high);
+            assertTrue(value + " vs " + high, high - value <= Math.max(1, value / 32));
+            assertTrue(index == 0 || Metrics.Histogram.highestEquivalent(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        Metrics.Histogram histogram = Metrics.histogram("test");
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000, histogram.getPercentile(50), 500_000 / 32);
+        assertEquals(990_000, histogram.getPercentile(99), 990_000 / 32);
+        assertEquals(500_500, histogram.getMean());
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        assertEquals(0, Metrics.histogram("empty").getPercentile(99));
+        assertEquals(0, Metrics.histogram("empty").getMean());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    Metrics.histogram("shared").record(i);
+                    Metrics.count("shared");
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(40000, Metrics.histogram("shared").getCount());
+        assertEquals(40000, Metrics.getCount("shared"));
+    }
+
+    @Test
+    public void testReportAndJSON() {
+        Metrics.count("commands");
+        Metrics.histogram("parse").record(2_000_000);
+        List<String> report = Metrics.report();
+        assertEquals("Counters:", report.get(0));
+        assertTrue(report.get(1), report.get(1).matches("\\s+commands\\s+1"));
+        assertTrue(report.get(3), report.get(3).matches("\\s+parse\\s+1\\s+2\\.0\\d\\d\\s+2\\.0\\d\\d\\s+2\\.0\\d\\d\\s+2\\.000"));
+        JSONObject json = Metrics.toJSON();
+        assertEquals(1, json.getJSONObject("counters").getLong("commands"));
+        assertEquals(2_000_000, json.getJSONObject("histograms").getJSONObject("parse").getLong("max"));
+    }
+}
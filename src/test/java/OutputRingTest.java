@@ -0,0 +1,78 @@
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class OutputRingTest {
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testKeepsEverythingUnderCapacity() {
+        OutputRing ring = new OutputRing(1000);
+        for (int i = 0; i < 100; i++) {
+            ring.write(bytes("line " + i + "\n"), 0, bytes("line " + i + "\n").length);
+        }
+        assertFalse(ring.isTruncated());
+        assertTrue(ring.toString().startsWith("line 0\nline 1\n"));
+        assertTrue(ring.toString().endsWith("line 99\n"));
+    }
+
+    @Test
+    public void testKeepsLastBytes() {
+        OutputRing ring = new OutputRing(8);
+        ring.write(bytes("abcdef"), 0, 6);
+        ring.write(bytes("ghij"), 0, 4);
+        assertEquals("cdefghij", ring.toString());
+        ring.write('k');
+        assertEquals("defghijk", ring.toString());
+        assertEquals(11, ring.getTotal());
+        assertTrue(ring.isTruncated());
+    }
+
+    @Test
+    public void testLargeWriteKeepsItsEnd() {
+        OutputRing ring = new OutputRing(4);
+        ring.write(bytes("ab"), 0, 2);
+        ring.write(bytes("0123456789"), 2, 8);
+        assertArrayEquals(bytes("6789"), ring.toByteArray());
+        ring.write(bytes("x"), 0, 1);
+        assertEquals("789x", ring.toString());
+    }
+
+    @Test
+    public void testExactlyFull() {
+        OutputRing ring = new OutputRing(4);
+        ring.write(bytes("ab"), 0, 2);
+        ring.write(bytes("cd"), 0, 2);
+        assertFalse(ring.isTruncated());
+        assertEquals("abcd", ring.toString());
+        ring.write(bytes("e"), 0, 1);
+        assertEquals("bcde", ring.toString());
+    }
+
+    @Test
+    public void testCutCharacterIsLeftOut() {
+        OutputRing ring = new OutputRing(5);
+        ring.write(bytes("ééé"), 0, 6);
+        assertEquals("éé", ring.toString());
+    }
+
+    @Test
+    public void testGrowsPastInitialSize() {
+        OutputRing ring = new OutputRing(10_000);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            byte[] line = bytes(i + "\n");
+            ring.write(line, 0, line.length);
+            expected.append(i).append('\n');
+        }
+        String all = expected.toString();
+        assertEquals(all.substring(all.length() - 10_000), ring.toString());
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShellSessionTest {
+
+    private ShellSession session;
+    private String directory;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private OutputRing capture;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = System.getProperty("user.dir");
+        session = new ShellSession("sh", directory);
+    }
+
+    @After
+    public void tearDown() {
+        session.close();
+    }
+
+    private ShellSession.Result run(String command) throws IOException, InterruptedException {
+        capture = new OutputRing(1024);
+        ShellSession.Result result = session.run(command, directory, new PrintStream(out, true), new PrintStream(err, true), capture);
+        directory = result.directory();
+        return result;
+    }
+
+    @Test
+    public void testStateIsKeptBetweenCommands() throws Exception {
+        run("GREETING=hello");
+        run("greet() { echo \"$GREETING $1\"; }");
+        ShellSession.Result result = run("greet world");
+        assertEquals(0, result.exitCode());
+        assertEquals("hello world\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExitCodeAndCapture() throws Exception {
+        ShellSession.Result result = run("echo oops >&2; false");
+        assertEquals(1, result.exitCode());
+        assertEquals("oops\n", capture.toString());
+        assertEquals("oops\n", err.toString(StandardCharsets.UTF_8));
+        assertEquals(0, run("true").exitCode());
+    }
+
+    @Test
+    public void testOutputWithoutNewline() throws Exception {
+        run("printf 'no newline'");
+        run("printf '\\002DTT'");
+        assertEquals("no newline\002DTT", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDirectoryFollowsShell() throws Exception {
+        Path temp = Files.createTempDirectory("shell").toRealPath();
+        try {
+            assertEquals(temp.toString(), run("cd " + ShellSession.quote(temp.toString())).directory());
+            run("pwd");
+            assertEquals(temp + "\n", out.toString(StandardCharsets.UTF_8));
+            directory = "/";
+            assertEquals("/", run("true").directory());
+        } finally {
+            Files.delete(temp);
+        }
+    }
+
+    @Test
+    public void testLargeOutputIsStreamedAndCaptureIsBounded() throws Exception {
+        assertEquals(0, run("seq 1 100000").exitCode());
+        assertEquals(588895, out.size());
+        assertEquals(588895, capture.getTotal());
+        assertTrue(capture.toString().endsWith("\n99999\n100000\n"));
+        assertEquals(1024, capture.toByteArray().length);
+    }
+
+    @Test
+    public void testSyntaxErrorDoesNotHang() throws Exception {
+        assertTrue(run("echo \"open").exitCode() != 0);
+        assertEquals(0, run("echo \"it's\" 'a \"test\"'").exitCode());
+        assertEquals("it's a \"test\"\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExitEndsSession() throws Exception {
+        assertEquals(3, run("exit 3").exitCode());
+        assertFalse(session.isAlive());
+    }
+}
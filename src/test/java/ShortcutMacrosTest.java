@@ -0,0 +1,135 @@
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class ShortcutMacrosTest {
+
+    private static List<String> texts(ShortcutMacros.Command command) {
+        return command.tokens().stream().map(CommandLexer.Token::text).toList();
+    }
+
+    @Test
+    public void testCommandsAreSplitOnSeparator() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("both", "user data get userdata ; terminal \"echo ;\"");
+        List<ShortcutMacros.Command> commands = macros.get("both").expand(List.of());
+        assertEquals(2, commands.size());
+        assertEquals("user data get userdata", commands.get(0).line());
+        assertEquals(List.of("user", "data", "get", "userdata"), texts(commands.get(0)));
+        assertEquals(List.of("terminal", "echo ;"), texts(commands.get(1)));
+    }
+
+    @Test
+    public void testArgumentsFillSlots() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("greet", "terminal echo $2-$1 \"$1 x\"");
+        assertEquals(2, macros.get("greet").getArity());
+        ShortcutMacros.Command command = macros.get("greet").expand(List.of("a b", "c")).get(0);
+        assertEquals(List.of("terminal", "echo", "c-a b", "a b x"), texts(command));
+        assertEquals("terminal echo c-'a b' \"a b x\"", command.line());
+        CommandLexer.Token echo = command.tokens().get(1);
+        assertEquals("echo c-'a b' \"a b x\"", command.line().substring(echo.start()));
+    }
+
+    @Test
+    public void testSpreadMakesOneTokenPerArgument() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("run", "user data get userdata ; terminal $@");
+        List<ShortcutMacros.Command> commands = macros.get("run").expand(List.of("ls", "-la", "my dir"));
+        assertEquals(List.of("terminal", "ls", "-la", "my dir"), texts(commands.get(1)));
+        assertEquals("terminal ls -la 'my dir'", commands.get(1).line());
+        assertEquals(List.of("terminal"), texts(macros.get("run").expand(List.of()).get(1)));
+    }
+
+    @Test
+    public void testNestedShortcutsExpandInPlace() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("inner", "terminal echo $1");
+        macros.define("outer", "user data get userdata ; ss inner $2 ; terminal end");
+        List<ShortcutMacros.Command> commands = macros.get("outer").expand(List.of("x", "y"));
+        assertEquals(3, commands.size());
+        assertEquals("terminal echo y", commands.get(1).line());
+        macros.define("inner", "terminal printf $1");
+        assertEquals("terminal printf y", macros.get("outer").expand(List.of("x", "y")).get(1).line());
+    }
+
+    @Test
+    public void testTerminalCommandKeepsSeparators() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("build", "user data get userdata ; terminal cd $1 ; make");
+        List<ShortcutMacros.Command> commands = macros.get("build").expand(List.of("out"));
+        assertEquals(2, commands.size());
+        assertEquals("terminal cd out ; make", commands.get(1).line());
+    }
+
+    @Test
+    public void testSingleQuotesKeepDollarSigns() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("col", "terminal awk '{print $1}' \"$1\" \"it's $2\"");
+        assertEquals(2, macros.get("col").getArity());
+        ShortcutMacros.Command command = macros.get("col").expand(List.of("f", "x")).get(0);
+        assertEquals("terminal awk '{print $1}' \"f\" \"it's x\"", command.line());
+        assertEquals(List.of("terminal", "awk", "{print $1}", "f", "it's x"), texts(command));
+    }
+
+    @Test
+    public void testCycleIsRejected() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("b", "terminal ls");
+        macros.define("a", "ss b");
+        try {
+            macros.define("b", "ss a");
+            fail("cycle accepted");
+        } catch (ShortcutMacros.MacroException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("b -> a -> b"));
+        }
+        assertEquals("terminal ls", macros.get("b").getDefinition());
+        assertNotNull(macros.get("a"));
+    }
+
+    @Test
+    public void testUnknownReferenceIsRejected() {
+        ShortcutMacros macros = new ShortcutMacros();
+        try {
+            macros.define("a", "ss missing");
+            fail("unknown shortcut accepted");
+        } catch (ShortcutMacros.MacroException e) {
+            assertEquals("Unknown shortcut: missing", e.getMessage());
+        }
+        assertNull(macros.get("a"));
+    }
+
+    @Test
+    public void testLoadKeepsBrokenShortcuts() {
+        ShortcutMacros macros = new ShortcutMacros();
+        Map<String, String> errors = macros.load(Map.of("ok", "terminal ls", "loop", "ss loop", "bad", "terminal \"open"));
+        assertEquals(2, errors.size());
+        assertNotNull(macros.get("ok"));
+        assertNull(macros.get("loop"));
+        assertTrue(macros.getError("loop").startsWith("Shortcut cycle"));
+        assertNotNull(macros.getError("bad"));
+    }
+
+    @Test
+    public void testRemoveReportsBrokenCallers() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("base", "terminal ls");
+        macros.define("mid", "ss base");
+        macros.define("top", "ss mid");
+        assertEquals(List.of("mid", "top"), macros.remove("base").stream().sorted().toList());
+        assertNull(macros.get("top"));
+    }
+
+    @Test(expected = ShortcutMacros.MacroException.class)
+    public void testMissingArgumentsAreRejected() {
+        ShortcutMacros macros = new ShortcutMacros();
+        macros.define("two", "terminal echo $1 $2");
+        macros.get("two").expand(List.of("one"));
+    }
+}
@@ -0,0 +1,125 @@
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class StartupCommandRunnerTest {
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testParseOptions() {
+        StartupCommandRunner.Entry entry = StartupCommandRunner.parse("[name=fetch after=env,cd serial] terminal git fetch");
+        assertEquals("fetch", entry.name());
+        assertEquals("terminal git fetch", entry.command());
+        assertEquals(List.of("env", "cd"), entry.after());
+        assertTrue(entry.barrier());
+    }
+
+    @Test
+    public void testDefaultOrdering() {
+        assertTrue(StartupCommandRunner.parse("terminal cd /").barrier());
+        assertTrue(StartupCommandRunner.parse("user text textbuffer enable").barrier());
+        assertFalse(StartupCommandRunner.parse("terminal git fetch").barrier());
+        assertFalse(StartupCommandRunner.parse("[parallel] terminal git fetch").barrier());
+        assertTrue(StartupCommandRunner.parse("[serial] terminal git fetch").barrier());
+    }
+
+    @Test
+    public void testIndependentCommandsRunConcurrently() {
+        List<String> commands = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            commands.add("terminal sleep " + i);
+        }
+        long start = System.nanoTime();
+        new StartupCommandRunner(4).run(commands, command -> {
+            pause(300);
+            return true;
+        });
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1000);
+    }
+
+    @Test
+    public void testBarriersKeepOrder() {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        new StartupCommandRunner(4).run(List.of("terminal a", "terminal b", "terminal cd /", "terminal c", "terminal d"), command -> {
+            events.add("start " + command);
+            pause(command.endsWith("a") ? 100 : 10);
+            events.add("end " + command);
+            return true;
+        });
+        int cdStart = events.indexOf("start terminal cd /");
+        assertTrue(events.indexOf("end terminal a") < cdStart);
+        assertTrue(events.indexOf("end terminal b") < cdStart);
+        assertTrue(events.indexOf("end terminal cd /") < events.indexOf("start terminal c"));
+        assertTrue(events.indexOf("end terminal cd /") < events.indexOf("start terminal d"));
+    }
+
+    @Test
+    public void testAfterWaitsForNamedEntry() {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        new StartupCommandRunner(4).run(List.of("[name=env] terminal env", "[after=env] terminal use"), command -> {
+            pause(command.endsWith("env") ? 100 : 0);
+            return events.add(command);
+        });
+        assertEquals(List.of("terminal env", "terminal use"), events);
+    }
+
+    @Test
+    public void testFailureDoesNotStopOthers() {
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        try {
+            new StartupCommandRunner(2).run(List.of("terminal bad", "terminal good"), command -> {
+                if (command.endsWith("bad")) {
+                    throw new IllegalStateException("bad");
+                }
+                return ran.add(command);
+            });
+        } catch (IllegalStateException e) {
+            assertEquals("bad", e.getMessage());
+        }
+        assertEquals(List.of("terminal good"), ran);
+    }
+
+    @Test
+    public void testStateChangingCommandsNeverRunInParallel() {
+        assertTrue(StartupCommandRunner.parse("[parallel] user shortcut list").barrier());
+        assertTrue(StartupCommandRunner.parse("[parallel] terminal cd /").barrier());
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        new StartupCommandRunner(4).run(List.of("[parallel] user a", "[parallel] user b"), command -> {
+            events.add("start " + command);
+            pause(command.endsWith("a") ? 100 : 0);
+            return events.add("end " + command);
+        });
+        assertEquals(List.of("start user a", "end user a", "start user b", "end user b"), events);
+    }
+
+    @Test
+    public void testFailedCommandsAreReturnedInOrder() {
+        List<String> failed = new StartupCommandRunner(4).run(List.of("terminal slow bad", "terminal good", "terminal bad"),
+                command -> {
+                    pause(command.contains("slow") ? 100 : 0);
+                    return !command.endsWith("bad");
+                });
+        assertEquals(List.of("terminal slow bad", "terminal bad"), failed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependencyRunsNothing() {
+        new StartupCommandRunner(2).run(List.of("terminal a", "[after=later] terminal b", "[name=later] terminal c"), command -> {
+            throw new AssertionError("should not run");
+        });
+    }
+}
@@ -0,0 +1,78 @@
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class StartupPipelineTest {
+
+    @Test
+    public void testIndependentPhasesRunConcurrently() throws InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Runnable waitForOther = () -> {
+            bothStarted.countDown();
+            try {
+                assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        StartupPipeline pipeline = new StartupPipeline(2);
+        pipeline.phase("a", waitForOther).phase("b", waitForOther);
+        pipeline.run();
+        assertEquals(0, bothStarted.getCount());
+        assertEquals(2, pipeline.getTimings().size());
+    }
+
+    @Test
+    public void testDependenciesRunFirst() {
+        StringBuffer order = new StringBuffer();
+        StartupPipeline pipeline = new StartupPipeline(4);
+        pipeline.phase("load", () -> order.append("load "))
+                .phase("history", () -> order.append("history "))
+                .phase("commands", () -> order.append("commands "), "load", "history");
+        pipeline.run();
+        assertTrue(order.toString().endsWith("commands "));
+        assertTrue(pipeline.getForegroundNanos() >= 0);
+    }
+
+    @Test
+    public void testRunDoesNotWaitForBackgroundPhases() {
+        CountDownLatch release = new CountDownLatch(1);
+        StartupPipeline pipeline = new StartupPipeline(2);
+        pipeline.phase("load", () -> {
+        }).background("network", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "load");
+        pipeline.run();
+        assertFalse(pipeline.completion("network").isDone());
+        release.countDown();
+        pipeline.completion("network").join();
+        List<StartupPipeline.Timing> timings = pipeline.getTimings();
+        assertEquals("network", timings.get(1).phase());
+        assertTrue(timings.get(1).background());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testForegroundFailureIsThrown() {
+        StartupPipeline pipeline = new StartupPipeline(1);
+        pipeline.phase("broken", () -> {
+            throw new IllegalStateException("broken");
+        });
+        pipeline.run();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependencyIsRejected() {
+        new StartupPipeline(1).phase("commands", () -> {
+        }, "load");
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.List;
+
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class TerminalCacheTest {
+
+    private TerminalCache cache;
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void testEmptyCache() {
+        cache = new TerminalCache("cache-test", 1024, 1024, 4096);
+        assertEquals("", cache.last());
+        assertEquals(0, cache.size());
+        assertEquals(List.of(), cache.tail(5));
+    }
+
+    @Test
+    public void testOldEntriesSpillToDisk() {
+        cache = new TerminalCache("cache-test", 1024, 512, 1024 * 1024);
+        for (int i = 0; i < 1000; i++) {
+            cache.add("entry " + i);
+        }
+        assertTrue(cache.getMemoryBytes() <= 1024);
+        assertTrue(cache.getDiskBytes() > 0);
+        assertEquals(1000, cache.size());
+        assertEquals("entry 999", cache.last());
+        assertEquals(List.of("entry 0", "entry 1"), cache.tail(1000).subList(0, 2));
+        assertEquals(List.of("entry 997", "entry 998", "entry 999"), cache.tail(3));
+    }
+
+    @Test
+    public void testDiskBudgetDropsOldestSegments() {
+        cache = new TerminalCache("cache-test", 256, 256, 1024);
+        for (int i = 0; i < 1000; i++) {
+            cache.add("entry " + i);
+        }
+        assertTrue(cache.getDiskBytes() <= 1024 + 256);
+        assertTrue(cache.size() < 1000);
+        List<String> all = cache.tail(1000);
+        assertEquals("entry 999", all.get(all.size() - 1));
+        assertEquals(cache.size(), all.size());
+    }
+
+    @Test
+    public void testNewestEntryStaysInMemory() {
+        cache = new TerminalCache("cache-test", 64, 1024, 4096);
+        String large = "x".repeat(1000);
+        cache.add("small");
+        cache.add(large);
+        assertEquals(large, cache.last());
+        assertEquals(List.of("small", large), cache.tail(2));
+    }
+
+    @Test
+    public void testShrinkingBudgetAndClear() {
+        cache = new TerminalCache("cache-test", 1024 * 1024, 1024, 1024 * 1024);
+        for (int i = 0; i < 100; i++) {
+            cache.add("entry " + i);
+        }
+        assertEquals(0, cache.getDiskBytes());
+        cache.setMemoryBudget(200);
+        assertTrue(cache.getMemoryBytes() <= 200);
+        assertEquals(100, cache.tail(100).size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getDiskBytes());
+    }
+}
@@ -0,0 +1,50 @@
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class TerminalGeometryTest {
+
+    @Test
+    public void testPublishNotifiesListeners() {
+        List<String> sizes = new ArrayList<>();
+        TerminalGeometry.ResizeListener listener = (width, height) -> sizes.add(width + "x" + height);
+        TerminalGeometry.addResizeListener(listener);
+        try {
+            sizes.clear();
+            TerminalGeometry.publish(132, 43);
+            TerminalGeometry.publish(132, 43);
+            TerminalGeometry.publish(100, 43);
+        } finally {
+            TerminalGeometry.removeResizeListener(listener);
+        }
+        assertEquals(List.of("132x43", "100x43"), sizes);
+        assertEquals(100, TerminalGeometry.getWidth());
+        assertEquals(43, TerminalGeometry.getHeight());
+        assertTrue(TerminalGeometry.isKnown());
+    }
+
+    @Test
+    public void testPublishIgnoresInvalidSize() {
+        TerminalGeometry.publish(90, 30);
+        TerminalGeometry.publish(0, 30);
+        TerminalGeometry.publish(90, -1);
+        assertEquals(90, TerminalGeometry.getWidth());
+        assertEquals(30, TerminalGeometry.getHeight());
+    }
+
+    @Test
+    public void testSetWidthFollowsResize() {
+        int width = TextEngine.MAX_LINE_WIDTH;
+        try {
+            assertTrue(TextEngine.setWidth().startsWith("Terminal width: "));
+            TerminalGeometry.publish(61, 20);
+            assertEquals(61, TextEngine.MAX_LINE_WIDTH);
+        } finally {
+            TextEngine.MAX_LINE_WIDTH = width;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import static org.junit.Assert.assertEquals;
@@ -63,25 +66,85 @@ public class TerminalPassthroughTest {
     }
 
     @Test
-    public void testExecuteCommand() throws InterruptedException {
-        Thread commandThread = terminalPassthrough.executeCommand("echo Hello, World!", true);
-        commandThread.join();
+    public void testExecuteCommand() {
+        TerminalPassthrough.CommandResult result = terminalPassthrough.executeCommand("echo Hello, World!", true).join();
+        assertEquals(0, result.exitCode());
         assertTrue(outContent.toString().contains("Hello, World!"));
     }
 
     @Test
-    public void testExecuteInvalidCommand() throws InterruptedException {
-        Thread commandThread = terminalPassthrough.executeCommand("invalidcommand", true);
-        commandThread.join();
-        assertTrue(outContent.toString().contains("Error executing command"));
+    public void testExecuteInvalidCommand() {
+        TerminalPassthrough.CommandResult result = terminalPassthrough.executeCommand("invalidcommand", true).join();
+        assertEquals(127, result.exitCode());
+        assertTrue(result.output().contains("not found"));
     }
 
     @Test
-    public void testChangeDirectory() throws InterruptedException {
+    public void testCommandOutputIsCaptured() {
+        TerminalPassthrough.CommandResult result = terminalPassthrough.executeCommand("echo oops >&2; exit 3", false).join();
+        assertEquals(3, result.exitCode());
+        assertEquals("oops\n", result.output());
+    }
+
+    @Test
+    public void testLargeOutputIsStreamedAndCaptureIsBounded() {
+        TerminalPassthrough.CommandResult result = terminalPassthrough.executeCommand("seq 1 100000; echo done", false).join();
+        assertEquals(0, result.exitCode());
+        assertTrue(outContent.toString().contains("\n50000\n"));
+        assertTrue(result.output().length() <= 8 * 1024);
+        assertTrue(result.output().contains("99999\n"));
+        assertTrue(result.output().contains("done\n"));
+        assertEquals(result.output(), terminalPassthrough.returnMostRecentTerminalOutput());
+    }
+
+    @Test
+    public void testUncapturedOutputKeepsErrors() {
+        terminalPassthrough.setCaptureOutput(false);
+        TerminalPassthrough.CommandResult result = terminalPassthrough.executeCommand("echo out; echo err >&2", false).join();
+        assertEquals(0, result.exitCode());
+        assertEquals("err\n", result.output());
+    }
+
+    @Test
+    public void testChangeDirectory() {
         String initialDirectory = terminalPassthrough.returnCurrentTerminalPosition();
-        Thread commandThread = terminalPassthrough.executeCommand("cd /", true);
-        commandThread.join();
+        CompletableFuture<TerminalPassthrough.CommandResult> result = terminalPassthrough.executeCommand("cd /", true);
+        assertTrue(result.isDone());
+        assertEquals(0, result.join().exitCode());
         String newDirectory = terminalPassthrough.returnCurrentTerminalPosition();
         assertNotEquals(initialDirectory, newDirectory);
     }
+
+    @Test
+    public void testChangeToMissingDirectory() {
+        TerminalPassthrough.CommandResult result = terminalPassthrough.executeCommand("cd no-such-directory", false).join();
+        assertEquals(-1, result.exitCode());
+        assertEquals("No such file or directory", result.output());
+    }
+
+    @Test
+    public void testPersistentShellKeepsState() {
+        assertTrue(terminalPassthrough.setPersistentShell(true));
+        try {
+            assertEquals(0, terminalPassthrough.executeCommand("export GREETING=hello", false).join().exitCode());
+            assertEquals(0, terminalPassthrough.executeCommand("cd /", false).join().exitCode());
+            TerminalPassthrough.CommandResult result = terminalPassthrough.executeCommand("test \"$GREETING$PWD\" = hello/", false).join();
+            assertEquals(0, result.exitCode());
+        } finally {
+            terminalPassthrough.setPersistentShell(false);
+        }
+        assertFalse(terminalPassthrough.isPersistentShell());
+    }
+
+    @Test
+    public void testCancelDestroysProcess() throws Exception {
+        CompletableFuture<TerminalPassthrough.CommandResult> result = terminalPassthrough.executeCommand("sleep 30", false);
+        Thread.sleep(500);
+        List<ProcessHandle> started = ProcessHandle.current().descendants().toList();
+        assertFalse(started.isEmpty());
+        assertTrue(result.cancel(true));
+        for (ProcessHandle process : started) {
+            process.onExit().get(5, TimeUnit.SECONDS);
+        }
+    }
 }
@@ -36,6 +36,48 @@ public class TextEngineTest {
         assertEquals("Hello World\n", outContent.toString());
     }
 
+    @Test
+    public void testPrintNoDelayWrapsLongText() {
+        int width = TextEngine.MAX_LINE_WIDTH;
+        TextEngine.MAX_LINE_WIDTH = 12;
+        try {
+            TextEngine.printNoDelay("alpha beta gamma delta", false, true);
+        } finally {
+            TextEngine.MAX_LINE_WIDTH = width;
+        }
+        assertEquals("alpha beta \ngamma delta\n", outContent.toString());
+    }
+
+    @Test
+    public void testNonInteractiveTextIsNotWrapped() {
+        int width = TextEngine.MAX_LINE_WIDTH;
+        TextEngine.MAX_LINE_WIDTH = 12;
+        TextEngine.setInteractive(false);
+        try {
+            TextEngine.printNoDelay("alpha beta gamma delta", false, true);
+            TextEngine.printChunk("alpha beta ");
+            TextEngine.printChunk("gamma delta");
+            TextEngine.endChunks(true);
+        } finally {
+            TextEngine.setInteractive(true);
+            TextEngine.MAX_LINE_WIDTH = width;
+        }
+        assertEquals("alpha beta gamma delta\nalpha beta gamma delta\n", outContent.toString());
+    }
+
+    @Test
+    public void testMoveCursor() {
+        TextEngine.moveCursor(4, 0);
+        TextEngine.setInteractive(false);
+        try {
+            TextEngine.moveCursor(2, 3);
+            TextEngine.renderScreen(new VirtualScreen(4, 1));
+        } finally {
+            TextEngine.setInteractive(true);
+        }
+        assertEquals("\033[5;1H", outContent.toString());
+    }
+
     @Test
     public void testClearScreen() {
         TextEngine.clearScreen();
@@ -64,6 +106,15 @@ public class TextEngineTest {
         assertEquals("unknown", TextEngine.parseCommand("unknown", possibleCommands));
     }
 
+    @Test
+    public void testParseCommandSeesChangedArray() {
+        String[] possibleCommands = {"start", "stop"};
+        assertEquals("start", TextEngine.parseCommand("sta", possibleCommands));
+        possibleCommands[0] = "status";
+        assertEquals("status", TextEngine.parseCommand("sta", possibleCommands));
+        assertEquals("status", TextEngine.parseCommand("sta", new CommandTrie(possibleCommands)));
+    }
+
     @Test
     public void testGetMatchLength() {
         assertEquals(3, TextEngine.getMatchLength("start", "sta"));
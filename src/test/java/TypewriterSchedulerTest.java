@@ -0,0 +1,74 @@
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class TypewriterSchedulerTest {
+
+    private final TypewriterScheduler scheduler = new TypewriterScheduler(16);
+
+    @Test
+    public void testPlayWritesWholeText() {
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        scheduler.play("Hello, World!\n", 1, new PrintStream(outContent));
+        assertEquals("Hello, World!\n", outContent.toString());
+    }
+
+    @Test
+    public void testPlayPacesLettersAndDigits() {
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        scheduler.play("abcde", 20, new PrintStream(outContent));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals("abcde", outContent.toString());
+        assertTrue(elapsedMillis >= 90);
+    }
+
+    @Test
+    public void testSkipReleasesRemainingText() throws InterruptedException {
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        Thread skipper = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler.skip();
+        });
+        skipper.start();
+        long start = System.nanoTime();
+        scheduler.play("a".repeat(1000), 30, new PrintStream(outContent));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        skipper.join();
+        assertEquals(1000, outContent.size());
+        assertTrue(elapsedMillis < 5000);
+    }
+
+    @Test
+    public void testSkipLastsUntilResume() {
+        ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+        scheduler.skip();
+        long start = System.nanoTime();
+        scheduler.play("a".repeat(200), 30, new PrintStream(outContent));
+        scheduler.play("b".repeat(200), 30, new PrintStream(outContent));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+        scheduler.resume();
+        start = System.nanoTime();
+        scheduler.play("abcde", 20, new PrintStream(outContent));
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 90);
+        assertEquals(405, outContent.size());
+    }
+
+    @Test
+    public void testIsPaced() {
+        assertTrue(TypewriterScheduler.isPaced('a'));
+        assertTrue(TypewriterScheduler.isPaced('Z'));
+        assertTrue(TypewriterScheduler.isPaced('7'));
+        assertFalse(TypewriterScheduler.isPaced(' '));
+        assertFalse(TypewriterScheduler.isPaced('\033'));
+    }
+}
@@ -0,0 +1,109 @@
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UserDataStoreTest {
+
+    private Path file;
+    private UserDataStore store;
+    private String prefix;
+    private List<String> commands;
+    private int serialized;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("userdata", ".json");
+        Files.delete(file);
+        prefix = "!";
+        commands = new ArrayList<>(List.of("terminal cd /"));
+        store = new UserDataStore(file, 50);
+        store.section("Command_Prefix", () -> prefix);
+        store.section("Startup_Commands", () -> {
+            serialized++;
+            return commands;
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + ".tmp"));
+    }
+
+    @Test
+    public void testSaveWritesSectionsInOrder() throws IOException {
+        store.updateAll();
+        store.save();
+        assertEquals("{\"Command_Prefix\":\"!\",\"Startup_Commands\":[\"terminal cd /\"]}", Files.readString(file));
+        assertFalse(store.isDirty());
+    }
+
+    @Test
+    public void testOnlyUpdatedSectionIsSerialized() throws IOException {
+        store.updateAll();
+        store.save();
+        serialized = 0;
+        prefix = ".";
+        store.update("Command_Prefix");
+        store.save();
+        assertEquals(0, serialized);
+        assertEquals(".", new JSONObject(Files.readString(file)).getString("Command_Prefix"));
+    }
+
+    @Test
+    public void testUnchangedUpdateDoesNotSave() throws IOException {
+        store.updateAll();
+        store.save();
+        store.update("Command_Prefix");
+        assertFalse(store.isDirty());
+    }
+
+    @Test
+    public void testUpdatesAreSavedInBackground() throws InterruptedException {
+        store.updateAll();
+        prefix = "#";
+        store.update("Command_Prefix");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.isDirty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file));
+        assertFalse(Files.exists(Path.of(file + ".tmp")));
+    }
+
+    @Test
+    public void testLoadKeepsUnknownSections() throws IOException {
+        Files.writeString(file, "{\"Command_Prefix\":\"!\",\"Other\":{\"a\":1}}");
+        assertEquals("!", store.load().getString("Command_Prefix"));
+        commands.add("ls");
+        store.update("Startup_Commands");
+        store.save();
+        JSONObject saved = new JSONObject(Files.readString(file));
+        assertEquals(1, saved.getJSONObject("Other").getInt("a"));
+        assertEquals(2, saved.getJSONArray("Startup_Commands").length());
+    }
+
+    @Test
+    public void testClearSavesEverythingAgain() throws IOException {
+        store.updateAll();
+        store.save();
+        Files.delete(file);
+        store.clear();
+        store.updateAll();
+        store.save();
+        assertTrue(Files.exists(file));
+    }
+}
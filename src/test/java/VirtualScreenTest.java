@@ -0,0 +1,78 @@
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class VirtualScreenTest {
+
+    @Test
+    public void testFirstRenderClearsAndDraws() {
+        VirtualScreen screen = new VirtualScreen(10, 2);
+        screen.print(0, 0, "hi", VirtualScreen.DEFAULT);
+        assertEquals("\033[0m\033[H\033[2Jhi", screen.render());
+    }
+
+    @Test
+    public void testRenderEmitsOnlyChangedCells() {
+        VirtualScreen screen = new VirtualScreen(10, 2);
+        screen.print(1, 0, "count: 09", VirtualScreen.DEFAULT);
+        screen.render();
+        screen.print(1, 0, "count: 10", VirtualScreen.DEFAULT);
+        assertEquals("\033[2;8H10", screen.render());
+        assertEquals("", screen.render());
+    }
+
+    @Test
+    public void testAttributesAreEmittedOnChange() {
+        VirtualScreen screen = new VirtualScreen(10, 1);
+        screen.render();
+        screen.print(0, 0, "ok", VirtualScreen.attribute(VirtualScreen.GREEN, true));
+        assertEquals("\033[1;1H\033[0;1;32mok\033[0m", screen.render());
+    }
+
+    @Test
+    public void testTextIsClippedAndEscapesSkipped() {
+        VirtualScreen screen = new VirtualScreen(4, 1);
+        assertEquals(4, screen.print(0, 0, "\033[1;31mabcdef", VirtualScreen.DEFAULT));
+        assertEquals('d', screen.codePointAt(0, 3));
+    }
+
+    @Test
+    public void testWideCharactersTakeTwoCells() {
+        VirtualScreen screen = new VirtualScreen(6, 1);
+        assertEquals(5, screen.print(0, 0, "\uD83D\uDE00a\u4f60", VirtualScreen.DEFAULT));
+        assertEquals(0x1F600, screen.codePointAt(0, 0));
+        assertEquals('a', screen.codePointAt(0, 2));
+        assertTrue(screen.render().endsWith("\uD83D\uDE00a\u4f60"));
+    }
+
+    @Test
+    public void testDrawingOverHalfOfWideCharacterBlanksTheOtherHalf() {
+        VirtualScreen screen = new VirtualScreen(4, 1);
+        screen.print(0, 0, "\u4f60\u597d", VirtualScreen.DEFAULT);
+        screen.render();
+        screen.print(0, 1, "x", VirtualScreen.DEFAULT);
+        assertEquals(' ', screen.codePointAt(0, 0));
+        assertEquals('x', screen.codePointAt(0, 1));
+        screen.print(0, 2, "y", VirtualScreen.DEFAULT);
+        assertEquals(' ', screen.codePointAt(0, 3));
+        assertEquals("\033[1;1H xy ", screen.render());
+    }
+
+    @Test
+    public void testTabsAreFilledToTheNextTabStop() {
+        VirtualScreen screen = new VirtualScreen(20, 1);
+        assertEquals(9, screen.print(0, 0, "ab\tc", VirtualScreen.DEFAULT));
+        assertEquals(' ', screen.codePointAt(0, 7));
+        assertEquals('c', screen.codePointAt(0, 8));
+    }
+
+    @Test
+    public void testInvalidateRedrawsEverything() {
+        VirtualScreen screen = new VirtualScreen(5, 1);
+        screen.print(0, 0, "abc", VirtualScreen.DEFAULT);
+        screen.render();
+        screen.invalidate();
+        assertTrue(screen.render().endsWith("abc"));
+    }
+}
@@ -0,0 +1,109 @@
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class WordWrapWriterTest {
+
+    private static String wrap(String text, int width) {
+        StringBuilder out = new StringBuilder();
+        WordWrapWriter writer = new WordWrapWriter(out, width);
+        writer.append(text);
+        writer.finish();
+        return out.toString();
+    }
+
+    @Test
+    public void testWrapsAtLineWidth() {
+        assertEquals("alpha beta \ngamma delta", wrap("alpha beta gamma delta", 12));
+    }
+
+    @Test
+    public void testEmbeddedNewLineResetsColumn() {
+        assertEquals("alpha\nbeta gamma", wrap("alpha\nbeta gamma", 12));
+    }
+
+    @Test
+    public void testBackslashBreaksAfterWord() {
+        assertEquals("one\\\ntwo", wrap("one\\ two", 50));
+    }
+
+    @Test
+    public void testChunkedInputMatchesWholeInput() {
+        String text = "the quick brown fox jumps over the lazy dog and keeps on running";
+        StringBuilder out = new StringBuilder();
+        WordWrapWriter writer = new WordWrapWriter(out, 16);
+        writer.writeAll(List.of("the qu", "ick brown f", "o", "x jumps over the lazy dog and kee", "ps on running"));
+        writer.finish();
+        assertEquals(wrap(text, 16), out.toString());
+    }
+
+    @Test
+    public void testPartialWordIsHeldUntilComplete() {
+        StringBuilder out = new StringBuilder();
+        WordWrapWriter writer = new WordWrapWriter(out, 50);
+        writer.append("hello wor");
+        assertEquals("hello ", out.toString());
+        writer.append("ld");
+        writer.finish();
+        assertEquals("hello world", out.toString());
+    }
+
+    @Test
+    public void testLongWordIsPassedThrough() {
+        StringBuilder out = new StringBuilder();
+        WordWrapWriter writer = new WordWrapWriter(out, 8);
+        writer.append("ab ");
+        writer.append("0123456789");
+        assertEquals("ab \n0123456789", out.toString());
+        assertEquals(10, writer.getColumn());
+    }
+
+    @Test
+    public void testTransferFromReader() throws IOException {
+        StringBuilder out = new StringBuilder();
+        WordWrapWriter writer = new WordWrapWriter(out, 12);
+        assertEquals(22, writer.transferFrom(new StringReader("alpha beta gamma delta")));
+        writer.finish();
+        assertEquals("alpha beta \ngamma delta", out.toString());
+    }
+
+    @Test
+    public void testEscapeSequencesTakeNoColumns() {
+        String text = "\033[1;33malpha\033[0m beta gamma";
+        assertEquals("\033[1;33malpha\033[0m beta \ngamma", wrap(text, 12));
+    }
+
+    @Test
+    public void testWideCharactersTakeTwoColumns() {
+        StringBuilder out = new StringBuilder();
+        WordWrapWriter writer = new WordWrapWriter(out, 20);
+        writer.append("ab \u4f60\u597d ");
+        assertEquals(8, writer.getColumn());
+    }
+
+    @Test
+    public void testTabsReachTheNextTabStop() {
+        StringBuilder out = new StringBuilder();
+        WordWrapWriter writer = new WordWrapWriter(out, 40);
+        writer.append("ab\tcd\t");
+        assertEquals(16, writer.getColumn());
+        assertEquals("alpha\t\nbeta", wrap("alpha\tbeta", 12));
+    }
+
+    @Test
+    public void testSpacesInsideEscapeSequencesDoNotSplitWords() {
+        String link = "\033]8;;http://x/a b\033\\link\033]8;;\033\\";
+        assertEquals("go " + link, wrap("go " + link, 8));
+    }
+
+    @Test
+    public void testSpacesAreKeptExceptAfterWrapping() {
+        assertEquals("  a  b", wrap("  a  b", 50));
+        assertEquals("alpha  \nbeta", wrap("alpha  beta", 8));
+        assertEquals("alpha  \nbeta", wrap("alpha    beta", 7));
+    }
+}